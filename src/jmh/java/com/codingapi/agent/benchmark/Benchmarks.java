@@ -0,0 +1,108 @@
+package com.codingapi.agent.benchmark;
+
+import io.micrometer.observation.ObservationRegistry;
+import lombok.NonNull;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * fixtures shared by the benchmarks
+ */
+final class Benchmarks {
+
+    static final String CHAT_ID = "benchmark";
+
+    private static final String WORDS = "the quick brown fox jumps over the lazy dog 现在几点了 ";
+
+    private Benchmarks() {
+    }
+
+    /**
+     * text of the given length
+     */
+    static String text(int size) {
+        StringBuilder builder = new StringBuilder(size);
+        while (builder.length() < size) {
+            builder.append(WORDS);
+        }
+        builder.setLength(size);
+        return builder.toString();
+    }
+
+    static ChatClientResponse response(String text) {
+        return ChatClientResponse.builder()
+                .chatResponse(ChatResponse.builder()
+                        .generations(List.of(new Generation(new AssistantMessage(text))))
+                        .build())
+                .context(Map.of())
+                .build();
+    }
+
+    /**
+     * advisor chain that stands in for the model and always answers with the same response
+     */
+    static CallAdvisorChain chain(ChatClientResponse response) {
+        return new CallAdvisorChain() {
+            @NonNull
+            @Override
+            public ChatClientResponse nextCall(@NonNull ChatClientRequest chatClientRequest) {
+                return response;
+            }
+
+            @NonNull
+            @Override
+            public List<CallAdvisor> getCallAdvisors() {
+                return List.of();
+            }
+
+            @NonNull
+            @Override
+            public ObservationRegistry getObservationRegistry() {
+                return ObservationRegistry.NOOP;
+            }
+        };
+    }
+
+    /**
+     * tool callbacks with a json schema of a realistic size
+     */
+    static List<ToolCallback> toolCallbacks(int count) {
+        List<ToolCallback> toolCallbacks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ToolDefinition toolDefinition = ToolDefinition.builder()
+                    .name("tool_" + i)
+                    .description("benchmark tool " + i + " " + text(64))
+                    .inputSchema("""
+                            {"$schema":"https://json-schema.org/draft/2020-12/schema","type":"object",\
+                            "properties":{"timeZone":{"type":"string","description":"时区"},\
+                            "count":{"type":"integer","description":"count"}},"required":["timeZone"],\
+                            "additionalProperties":false}""")
+                    .build();
+            toolCallbacks.add(new ToolCallback() {
+                @NonNull
+                @Override
+                public ToolDefinition getToolDefinition() {
+                    return toolDefinition;
+                }
+
+                @NonNull
+                @Override
+                public String call(@NonNull String toolInput) {
+                    return "ok";
+                }
+            });
+        }
+        return toolCallbacks;
+    }
+}
@@ -0,0 +1,94 @@
+package com.codingapi.agent.benchmark;
+
+import com.codingapi.agent.memory.TokenBudgetChatMemoryAdvisor;
+import com.codingapi.agent.template.CompiledTemplate;
+import lombok.NonNull;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.advisor.PromptChatMemoryAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * memory rendering into the system message, the spring ai prompt memory advisor and the token budget advisor
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatMemoryAdvisorBenchmark {
+
+    @Param({"10", "50", "200"})
+    private int historyLength;
+
+    private PromptChatMemoryAdvisor promptChatMemoryAdvisor;
+    private TokenBudgetChatMemoryAdvisor tokenBudgetChatMemoryAdvisor;
+    private ChatClientRequest request;
+    private CallAdvisorChain chain;
+
+    @Setup
+    public void setup() throws IOException {
+        List<Message> history = new ArrayList<>(historyLength);
+        for (int i = 0; i < historyLength / 2; i++) {
+            history.add(new UserMessage(Benchmarks.text(120)));
+            history.add(new AssistantMessage(Benchmarks.text(400)));
+        }
+        // fixed history, the user message the advisors append on every call must not shift the window
+        ChatMemory chatMemory = new ChatMemory() {
+            @Override
+            public void add(@NonNull String conversationId, @NonNull List<Message> messages) {
+            }
+
+            @NonNull
+            @Override
+            public List<Message> get(@NonNull String conversationId) {
+                return history;
+            }
+
+            @Override
+            public void clear(@NonNull String conversationId) {
+            }
+        };
+
+        String template = IOUtils.toString(new ClassPathResource("texts/memory.txt").getInputStream(),
+                StandardCharsets.UTF_8);
+        promptChatMemoryAdvisor = PromptChatMemoryAdvisor.builder(chatMemory).build();
+        CompiledTemplate compiledTemplate = CompiledTemplate.compile(template);
+        tokenBudgetChatMemoryAdvisor = new TokenBudgetChatMemoryAdvisor(chatMemory, () -> compiledTemplate,
+                Integer.MAX_VALUE, null);
+
+        request = ChatClientRequest.builder()
+                .prompt(Prompt.builder()
+                        .messages(new SystemMessage(Benchmarks.text(512)), new UserMessage("现在几点了"))
+                        .build())
+                .context(Map.of(ChatMemory.CONVERSATION_ID, Benchmarks.CHAT_ID))
+                .build();
+        chain = Benchmarks.chain(Benchmarks.response("ok"));
+    }
+
+    @Benchmark
+    public ChatClientRequest promptChatMemory() {
+        return promptChatMemoryAdvisor.before(request, chain);
+    }
+
+    @Benchmark
+    public ChatClientRequest tokenBudgetChatMemory() {
+        return tokenBudgetChatMemoryAdvisor.before(request, chain);
+    }
+}
@@ -0,0 +1,105 @@
+package com.codingapi.agent.benchmark;
+
+import com.codingapi.agent.advisor.DeepSeekToolsAdvisor;
+import com.codingapi.agent.properties.AgentProperties;
+import lombok.NonNull;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * request rebuilding (tool schema block) and tool call json extraction of {@link DeepSeekToolsAdvisor}.
+ * the model and the tools are stubbed, so only the advisor's own work is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeepSeekToolsAdvisorBenchmark {
+
+    @Param({"1", "10", "50"})
+    private int toolCount;
+
+    @Param({"256", "4096"})
+    private int responseSize;
+
+    private ExecutorService executorService;
+    private DeepSeekToolsAdvisor advisor;
+    private ChatClientRequest request;
+    private CallAdvisorChain answerChain;
+    private CallAdvisorChain toolCallChain;
+
+    @Setup
+    public void setup() {
+        ToolExecutionResult toolExecutionResult = ToolExecutionResult.builder()
+                .conversationHistory(List.of(new ToolResponseMessage(
+                        List.of(new ToolResponseMessage.ToolResponse("1", "tool_0", "ok")), Map.of())))
+                .returnDirect(true)
+                .build();
+        ToolCallingManager toolCallingManager = new ToolCallingManager() {
+            @NonNull
+            @Override
+            public List<ToolDefinition> resolveToolDefinitions(@NonNull ToolCallingChatOptions chatOptions) {
+                return List.of();
+            }
+
+            @NonNull
+            @Override
+            public ToolExecutionResult executeToolCalls(@NonNull Prompt prompt, @NonNull ChatResponse chatResponse) {
+                return toolExecutionResult;
+            }
+        };
+        executorService = Executors.newCachedThreadPool();
+        advisor = new DeepSeekToolsAdvisor(toolCallingManager, new AgentProperties.Loop(), executorService);
+
+        request = ChatClientRequest.builder()
+                .prompt(Prompt.builder()
+                        .messages(new SystemMessage(Benchmarks.text(512)), new UserMessage("现在几点了"))
+                        .chatOptions(OpenAiChatOptions.builder()
+                                .model("deepseek-r1")
+                                .toolCallbacks(Benchmarks.toolCallbacks(toolCount))
+                                .build())
+                        .build())
+                .context(Map.of())
+                .build();
+
+        answerChain = Benchmarks.chain(Benchmarks.response(Benchmarks.text(responseSize)));
+        String toolCalls = "[{\"tool\":\"tool_0\",\"parameters\":{\"timeZone\":\"Asia/Shanghai\",\"count\":1}},"
+                + "{\"tool\":\"tool_0\",\"parameters\":{\"timeZone\":\"UTC\",\"count\":2}}]";
+        toolCallChain = Benchmarks.chain(Benchmarks.response(Benchmarks.text(responseSize) + "\n" + toolCalls));
+    }
+
+    @TearDown
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Benchmark
+    public ChatClientResponse answer() {
+        return advisor.adviseCall(request, answerChain);
+    }
+
+    @Benchmark
+    public ChatClientResponse toolCall() {
+        return advisor.adviseCall(request, toolCallChain);
+    }
+}
@@ -0,0 +1,76 @@
+package com.codingapi.agent.benchmark;
+
+import com.codingapi.agent.advisor.Qwen3ThinkFilterAdvisor;
+import com.codingapi.agent.advisor.ThinkTagFilter;
+import com.codingapi.agent.model.ModelProfiles;
+import com.codingapi.agent.properties.AgentProperties;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * think block removal of {@link Qwen3ThinkFilterAdvisor}, blocking and streamed
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Qwen3ThinkFilterBenchmark {
+
+    @Param({"256", "4096", "65536"})
+    private int responseSize;
+
+    private Qwen3ThinkFilterAdvisor advisor;
+    private ChatClientRequest request;
+    private CallAdvisorChain chain;
+    private String[] chunks;
+
+    @Setup
+    public void setup() {
+        String thinking = Benchmarks.text(responseSize / 2);
+        String answer = Benchmarks.text(responseSize - responseSize / 2);
+        String text = "<think>\n" + thinking + "\n</think>\n\n" + answer;
+
+        advisor = new Qwen3ThinkFilterAdvisor(false,
+                new ModelProfiles(new AgentProperties(), new MockEnvironment()));
+        request = ChatClientRequest.builder()
+                .prompt(Prompt.builder()
+                        .messages(new UserMessage("现在几点了"))
+                        .chatOptions(ChatOptions.builder().model("qwen3:4b").build())
+                        .build())
+                .context(Map.of())
+                .build();
+        chain = Benchmarks.chain(Benchmarks.response(text));
+
+        // streamed models emit a few characters per chunk
+        chunks = new String[(text.length() + 3) / 4];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = text.substring(i * 4, Math.min(text.length(), i * 4 + 4));
+        }
+    }
+
+    @Benchmark
+    public ChatClientResponse call() {
+        return advisor.adviseCall(request, chain);
+    }
+
+    @Benchmark
+    public int stream() {
+        ThinkTagFilter filter = new ThinkTagFilter();
+        int length = 0;
+        for (String chunk : chunks) {
+            length += filter.filter(chunk).length();
+        }
+        return length + filter.flush().length();
+    }
+}
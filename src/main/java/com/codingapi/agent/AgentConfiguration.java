@@ -1,18 +1,49 @@
 package com.codingapi.agent;
 
+import com.codingapi.agent.cluster.ClusterChatMemoryRepository;
+import com.codingapi.agent.cluster.HttpClusterTransport;
+import com.codingapi.agent.memory.SegmentLogChatMemoryRepository;
 import com.codingapi.agent.properties.AgentProperties;
+import com.codingapi.agent.routing.EndpointPool;
+import com.codingapi.agent.routing.ModelEndpoint;
+import com.codingapi.agent.routing.RoutingChatModel;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
 import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.api.OpenAiApi;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @Configuration
 public class AgentConfiguration {
 
     @Bean
-    public ChatMemory chatMemory(AgentProperties agentProperties) {
+    public ChatMemoryRepository chatMemoryRepository(AgentProperties agentProperties) {
+        AgentProperties.Memory memory = agentProperties.getMemory();
+        ChatMemoryRepository local = memory.getType() == AgentProperties.MemoryType.SEGMENT_LOG
+                ? new SegmentLogChatMemoryRepository(memory)
+                : new InMemoryChatMemoryRepository();
+        AgentProperties.Cluster cluster = agentProperties.getCluster();
+        if (cluster.isEnabled()) {
+            return new ClusterChatMemoryRepository(local, new HttpClusterTransport(cluster), cluster);
+        }
+        return local;
+    }
+
+    @Bean
+    public ChatMemory chatMemory(AgentProperties agentProperties, ChatMemoryRepository chatMemoryRepository) {
         return MessageWindowChatMemory.builder()
+                .chatMemoryRepository(chatMemoryRepository)
                 .maxMessages(agentProperties.getChatMemorySize())
                 .build();
     }
@@ -23,5 +54,34 @@ public class AgentConfiguration {
         return new AgentProperties();
     }
 
+    @Bean
+    @Primary
+    public RoutingChatModel routingChatModel(OpenAiChatModel openAiChatModel,
+                                             AgentProperties agentProperties,
+                                             Environment environment) {
+        AgentProperties.Routing routing = agentProperties.getRouting();
+        String apiKey = environment.getProperty("spring.ai.openai.chat.api-key",
+                environment.getProperty("spring.ai.openai.api-key"));
+        String completionsPath = environment.getProperty("spring.ai.openai.chat.completions-path",
+                "/v1/chat/completions");
+        Map<String, EndpointPool> pools = new HashMap<>();
+        routing.getEndpoints().forEach((model, urls) -> {
+            List<ModelEndpoint> endpoints = new ArrayList<>();
+            for (String url : urls) {
+                OpenAiApi openAiApi = OpenAiApi.builder()
+                        .baseUrl(url)
+                        .apiKey(apiKey)
+                        .completionsPath(completionsPath)
+                        .build();
+                endpoints.add(new ModelEndpoint(url, openAiChatModel.mutate().openAiApi(openAiApi).build(), routing));
+            }
+            pools.put(model, new EndpointPool(model, endpoints, routing));
+        });
+        return new RoutingChatModel(openAiChatModel,
+                pools,
+                routing,
+                environment.getProperty("spring.ai.openai.chat.options.model"));
+    }
+
 
 }
@@ -0,0 +1,73 @@
+package com.codingapi.agent.admission;
+
+/**
+ * concurrency limit that follows the observed latency, after the gradient algorithm of netflix concurrency-limits.
+ * the limit shrinks by the ratio of the long-term to the current latency when requests get slower than usual,
+ * and grows by the square root of the limit while latency holds. it only grows while the limit is actually used.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    /**
+     * latency samples averaged into the long-term latency
+     */
+    private static final int LONG_WINDOW = 600;
+    /**
+     * latency increase tolerated before the limit shrinks
+     */
+    private static final double TOLERANCE = 1.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+
+    private double limit;
+    private int inFlight;
+    private double longRtt;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double smoothing) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.limit = initialLimit;
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * end a request
+     *
+     * @param rttNanos latency of the request, 0 when it failed and says nothing about the model latency
+     */
+    public synchronized void release(long rttNanos) {
+        int used = inFlight;
+        inFlight--;
+        if (rttNanos <= 0) {
+            return;
+        }
+        longRtt = longRtt == 0 ? rttNanos : longRtt + (rttNanos - longRtt) / LONG_WINDOW;
+        if (longRtt / rttNanos > 2) {
+            // latency recovered from a slow period, let the long-term latency follow faster
+            longRtt *= 0.95;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / rttNanos));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        if (used < limit / 2) {
+            newLimit = Math.min(newLimit, limit);
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - smoothing) + newLimit * smoothing));
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+}
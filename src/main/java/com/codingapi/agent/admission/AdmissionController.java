@@ -0,0 +1,208 @@
+package com.codingapi.agent.admission;
+
+import com.codingapi.agent.properties.AgentProperties;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * decides up front whether a chat request runs, so a burst is shed at once instead of timing out in the queues.
+ * a request takes a token of its client and of its conversation and a slot of the {@link AdaptiveConcurrencyLimit},
+ * when one of them is exhausted the request is rejected with an {@link AdmissionRejectedException}.
+ */
+@Component
+public class AdmissionController {
+
+    /**
+     * min interval between two scans for idle buckets when the buckets are full
+     */
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final AgentProperties.Admission properties;
+    private final AdaptiveConcurrencyLimit limit;
+
+    private final Map<String, TokenBucket> clientBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> chatBuckets = new ConcurrentHashMap<>();
+    private volatile long sweptAt = System.nanoTime() - SWEEP_INTERVAL_NANOS;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder clientRejected = new LongAdder();
+    private final LongAdder chatRejected = new LongAdder();
+    private final LongAdder limitRejected = new LongAdder();
+    private final LongAdder keyRejected = new LongAdder();
+
+    public AdmissionController(AgentProperties agentProperties) {
+        this.properties = agentProperties.getAdmission();
+        this.limit = new AdaptiveConcurrencyLimit(properties.getInitialLimit(),
+                properties.getMinLimit(),
+                properties.getMaxLimit(),
+                properties.getSmoothing());
+    }
+
+    /**
+     * the key of the client, the X-Client-Id header when it is trusted, otherwise the remote address
+     */
+    public String clientKey(String clientId, String remoteAddress) {
+        return properties.isTrustClientId() && StringUtils.hasText(clientId) ? clientId : remoteAddress;
+    }
+
+    /**
+     * run the request when it is admitted, the latency until the future completes adapts the limit
+     */
+    public <T> CompletableFuture<T> submit(String clientId, String chatId, Supplier<CompletableFuture<T>> request) {
+        if (!properties.isEnabled()) {
+            return request.get();
+        }
+        Permit permit = this.admit(clientId, chatId);
+        try {
+            return request.get().whenComplete((result, e) -> permit.release(e == null));
+        } catch (RuntimeException e) {
+            permit.release(false);
+            throw e;
+        }
+    }
+
+    /**
+     * run the stream when it is admitted, the latency until the first element adapts the limit
+     */
+    public <T> Flux<T> stream(String clientId, String chatId, Supplier<Flux<T>> request) {
+        if (!properties.isEnabled()) {
+            return request.get();
+        }
+        Permit permit = this.admit(clientId, chatId);
+        return Flux.defer(request)
+                .doOnNext(value -> permit.firstElement())
+                .doFinally(signal -> permit.release(false));
+    }
+
+    private Permit admit(String clientId, String chatId) {
+        long now = System.nanoTime();
+        TokenBucket clientBucket = this.bucket(clientBuckets, clientId, properties.getClientRate(),
+                properties.getClientBurst(), now);
+        if (clientBucket == null) {
+            keyRejected.increment();
+            throw new AdmissionRejectedException("too many clients:" + properties.getMaxKeys(),
+                    properties.getRetryAfter().toSeconds());
+        }
+        long wait = clientBucket.tryAcquire(now);
+        if (wait > 0) {
+            clientRejected.increment();
+            throw new AdmissionRejectedException("client rate exceeded:" + clientId, retryAfterSeconds(wait));
+        }
+        TokenBucket chatBucket = null;
+        if (chatId != null) {
+            chatBucket = this.bucket(chatBuckets, chatId, properties.getChatRate(), properties.getChatBurst(), now);
+            if (chatBucket == null) {
+                clientBucket.release();
+                keyRejected.increment();
+                throw new AdmissionRejectedException("too many conversations:" + properties.getMaxKeys(),
+                        properties.getRetryAfter().toSeconds());
+            }
+            wait = chatBucket.tryAcquire(now);
+            if (wait > 0) {
+                clientBucket.release();
+                chatRejected.increment();
+                throw new AdmissionRejectedException("conversation rate exceeded:" + chatId, retryAfterSeconds(wait));
+            }
+        }
+        if (!limit.tryAcquire()) {
+            // the request did not run, it does not count against the rates
+            clientBucket.release();
+            if (chatBucket != null) {
+                chatBucket.release();
+            }
+            limitRejected.increment();
+            throw new AdmissionRejectedException("concurrency limit exceeded:" + limit.getLimit(),
+                    properties.getRetryAfter().toSeconds());
+        }
+        admitted.increment();
+        return new Permit(now);
+    }
+
+    /**
+     * @return the bucket of the key, null when the buckets are full and none of them is idle
+     */
+    private TokenBucket bucket(Map<String, TokenBucket> buckets, String key, double rate, int burst, long now) {
+        TokenBucket bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= properties.getMaxKeys()) {
+            if (now - sweptAt >= SWEEP_INTERVAL_NANOS) {
+                sweptAt = now;
+                // idle buckets are full, dropping them does not change any decision
+                buckets.values().removeIf(idle -> idle.isFull(now));
+            }
+            if (buckets.size() >= properties.getMaxKeys()) {
+                return null;
+            }
+        }
+        return buckets.computeIfAbsent(key, k -> new TokenBucket(rate, burst, now));
+    }
+
+    private static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    public Stats getStats() {
+        return new Stats(limit.getLimit(),
+                limit.getInFlight(),
+                admitted.sum(),
+                clientRejected.sum(),
+                chatRejected.sum(),
+                limitRejected.sum(),
+                keyRejected.sum());
+    }
+
+    private class Permit {
+
+        private final long start;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        private volatile long rttNanos;
+
+        private Permit(long start) {
+            this.start = start;
+        }
+
+        private void firstElement() {
+            if (rttNanos == 0) {
+                rttNanos = System.nanoTime() - start;
+            }
+        }
+
+        /**
+         * @param completed the request completed, its whole duration is the latency sample
+         */
+        private void release(boolean completed) {
+            if (released.compareAndSet(false, true)) {
+                limit.release(completed ? System.nanoTime() - start : rttNanos);
+            }
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+
+        private final int limit;
+        private final int inFlight;
+        private final long admitted;
+        private final long clientRejected;
+        private final long chatRejected;
+        private final long limitRejected;
+        /**
+         * requests of new clients or conversations rejected while every rate bucket was in use
+         */
+        private final long keyRejected;
+    }
+}
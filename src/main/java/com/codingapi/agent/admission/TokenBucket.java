@@ -0,0 +1,57 @@
+package com.codingapi.agent.admission;
+
+/**
+ * token bucket refilled continuously at {@code rate} tokens per second up to {@code burst} tokens
+ */
+public class TokenBucket {
+
+    private final double ratePerNano;
+    private final double burst;
+
+    private double tokens;
+    private long refilledAt;
+
+    public TokenBucket(double rate, int burst, long now) {
+        this.ratePerNano = rate / 1_000_000_000d;
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilledAt = now;
+    }
+
+    /**
+     * take one token
+     *
+     * @param now {@link System#nanoTime()}
+     * @return 0 when a token was taken, otherwise the nanos until the next token
+     */
+    public synchronized long tryAcquire(long now) {
+        this.refill(now);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / ratePerNano);
+    }
+
+    /**
+     * give back a token taken by a request that was rejected afterwards
+     */
+    public synchronized void release() {
+        tokens = Math.min(burst, tokens + 1);
+    }
+
+    /**
+     * the bucket is full, an idle bucket can be dropped and recreated on the next request
+     */
+    public synchronized boolean isFull(long now) {
+        this.refill(now);
+        return tokens >= burst;
+    }
+
+    private void refill(long now) {
+        if (now > refilledAt) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * ratePerNano);
+            refilledAt = now;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.codingapi.agent.advisor;
+
+import com.alibaba.fastjson.JSON;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * per-request trace of the tool loop rounds
+ */
+@Getter
+public class AgentLoopTrace {
+
+    /**
+     * response context key of the trace
+     */
+    public static final String CONTEXT_KEY = "agent_loop_trace";
+
+    private final List<Round> rounds = new ArrayList<>();
+
+    private final long startNanos = System.nanoTime();
+
+    public void add(int round, long modelNanos, long toolNanos, int promptMessages, int promptChars, int toolCalls) {
+        rounds.add(new Round(round,
+                TimeUnit.NANOSECONDS.toMillis(modelNanos),
+                TimeUnit.NANOSECONDS.toMillis(toolNanos),
+                promptMessages,
+                promptChars,
+                toolCalls));
+    }
+
+    public long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public String toString() {
+        return JSON.toJSONString(this);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Round {
+
+        private final int round;
+        private final long modelMillis;
+        private final long toolMillis;
+        private final int promptMessages;
+        private final int promptChars;
+        private final int toolCalls;
+    }
+}
@@ -1,37 +1,72 @@
 package com.codingapi.agent.advisor;
 
 import com.alibaba.fastjson.JSON;
+import com.codingapi.agent.properties.AgentProperties;
+import com.codingapi.agent.tools.ParallelToolCallingManager;
 import lombok.*;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClientRequest;
 import org.springframework.ai.chat.client.ChatClientResponse;
 import org.springframework.ai.chat.client.advisor.DefaultAroundAdvisorChain;
 import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
 import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
 import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.MessageType;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
 import org.springframework.ai.model.tool.ToolCallingManager;
 import org.springframework.ai.model.tool.ToolExecutionResult;
 import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.definition.ToolDefinition;
 import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+@Slf4j
 @AllArgsConstructor
-public class DeepSeekToolsAdvisor implements CallAdvisor {
+public class DeepSeekToolsAdvisor implements CallAdvisor, StreamAdvisor {
 
     private final ToolCallingManager toolCallingManager;
 
+    /**
+     * round and time budget of the tool loop
+     */
+    private final AgentProperties.Loop loop;
+
+    /**
+     * runs the model calls and tool executions of the call path, so a hung round can be abandoned at its deadline
+     */
+    private final ExecutorService executorService;
+
+    private final static String FINAL_ROUND_PROMPT = "工具调用次数已达上限，请不要再调用工具，直接根据已有信息回答用户的问题。";
+
     private final static String TOOLS_REQUEST_TEMPLATE =
             """
-                    question:{question}
                     You are an assistant that can answer questions using tools.
                     If You are asked a question that requires a tool, you must respond with a JSON array of tool calls.
                     [
@@ -46,25 +81,54 @@ public class DeepSeekToolsAdvisor implements CallAdvisor {
                     Based on the user question, select the most appropriate tool and provide only the JSON response.
                     """;
 
+    /**
+     * tool block cached per tool set, so the static part of the prompt stays byte-identical across requests
+     */
+    private final static Map<List<ToolDefinition>, String> TOOL_BLOCKS = new ConcurrentHashMap<>();
+
+    private final static int MAX_TOOL_BLOCKS = 64;
+
+    private static String buildToolBlock(List<ToolDefinition> toolDefinitions) {
+        StringBuilder schemaBuilder = new StringBuilder();
+        for (ToolDefinition toolDefinition : toolDefinitions) {
+            if (!schemaBuilder.isEmpty()) {
+                schemaBuilder.append("\n\n");
+            }
+            schemaBuilder.append("Tool Name: ").append(toolDefinition.name()).append("\n");
+            schemaBuilder.append("Description: ").append(toolDefinition.description()).append("\n");
+            schemaBuilder.append("Parameters (JSON Schema): ").append(toolDefinition.inputSchema()).append("\n");
+        }
+        return TOOLS_REQUEST_TEMPLATE.replace("{toolSchemas}", schemaBuilder.toString());
+    }
+
+    static String toolBlock(List<ToolCallback> toolCallbacks) {
+        List<ToolDefinition> toolDefinitions = new ArrayList<>(toolCallbacks.size());
+        for (ToolCallback toolCallback : toolCallbacks) {
+            toolDefinitions.add(toolCallback.getToolDefinition());
+        }
+        String toolBlock = TOOL_BLOCKS.get(toolDefinitions);
+        if (toolBlock == null) {
+            if (TOOL_BLOCKS.size() >= MAX_TOOL_BLOCKS) {
+                TOOL_BLOCKS.clear();
+            }
+            toolBlock = TOOL_BLOCKS.computeIfAbsent(toolDefinitions, DeepSeekToolsAdvisor::buildToolBlock);
+        }
+        return toolBlock;
+    }
+
+    /**
+     * the tool block is appended to the system message (static) and the user question stays the last message (volatile),
+     * so the prompt prefix can be reused by the KV cache of the model server.
+     */
     private ChatClientRequest rebuildRequest(ChatClientRequest advisedRequest) {
         Prompt prompt = advisedRequest.prompt();
         if (prompt.getOptions() instanceof OpenAiChatOptions openAiChatOptions) {
             List<ToolCallback> toolCallbacks = openAiChatOptions.getToolCallbacks();
             if (!toolCallbacks.isEmpty()) {
-                String question = advisedRequest.prompt().getUserMessage().getText();
-                String toolSchemas = toolCallbacks.stream()
-                        .map((function) -> {
-                            ToolDefinition toolDefinition = function.getToolDefinition();
-                            StringBuilder schemaBuilder = new StringBuilder();
-                            schemaBuilder.append("Tool Name: ").append(toolDefinition.name()).append("\n");
-                            schemaBuilder.append("Description: ").append(toolDefinition.description()).append("\n");
-                            schemaBuilder.append("Parameters (JSON Schema): ").append(toolDefinition.inputSchema()).append("\n");
-                            return schemaBuilder.toString();
-                        })
-                        .collect(Collectors.joining("\n\n"));
-
-                String content = TOOLS_REQUEST_TEMPLATE.replace("{question}", question).replace("{toolSchemas}", toolSchemas);
-                Prompt resetPrompt = prompt.augmentUserMessage(content);
+                String systemText = prompt.getSystemMessage().getText();
+                String toolBlock = toolBlock(toolCallbacks);
+                String content = StringUtils.hasText(systemText) ? systemText + "\n\n" + toolBlock : toolBlock;
+                Prompt resetPrompt = prompt.augmentSystemMessage(content);
                 return ChatClientRequest.builder()
                         .context(advisedRequest.context())
                         .prompt(Prompt.builder()
@@ -80,73 +144,30 @@ public class DeepSeekToolsAdvisor implements CallAdvisor {
 
     private String extractJsonFromAnswer(String text) {
         if (text == null) return "";
-        int jsonStart = text.indexOf("{");
-        int jsonEnd = text.lastIndexOf("}");
-        if (jsonStart != -1 && jsonEnd != -1 && jsonEnd > jsonStart) {
-            return text.substring(jsonStart, jsonEnd + 1).trim();
+        int arrayStart = text.indexOf("[");
+        int objectStart = text.indexOf("{");
+        int jsonStart = arrayStart == -1 || (objectStart != -1 && objectStart < arrayStart) ? objectStart : arrayStart;
+        if (jsonStart != -1) {
+            int jsonEnd = text.lastIndexOf(text.charAt(jsonStart) == '[' ? "]" : "}");
+            if (jsonEnd > jsonStart) {
+                return text.substring(jsonStart, jsonEnd + 1).trim();
+            }
         }
         return text.trim();
     }
 
-
-    private ChatClientResponse response(ChatClientRequest advisedRequest, CallAdvisorChain chain, ChatClientResponse advisedResponse) {
-        ChatResponse chatResponse = advisedResponse.chatResponse();
-        if (chatResponse != null) {
-            List<Generation> deepseekGenerations = new ArrayList<>();
-            List<Generation> generations = chatResponse.getResults();
-            for (Generation generation : generations) {
-                deepseekGenerations.add(this.buildAssistantMessage(generation));
-            }
-
-            ChatResponse answerResponse = ChatResponse.builder()
-                    .from(chatResponse)
-                    .generations(deepseekGenerations)
-                    .metadata(chatResponse.getMetadata())
-                    .build();
-
-            if (answerResponse.hasToolCalls()) {
-                Prompt prompt = advisedRequest.prompt();
-                ToolExecutionResult toolExecutionResult = toolCallingManager.executeToolCalls(prompt, answerResponse);
-                if (toolExecutionResult.returnDirect()) {
-                    return ChatClientResponse.builder()
-                            .chatResponse(
-                                    ChatResponse.builder()
-                                            .from(answerResponse)
-                                            .generations(ToolExecutionResult.buildGenerations(toolExecutionResult))
-                                            .build()
-                            )
-                            .build();
-                } else {
-                    List<CallAdvisor> callAdvisors = chain.getCallAdvisors().stream()
-                            .filter(callAdvisor -> !callAdvisor.getName().equals(getName()))
-                            .toList();
-
-                    CallAdvisorChain advisorChain = new DefaultAroundAdvisorChain.Builder(chain.getObservationRegistry())
-                            .pushAll(callAdvisors)
-                            .build();
-
-                    Prompt newPrompt = Prompt.builder()
-                            .messages(toolExecutionResult.conversationHistory())
-                            .chatOptions(prompt.getOptions())
-                            .build();
-
-                    ChatClientResponse response = advisorChain.nextCall(
-                            ChatClientRequest.builder()
-                                    .prompt(newPrompt)
-                                    .context(advisedRequest.context())
-                                    .build());
-
-                    return this.response(advisedRequest, advisorChain, response);
-
-                }
-            }
-
-            return ChatClientResponse.builder()
-                    .chatResponse(answerResponse)
-                    .context(advisedResponse.context())
-                    .build();
+    private ChatResponse toolCallResponse(ChatResponse chatResponse) {
+        List<Generation> deepseekGenerations = new ArrayList<>();
+        List<Generation> generations = chatResponse.getResults();
+        for (Generation generation : generations) {
+            deepseekGenerations.add(this.buildAssistantMessage(generation));
         }
-        return advisedResponse;
+
+        return ChatResponse.builder()
+                .from(chatResponse)
+                .generations(deepseekGenerations)
+                .metadata(chatResponse.getMetadata())
+                .build();
     }
 
     private Generation buildAssistantMessage(Generation generation) {
@@ -164,6 +185,9 @@ public class DeepSeekToolsAdvisor implements CallAdvisor {
         }
         List<FunctionCallResponse> functionCallResponses = null;
         try {
+            if (extractedJson.startsWith("{")) {
+                extractedJson = "[" + extractedJson + "]";
+            }
             functionCallResponses = JSON.parseArray(extractedJson, FunctionCallResponse.class);
             if (functionCallResponses == null || functionCallResponses.isEmpty()) {
                 return generation;
@@ -175,12 +199,7 @@ public class DeepSeekToolsAdvisor implements CallAdvisor {
         List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>();
         for (FunctionCallResponse functionCallResponse : functionCallResponses) {
             if (functionCallResponse.isValid()) {
-                toolCalls.add(new AssistantMessage.ToolCall(
-                        UUID.randomUUID().toString().replaceAll("-", ""),
-                        "function",
-                        functionCallResponse.getTool(),
-                        functionCallResponse.getParameters())
-                );
+                toolCalls.add(functionCallResponse.toToolCall());
             } else {
                 return generation;
             }
@@ -195,11 +214,367 @@ public class DeepSeekToolsAdvisor implements CallAdvisor {
     }
 
 
+    /**
+     * runs the tool loop iteratively: every round calls the model, executes the requested tools and feeds the results back,
+     * until the model answers without tool calls. the last round allowed by max-rounds is sent without tools,
+     * so the model answers from the results it has. every round is bounded by the round and loop deadline.
+     */
     @Override
     @NonNull
     public ChatClientResponse adviseCall(@NonNull ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
-        ChatClientResponse response = callAdvisorChain.nextCall(this.rebuildRequest(chatClientRequest));
-        return this.response(chatClientRequest, callAdvisorChain, response);
+        AgentLoopTrace trace = new AgentLoopTrace();
+        long deadline = System.nanoTime() + loop.getTimeout().toNanos();
+        Prompt prompt = chatClientRequest.prompt();
+        ChatClientRequest request = this.rebuildRequest(chatClientRequest);
+        CallAdvisorChain chain = callAdvisorChain;
+        List<CallAdvisor> toolRoundAdvisors = null;
+
+        for (int round = 1; ; round++) {
+            long roundStart = System.nanoTime();
+            this.checkBudget(roundStart, deadline);
+            long roundDeadline = Math.min(roundStart + loop.getRoundTimeout().toNanos(), deadline);
+            boolean finalRound = round >= loop.getMaxRounds();
+            if (finalRound) {
+                request = finalRequest(prompt, request.context());
+            }
+            ChatClientRequest roundRequest = request;
+            CallAdvisorChain roundChain = chain;
+            ChatClientResponse response = this.callWithin(() -> roundChain.nextCall(roundRequest), roundDeadline, deadline);
+            long modelNanos = System.nanoTime() - roundStart;
+
+            ChatResponse chatResponse = response.chatResponse();
+            if (chatResponse == null) {
+                return response;
+            }
+            ChatResponse answerResponse = finalRound ? chatResponse : this.toolCallResponse(chatResponse);
+            if (finalRound || !answerResponse.hasToolCalls()) {
+                trace.add(round, modelNanos, 0, request.prompt().getInstructions().size(), promptChars(request.prompt()), 0);
+                return this.withTrace(answerResponse, response.context(), trace);
+            }
+
+            long toolStart = System.nanoTime();
+            Prompt toolPrompt = prompt;
+            ToolExecutionResult toolExecutionResult = this.callWithin(
+                    () -> toolCallingManager.executeToolCalls(toolPrompt, answerResponse), roundDeadline, deadline);
+            long toolNanos = System.nanoTime() - toolStart;
+            trace.add(round, modelNanos, toolNanos, request.prompt().getInstructions().size(), promptChars(request.prompt()),
+                    answerResponse.getResult().getOutput().getToolCalls().size());
+
+            if (toolExecutionResult.returnDirect()) {
+                return this.withTrace(ChatResponse.builder()
+                                .from(answerResponse)
+                                .generations(ToolExecutionResult.buildGenerations(toolExecutionResult))
+                                .build(),
+                        response.context(),
+                        trace);
+            }
+
+            if (toolRoundAdvisors == null) {
+                toolRoundAdvisors = callAdvisorChain.getCallAdvisors().stream()
+                        .filter(callAdvisor -> !callAdvisor.getName().equals(getName()))
+                        .toList();
+            }
+            // an advisor chain is consumed while it runs, so every round gets a fresh chain of the same advisors
+            chain = new DefaultAroundAdvisorChain.Builder(callAdvisorChain.getObservationRegistry())
+                    .pushAll(toolRoundAdvisors)
+                    .build();
+
+            prompt = Prompt.builder()
+                    .messages(toolExecutionResult.conversationHistory())
+                    .chatOptions(prompt.getOptions())
+                    .build();
+            request = ChatClientRequest.builder()
+                    .prompt(prompt)
+                    .context(chatClientRequest.context())
+                    .build();
+        }
+    }
+
+    private void checkBudget(long now, long deadline) {
+        if (now > deadline) {
+            throw new RuntimeException("agent loop exceeded timeout:" + loop.getTimeout());
+        }
+    }
+
+    /**
+     * run a step of the call path on the executor and wait for it until the round deadline,
+     * a step still running at the deadline is interrupted
+     */
+    private <T> T callWithin(Callable<T> step, long roundDeadline, long deadline) {
+        Future<T> future;
+        try {
+            future = executorService.submit(step);
+        } catch (RejectedExecutionException e) {
+            throw new RuntimeException("agent loop round was rejected", e);
+        }
+        try {
+            return future.get(Math.max(0, roundDeadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new RuntimeException(roundDeadline < deadline
+                    ? "agent loop round exceeded timeout:" + loop.getRoundTimeout()
+                    : "agent loop exceeded timeout:" + loop.getTimeout(), e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("agent loop was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException("agent loop round error", e.getCause());
+        }
+    }
+
+    /**
+     * the request of the last round: the conversation so far with the tools removed and an instruction to answer
+     */
+    private static ChatClientRequest finalRequest(Prompt prompt, Map<String, Object> context) {
+        ChatOptions options = prompt.getOptions();
+        if (options instanceof ToolCallingChatOptions toolCallingChatOptions) {
+            ToolCallingChatOptions withoutTools = toolCallingChatOptions.copy();
+            withoutTools.setToolCallbacks(List.of());
+            withoutTools.setToolNames(Set.of());
+            options = withoutTools;
+        }
+        String systemText = prompt.getSystemMessage().getText();
+        Prompt finalPrompt = prompt.augmentSystemMessage(StringUtils.hasText(systemText)
+                ? systemText + "\n\n" + FINAL_ROUND_PROMPT
+                : FINAL_ROUND_PROMPT);
+        return ChatClientRequest.builder()
+                .prompt(Prompt.builder()
+                        .messages(finalPrompt.getInstructions())
+                        .chatOptions(options)
+                        .build())
+                .context(context)
+                .build();
+    }
+
+    private static int promptChars(Prompt prompt) {
+        int chars = 0;
+        for (Message message : prompt.getInstructions()) {
+            if (message.getText() != null) {
+                chars += message.getText().length();
+            }
+        }
+        return chars;
+    }
+
+    private ChatClientResponse withTrace(ChatResponse chatResponse, Map<String, Object> context, AgentLoopTrace trace) {
+        log.debug("agent loop trace:{}", trace);
+        Map<String, Object> traceContext = new HashMap<>(context);
+        traceContext.put(AgentLoopTrace.CONTEXT_KEY, trace);
+        return ChatClientResponse.builder()
+                .chatResponse(chatResponse)
+                .context(traceContext)
+                .build();
+    }
+
+    @NonNull
+    @Override
+    public Flux<ChatClientResponse> adviseStream(@NonNull ChatClientRequest chatClientRequest,
+                                                 @NonNull StreamAdvisorChain streamAdvisorChain) {
+        StreamLoop streamLoop = new StreamLoop(chatClientRequest, streamAdvisorChain);
+        ChatClientRequest request = this.rebuildRequest(chatClientRequest);
+        return this.streamRound(streamLoop, 1, chatClientRequest.prompt(), request, streamAdvisorChain);
+    }
+
+    /**
+     * streams one model round, plain text answers pass straight through and tool call objects are dispatched
+     * as soon as they are complete. the next round is only subscribed after the tool results are in.
+     */
+    private Flux<ChatClientResponse> streamRound(StreamLoop streamLoop,
+                                                 int round,
+                                                 Prompt prompt,
+                                                 ChatClientRequest request,
+                                                 StreamAdvisorChain chain) {
+        return Flux.defer(() -> {
+            long roundStart = System.nanoTime();
+            this.checkBudget(roundStart, streamLoop.deadline);
+            long roundDeadline = Math.min(roundStart + loop.getRoundTimeout().toNanos(), streamLoop.deadline);
+            if (round >= loop.getMaxRounds()) {
+                ChatClientRequest finalRequest = finalRequest(prompt, request.context());
+                return withDeadline(chain.nextStream(finalRequest), roundDeadline)
+                        .doOnComplete(() -> {
+                            Prompt finalPrompt = finalRequest.prompt();
+                            streamLoop.trace.add(round, System.nanoTime() - roundStart, 0,
+                                    finalPrompt.getInstructions().size(), promptChars(finalPrompt), 0);
+                            log.debug("agent loop trace:{}", streamLoop.trace);
+                        });
+            }
+            StreamRound streamRound = new StreamRound(request, prompt);
+            return withDeadline(chain.nextStream(request), roundDeadline)
+                    .concatMapIterable(streamRound::scan)
+                    .doOnError(e -> streamRound.cancel())
+                    .doOnCancel(streamRound::cancel)
+                    .concatWith(Flux.defer(() -> this.finishStreamRound(streamLoop, round, prompt, streamRound,
+                            roundStart, roundDeadline)));
+        });
+    }
+
+    private Flux<ChatClientResponse> finishStreamRound(StreamLoop streamLoop,
+                                                       int round,
+                                                       Prompt prompt,
+                                                       StreamRound streamRound,
+                                                       long roundStart,
+                                                       long roundDeadline) {
+        long modelNanos = System.nanoTime() - roundStart;
+        Prompt roundPrompt = streamRound.request.prompt();
+        String pending = streamRound.scanner.flush();
+        if (!streamRound.scanner.isJson() || streamRound.invalid || streamRound.toolCalls.isEmpty()) {
+            // tool calls dispatched before the round turned out to be an answer are not used
+            streamRound.cancel();
+            streamLoop.trace.add(round, modelNanos, 0, roundPrompt.getInstructions().size(), promptChars(roundPrompt), 0);
+            log.debug("agent loop trace:{}", streamLoop.trace);
+            String text = streamRound.scanner.isJson() ? streamRound.scanner.getJson() : pending;
+            return text.isEmpty() ? Flux.empty() : Flux.just(streamRound.textResponse(text));
+        }
+        long toolStart = System.nanoTime();
+        AssistantMessage assistantMessage = new AssistantMessage(streamRound.scanner.getJson(), Map.of(),
+                streamRound.toolCalls, List.of());
+        Mono<ToolExecutionResult> toolExecution;
+        if (toolCallingManager instanceof ParallelToolCallingManager parallelToolCallingManager) {
+            toolExecution = Mono.fromFuture(CompletableFuture.allOf(streamRound.results.toArray(new CompletableFuture[0])))
+                    .then(Mono.fromCallable(() -> parallelToolCallingManager.buildResult(prompt, assistantMessage,
+                            streamRound.results)));
+        } else {
+            ChatResponse toolCallResponse = new ChatResponse(List.of(new Generation(assistantMessage)));
+            toolExecution = Mono.fromCallable(() -> toolCallingManager.executeToolCalls(prompt, toolCallResponse))
+                    .subscribeOn(Schedulers.boundedElastic());
+        }
+
+        return toolExecution
+                .timeout(remaining(roundDeadline))
+                .onErrorMap(TimeoutException.class,
+                        e -> new RuntimeException("agent loop round exceeded timeout:" + loop.getRoundTimeout(), e))
+                .doOnError(e -> streamRound.cancel())
+                .doOnCancel(streamRound::cancel)
+                .flatMapMany(toolExecutionResult -> {
+                    streamLoop.trace.add(round, modelNanos, System.nanoTime() - toolStart,
+                            roundPrompt.getInstructions().size(), promptChars(roundPrompt), streamRound.toolCalls.size());
+                    if (toolExecutionResult.returnDirect()) {
+                        log.debug("agent loop trace:{}", streamLoop.trace);
+                        return Flux.just(ChatClientResponse.builder()
+                                .chatResponse(ChatResponse.builder()
+                                        .generations(ToolExecutionResult.buildGenerations(toolExecutionResult))
+                                        .build())
+                                .context(streamRound.request.context())
+                                .build());
+                    }
+                    StreamAdvisorChain advisorChain = new DefaultAroundAdvisorChain.Builder(streamLoop.chain.getObservationRegistry())
+                            .pushAll(streamLoop.toolRoundAdvisors())
+                            .build();
+                    Prompt nextPrompt = Prompt.builder()
+                            .messages(toolExecutionResult.conversationHistory())
+                            .chatOptions(prompt.getOptions())
+                            .build();
+                    ChatClientRequest nextRequest = ChatClientRequest.builder()
+                            .prompt(nextPrompt)
+                            .context(streamLoop.request.context())
+                            .build();
+                    return this.streamRound(streamLoop, round + 1, nextPrompt, nextRequest, advisorChain);
+                });
+    }
+
+    private static <T> Flux<T> withDeadline(Flux<T> flux, long deadline) {
+        return flux.timeout(Mono.delay(remaining(deadline)), item -> Mono.delay(remaining(deadline)))
+                .onErrorMap(TimeoutException.class, e -> new RuntimeException("agent loop round exceeded timeout", e));
+    }
+
+    private static Duration remaining(long deadline) {
+        return Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+    }
+
+    /**
+     * state of a streamed tool loop
+     */
+    private class StreamLoop {
+
+        private final ChatClientRequest request;
+        private final StreamAdvisorChain chain;
+        private final AgentLoopTrace trace = new AgentLoopTrace();
+        private final long deadline = System.nanoTime() + loop.getTimeout().toNanos();
+        private List<StreamAdvisor> toolRoundAdvisors;
+
+        private StreamLoop(ChatClientRequest request, StreamAdvisorChain chain) {
+            this.request = request;
+            this.chain = chain;
+        }
+
+        private List<StreamAdvisor> toolRoundAdvisors() {
+            if (toolRoundAdvisors == null) {
+                toolRoundAdvisors = chain.getStreamAdvisors().stream()
+                        .filter(streamAdvisor -> !streamAdvisor.getName().equals(getName()))
+                        .toList();
+            }
+            return toolRoundAdvisors;
+        }
+    }
+
+    /**
+     * state of one streamed model round
+     */
+    private class StreamRound {
+
+        private final ChatClientRequest request;
+        private final Prompt toolPrompt;
+        private final ToolCallJsonScanner scanner = new ToolCallJsonScanner();
+        private final List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>();
+        private final List<CompletableFuture<String>> results = new ArrayList<>();
+        private boolean invalid = false;
+
+        private StreamRound(ChatClientRequest request, Prompt toolPrompt) {
+            this.request = request;
+            this.toolPrompt = toolPrompt;
+        }
+
+        private List<ChatClientResponse> scan(ChatClientResponse response) {
+            ChatResponse chatResponse = response.chatResponse();
+            if (chatResponse == null || chatResponse.getResult() == null || scanner.isText()) {
+                return List.of(response);
+            }
+            String text = chatResponse.getResult().getOutput().getText();
+            List<ChatClientResponse> visible = new ArrayList<>(1);
+            scanner.feed(text,
+                    content -> visible.add(content == text ? response : this.textResponse(content)),
+                    this::dispatch);
+            return visible;
+        }
+
+        private void dispatch(String toolCallJson) {
+            try {
+                FunctionCallResponse functionCallResponse = JSON.parseObject(toolCallJson, FunctionCallResponse.class);
+                if (functionCallResponse == null || !functionCallResponse.isValid()) {
+                    invalid = true;
+                    return;
+                }
+                AssistantMessage.ToolCall toolCall = functionCallResponse.toToolCall();
+                toolCalls.add(toolCall);
+                if (toolCallingManager instanceof ParallelToolCallingManager parallelToolCallingManager) {
+                    results.add(parallelToolCallingManager.executeAsync(toolPrompt, toolCall));
+                }
+            } catch (Exception e) {
+                invalid = true;
+            }
+        }
+
+        /**
+         * cancel the tool calls dispatched early that are still running
+         */
+        private void cancel() {
+            for (CompletableFuture<String> result : results) {
+                result.cancel(true);
+            }
+        }
+
+        private ChatClientResponse textResponse(String text) {
+            return ChatClientResponse.builder()
+                    .chatResponse(ChatResponse.builder()
+                            .generations(List.of(new Generation(new AssistantMessage(text))))
+                            .build())
+                    .context(request.context())
+                    .build();
+        }
     }
 
     @NonNull
@@ -224,5 +599,13 @@ public class DeepSeekToolsAdvisor implements CallAdvisor {
         public boolean isValid() {
             return tool != null && !tool.isEmpty() && parameters != null && !parameters.isEmpty();
         }
+
+        public AssistantMessage.ToolCall toToolCall() {
+            return new AssistantMessage.ToolCall(
+                    UUID.randomUUID().toString().replaceAll("-", ""),
+                    "function",
+                    tool,
+                    parameters);
+        }
     }
 }
@@ -0,0 +1,132 @@
+package com.codingapi.agent.advisor;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * measures the byte-stable prompt prefix, i.e. the leading bytes of the final prompt that are identical to
+ * the previous prompt of the same conversation and can be served from the KV/prefix cache of the model server.
+ * the first prompt of a conversation is compared to the last prompt of any conversation, they share the static
+ * system and tool block at most. runs right before the model call so it sees the prompt exactly as it is sent.
+ */
+@Slf4j
+public class PromptPrefixAdvisor implements CallAdvisor, StreamAdvisor {
+
+    /**
+     * conversations whose previous prompt is kept, the least recently used are dropped
+     */
+    private static final int MAX_CONVERSATIONS = 256;
+
+    private final Object lock = new Object();
+    private final LinkedHashMap<String, byte[]> previous = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > MAX_CONVERSATIONS;
+        }
+    };
+    private byte[] last = new byte[0];
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder promptBytes = new LongAdder();
+    private final LongAdder stablePrefixBytes = new LongAdder();
+    private final AtomicLong lastPrefixBytes = new AtomicLong();
+    private final AtomicLong lastPromptBytes = new AtomicLong();
+
+    private void record(ChatClientRequest request) {
+        // serialized in message order, the same order the model server tokenizes the prompt
+        ByteArrayOutputStream output = new ByteArrayOutputStream(1024);
+        for (Message message : request.prompt().getInstructions()) {
+            output.writeBytes(message.getMessageType().getValue().getBytes(StandardCharsets.UTF_8));
+            output.write('\n');
+            if (message.getText() != null) {
+                output.writeBytes(message.getText().getBytes(StandardCharsets.UTF_8));
+            }
+            output.write('\n');
+        }
+        byte[] current = output.toByteArray();
+        Object conversationId = request.context().get(ChatMemory.CONVERSATION_ID);
+        String key = conversationId != null ? conversationId.toString() : ChatMemory.DEFAULT_CONVERSATION_ID;
+        int prefix;
+        synchronized (lock) {
+            byte[] before = previous.get(key);
+            int mismatch = Arrays.mismatch(before != null ? before : last, current);
+            prefix = mismatch < 0 ? current.length : mismatch;
+            previous.put(key, current);
+            last = current;
+        }
+        requests.increment();
+        promptBytes.add(current.length);
+        stablePrefixBytes.add(prefix);
+        lastPrefixBytes.set(prefix);
+        lastPromptBytes.set(current.length);
+        log.debug("prompt bytes:{}, stable prefix bytes:{}", current.length, prefix);
+    }
+
+    public Stats getStats() {
+        long count = requests.sum();
+        long total = promptBytes.sum();
+        return new Stats(count,
+                lastPromptBytes.get(),
+                lastPrefixBytes.get(),
+                count == 0 ? 0 : stablePrefixBytes.sum() / count,
+                total == 0 ? 0 : (double) stablePrefixBytes.sum() / total);
+    }
+
+    @NonNull
+    @Override
+    public ChatClientResponse adviseCall(@NonNull ChatClientRequest chatClientRequest,
+                                         @NonNull CallAdvisorChain callAdvisorChain) {
+        this.record(chatClientRequest);
+        return callAdvisorChain.nextCall(chatClientRequest);
+    }
+
+    @NonNull
+    @Override
+    public Flux<ChatClientResponse> adviseStream(@NonNull ChatClientRequest chatClientRequest,
+                                                 @NonNull StreamAdvisorChain streamAdvisorChain) {
+        this.record(chatClientRequest);
+        return streamAdvisorChain.nextStream(chatClientRequest);
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return "promptPrefix";
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 1;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+
+        private final long requests;
+        private final long lastPromptBytes;
+        private final long lastStablePrefixBytes;
+        private final long avgStablePrefixBytes;
+        private final double stablePrefixRatio;
+    }
+}
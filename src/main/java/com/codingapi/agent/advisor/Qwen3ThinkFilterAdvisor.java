@@ -1,5 +1,7 @@
 package com.codingapi.agent.advisor;
 
+import com.codingapi.agent.model.ModelProfile;
+import com.codingapi.agent.model.ModelProfiles;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClientRequest;
@@ -18,38 +20,41 @@ import reactor.core.publisher.Flux;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 
+/**
+ * hides the think blocks of reasoning models when think is off.
+ * the capabilities come from the {@link ModelProfile} of the request model, the advisor keeps no per-request state
+ * and one instance serves every request.
+ */
 @Slf4j
 public class Qwen3ThinkFilterAdvisor implements CallAdvisor, StreamAdvisor {
 
-    private final boolean thinkEnabled;
+    private static final Pattern THINK_PATTERN = Pattern.compile("(?s)<think>.*?</think>");
+    private static final Pattern BLANK_LINE_PATTERN = Pattern.compile("(?m)^[ \\t]*\\r?\\n");
 
-    private boolean qwen3Model = false;
+    private final boolean thinkEnabled;
+    private final ModelProfiles modelProfiles;
 
-    public Qwen3ThinkFilterAdvisor(boolean thinkEnabled) {
+    public Qwen3ThinkFilterAdvisor(boolean thinkEnabled, ModelProfiles modelProfiles) {
         this.thinkEnabled = thinkEnabled;
+        this.modelProfiles = modelProfiles;
     }
 
-    private void checkModelName(ChatClientRequest advisedRequest) {
+    private ModelProfile profile(ChatClientRequest advisedRequest) {
         ChatOptions chatOptions = advisedRequest.prompt().getOptions();
-        if (chatOptions != null) {
-            String modelName = chatOptions.getModel();
-            this.qwen3Model = modelName != null && modelName.contains("qwen3");
-        }
+        return modelProfiles.resolve(chatOptions != null ? chatOptions.getModel() : null);
     }
 
     private List<Generation> filterGenerations(List<Generation> generations) {
-        if (thinkEnabled) {
-            return generations;
-        }
         List<Generation> generationList = new ArrayList<>();
         for (Generation generation : generations) {
             AssistantMessage assistantMessage = generation.getOutput();
             String text = assistantMessage.getText();
             if (text != null) {
                 if (text.contains("<think>")) {
-                    text = text.replaceAll("(?s)<think>.*?</think>", "");
-                    text = text.replaceAll("(?m)^[ \\t]*\\r?\\n", "");
+                    text = THINK_PATTERN.matcher(text).replaceAll("");
+                    text = BLANK_LINE_PATTERN.matcher(text).replaceAll("");
                 }
                 AssistantMessage responseMessage = new AssistantMessage(text,
                         assistantMessage.getMetadata(),
@@ -64,8 +69,8 @@ public class Qwen3ThinkFilterAdvisor implements CallAdvisor, StreamAdvisor {
     }
 
 
-    private ChatClientRequest filterRequest(ChatClientRequest advisedRequest) {
-        if (thinkEnabled) {
+    private ChatClientRequest filterRequest(ChatClientRequest advisedRequest, ModelProfile profile) {
+        if (!profile.isThinkSwitch()) {
             return advisedRequest;
         }
         Prompt prompt = advisedRequest.prompt();
@@ -83,9 +88,9 @@ public class Qwen3ThinkFilterAdvisor implements CallAdvisor, StreamAdvisor {
     @Override
     public ChatClientResponse adviseCall(@NonNull ChatClientRequest chatClientRequest,
                                          @NonNull CallAdvisorChain callAdvisorChain) {
-        this.checkModelName(chatClientRequest);
-        if (qwen3Model) {
-            ChatClientRequest request = this.filterRequest(chatClientRequest);
+        ModelProfile profile = this.profile(chatClientRequest);
+        if (!thinkEnabled && profile.isThinkTags()) {
+            ChatClientRequest request = this.filterRequest(chatClientRequest, profile);
             ChatClientResponse response = callAdvisorChain.nextCall(request);
             assert response.chatResponse() != null;
             List<Generation> generations = response.chatResponse().getResults();
@@ -104,25 +109,78 @@ public class Qwen3ThinkFilterAdvisor implements CallAdvisor, StreamAdvisor {
     @Override
     public Flux<ChatClientResponse> adviseStream(@NonNull ChatClientRequest chatClientRequest,
                                                  @NonNull StreamAdvisorChain streamAdvisorChain) {
-        this.checkModelName(chatClientRequest);
-        if (qwen3Model) {
-            ChatClientRequest request = this.filterRequest(chatClientRequest);
-            return streamAdvisorChain.nextStream(request)
-                    .map(advisedResponse -> {
-                        assert advisedResponse.chatResponse() != null;
-                        List<Generation> generations = this.filterGenerations(advisedResponse.chatResponse().getResults());
-                        return ChatClientResponse.builder()
-                                .chatResponse(ChatResponse.builder()
-                                        .generations(this.filterGenerations(generations))
-                                        .build())
-                                .context(request.context())
-                                .build();
-                    });
+        ModelProfile profile = this.profile(chatClientRequest);
+        if (!thinkEnabled && profile.isThinkTags()) {
+            ChatClientRequest request = this.filterRequest(chatClientRequest, profile);
+            Flux<ChatClientResponse> responses = streamAdvisorChain.nextStream(request);
+            return Flux.defer(() -> {
+                List<ThinkTagFilter> filters = new ArrayList<>(1);
+                return responses
+                        .map(advisedResponse -> this.filterStreamResponse(advisedResponse, filters))
+                        .concatWith(Flux.defer(() -> this.flushStreamResponse(filters, request)));
+            });
         } else {
             return streamAdvisorChain.nextStream(chatClientRequest);
         }
     }
 
+    private ChatClientResponse filterStreamResponse(ChatClientResponse advisedResponse, List<ThinkTagFilter> filters) {
+        ChatResponse chatResponse = advisedResponse.chatResponse();
+        if (chatResponse == null) {
+            return advisedResponse;
+        }
+        List<Generation> generations = chatResponse.getResults();
+        List<Generation> generationList = new ArrayList<>(generations.size());
+        for (int i = 0; i < generations.size(); i++) {
+            if (filters.size() <= i) {
+                filters.add(new ThinkTagFilter());
+            }
+            Generation generation = generations.get(i);
+            AssistantMessage assistantMessage = generation.getOutput();
+            String text = assistantMessage.getText();
+            if (text == null) {
+                generationList.add(generation);
+                continue;
+            }
+            String filtered = filters.get(i).filter(text);
+            if (filtered == text) {
+                generationList.add(generation);
+            } else {
+                AssistantMessage responseMessage = new AssistantMessage(filtered,
+                        assistantMessage.getMetadata(),
+                        assistantMessage.getToolCalls(),
+                        assistantMessage.getMedia());
+                generationList.add(new Generation(responseMessage, generation.getMetadata()));
+            }
+        }
+        return ChatClientResponse.builder()
+                .chatResponse(ChatResponse.builder()
+                        .from(chatResponse)
+                        .generations(generationList)
+                        .build())
+                .context(advisedResponse.context())
+                .build();
+    }
+
+    private Flux<ChatClientResponse> flushStreamResponse(List<ThinkTagFilter> filters, ChatClientRequest request) {
+        List<Generation> generationList = new ArrayList<>(filters.size());
+        boolean pending = false;
+        for (ThinkTagFilter filter : filters) {
+            String text = filter.flush();
+            pending = pending || !text.isEmpty();
+            generationList.add(new Generation(new AssistantMessage(text)));
+        }
+        if (!pending) {
+            return Flux.empty();
+        }
+        return Flux.just(ChatClientResponse.builder()
+                .chatResponse(ChatResponse.builder()
+                        .generations(generationList)
+                        .build())
+                .context(request.context())
+                .build());
+    }
+
     @NonNull
     @Override
     public String getName() {
@@ -0,0 +1,107 @@
+package com.codingapi.agent.advisor;
+
+/**
+ * think tag filter for streamed chunks.
+ * a small state machine that strips {@code <think>...</think>} blocks even when the tags are split across chunks.
+ * one instance per stream, not thread safe.
+ */
+public class ThinkTagFilter {
+
+    private static final char[] OPEN_TAG = "<think>".toCharArray();
+    private static final char[] CLOSE_TAG = "</think>".toCharArray();
+
+    private final StringBuilder buffer = new StringBuilder(64);
+
+    /**
+     * inside a think block
+     */
+    private boolean inside = false;
+
+    /**
+     * matched chars of the current tag
+     */
+    private int matched = 0;
+
+    /**
+     * skip the whitespace right after a think block
+     */
+    private boolean skipWhitespace = false;
+
+    /**
+     * filter a streamed chunk
+     *
+     * @param chunk streamed chunk
+     * @return visible text, the same instance when nothing was filtered
+     */
+    public String filter(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return "";
+        }
+        if (!inside && matched == 0 && !skipWhitespace && chunk.indexOf('<') < 0) {
+            return chunk;
+        }
+        buffer.setLength(0);
+        for (int i = 0; i < chunk.length(); i++) {
+            this.accept(chunk.charAt(i));
+        }
+        return buffer.isEmpty() ? "" : buffer.toString();
+    }
+
+    /**
+     * flush the pending partial tag at the end of the stream, e.g. a text ending with {@code "<thi"}
+     *
+     * @return remaining visible text
+     */
+    public String flush() {
+        if (inside || matched == 0) {
+            matched = 0;
+            return "";
+        }
+        String pending = new String(OPEN_TAG, 0, matched);
+        matched = 0;
+        return pending;
+    }
+
+    private void accept(char c) {
+        if (inside) {
+            if (c == CLOSE_TAG[matched]) {
+                matched++;
+                if (matched == CLOSE_TAG.length) {
+                    inside = false;
+                    matched = 0;
+                    skipWhitespace = true;
+                }
+            } else {
+                matched = c == CLOSE_TAG[0] ? 1 : 0;
+            }
+            return;
+        }
+
+        if (c == OPEN_TAG[matched]) {
+            matched++;
+            if (matched == OPEN_TAG.length) {
+                inside = true;
+                matched = 0;
+            }
+            return;
+        }
+
+        if (matched > 0) {
+            buffer.append(OPEN_TAG, 0, matched);
+            skipWhitespace = false;
+            matched = 0;
+            if (c == OPEN_TAG[0]) {
+                matched = 1;
+                return;
+            }
+        }
+
+        if (skipWhitespace) {
+            if (Character.isWhitespace(c)) {
+                return;
+            }
+            skipWhitespace = false;
+        }
+        buffer.append(c);
+    }
+}
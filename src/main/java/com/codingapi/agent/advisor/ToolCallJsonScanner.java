@@ -0,0 +1,198 @@
+package com.codingapi.agent.advisor;
+
+import java.util.function.Consumer;
+
+/**
+ * incremental scanner of streamed model output.
+ * when the answer starts with a json object or array (optionally after a think block or a markdown fence),
+ * every complete top-level tool call object is reported as soon as its closing brace arrives.
+ * any other answer is reported as plain text right away without buffering.
+ * one instance per stream, not thread safe.
+ */
+public class ToolCallJsonScanner {
+
+    private static final String THINK_OPEN = "<think>";
+    private static final String THINK_CLOSE = "</think>";
+    private static final String FENCE = "```json";
+
+    private enum State {
+        DETECT, THINK, JSON, TEXT, DONE
+    }
+
+    private State state = State.DETECT;
+
+    /**
+     * undecided leading text in DETECT state
+     */
+    private final StringBuilder pending = new StringBuilder();
+
+    /**
+     * raw json text, used as the plain answer when no tool call could be parsed
+     */
+    private final StringBuilder json = new StringBuilder();
+
+    private final StringBuilder object = new StringBuilder();
+
+    private int depth = 0;
+    private int objectDepth = 0;
+    private boolean inString = false;
+    private boolean escape = false;
+    private int thinkCloseMatched = 0;
+
+    /**
+     * scan a streamed chunk
+     *
+     * @param chunk    streamed chunk
+     * @param onText   receives text that is not part of the tool call json
+     * @param onObject receives each complete tool call object
+     */
+    public void feed(String chunk, Consumer<String> onText, Consumer<String> onObject) {
+        if (chunk == null || chunk.isEmpty()) {
+            return;
+        }
+        if (state == State.TEXT) {
+            onText.accept(chunk);
+            return;
+        }
+        int textStart = state == State.THINK ? 0 : -1;
+        for (int i = 0; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            switch (state) {
+                case DETECT -> {
+                    String head = pending.toString();
+                    this.detect(c, onObject);
+                    if (state == State.THINK) {
+                        onText.accept(pending.toString());
+                        pending.setLength(0);
+                        textStart = i + 1;
+                    } else if (state == State.TEXT) {
+                        pending.setLength(0);
+                        onText.accept(head.isEmpty() && i == 0 ? chunk : head + chunk.substring(i));
+                        return;
+                    }
+                }
+                case THINK -> {
+                    if (c == THINK_CLOSE.charAt(thinkCloseMatched)) {
+                        thinkCloseMatched++;
+                        if (thinkCloseMatched == THINK_CLOSE.length()) {
+                            thinkCloseMatched = 0;
+                            onText.accept(chunk.substring(textStart, i + 1));
+                            textStart = -1;
+                            state = State.DETECT;
+                        }
+                    } else {
+                        thinkCloseMatched = c == THINK_CLOSE.charAt(0) ? 1 : 0;
+                    }
+                }
+                case JSON -> this.scanJson(c, onObject);
+                default -> {
+                    // trailing text after the json, e.g. a closing markdown fence
+                    return;
+                }
+            }
+        }
+        if (state == State.THINK && textStart < chunk.length()) {
+            onText.accept(chunk.substring(textStart));
+        }
+    }
+
+    private void detect(char c, Consumer<String> onObject) {
+        String trimmed = pending.toString().trim();
+        boolean fence = trimmed.equals(FENCE) || trimmed.equals("```");
+        if ((c == '[' || c == '{') && (trimmed.isEmpty() || fence)) {
+            pending.setLength(0);
+            state = State.JSON;
+            this.scanJson(c, onObject);
+            return;
+        }
+        if (Character.isWhitespace(c)) {
+            if (trimmed.isEmpty() || fence) {
+                pending.append(c);
+            } else {
+                state = State.TEXT;
+            }
+            return;
+        }
+        String candidate = trimmed + c;
+        if (THINK_OPEN.startsWith(candidate) || FENCE.startsWith(candidate)) {
+            pending.append(c);
+            if (candidate.equals(THINK_OPEN)) {
+                state = State.THINK;
+            }
+            return;
+        }
+        state = State.TEXT;
+    }
+
+    private void scanJson(char c, Consumer<String> onObject) {
+        json.append(c);
+        if (objectDepth > 0) {
+            object.append(c);
+        }
+        if (inString) {
+            if (escape) {
+                escape = false;
+            } else if (c == '\\') {
+                escape = true;
+            } else if (c == '"') {
+                inString = false;
+            }
+            return;
+        }
+        switch (c) {
+            case '"' -> inString = true;
+            case '{', '[' -> {
+                depth++;
+                if (c == '{' && objectDepth == 0 && depth <= 2) {
+                    objectDepth = depth;
+                    object.setLength(0);
+                    object.append(c);
+                }
+            }
+            case '}', ']' -> {
+                if (c == '}' && objectDepth == depth) {
+                    objectDepth = 0;
+                    if (onObject != null) {
+                        onObject.accept(object.toString());
+                    }
+                }
+                depth--;
+                if (depth == 0) {
+                    state = State.DONE;
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * @return the answer was recognized as tool call json
+     */
+    public boolean isJson() {
+        return state == State.JSON || state == State.DONE;
+    }
+
+    /**
+     * @return the answer was recognized as plain text
+     */
+    public boolean isText() {
+        return state == State.TEXT;
+    }
+
+    /**
+     * @return the raw json text scanned so far
+     */
+    public String getJson() {
+        return json.toString();
+    }
+
+    /**
+     * undecided leading text at the end of the stream, e.g. an answer that only contains whitespace
+     */
+    public String flush() {
+        String text = pending.toString();
+        pending.setLength(0);
+        return text;
+    }
+}
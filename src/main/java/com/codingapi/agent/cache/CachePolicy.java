@@ -0,0 +1,77 @@
+package com.codingapi.agent.cache;
+
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * rules shared by the {@link ResponseCacheAdvisor} and the {@link SemanticCacheAdvisor}.
+ * a request is cacheable with an explicit temperature up to the max temperature and no tool round in it,
+ * an answer is cacheable when it holds no tool calls and no tool was called natively while producing it.
+ */
+final class CachePolicy {
+
+    private CachePolicy() {
+    }
+
+    static boolean cacheable(Prompt prompt, double maxTemperature) {
+        ChatOptions options = prompt.getOptions();
+        Double temperature = options != null ? options.getTemperature() : null;
+        if (temperature == null || temperature > maxTemperature) {
+            return false;
+        }
+        for (Message message : prompt.getInstructions()) {
+            if (message instanceof ToolResponseMessage) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean cacheable(ChatResponse chatResponse, ToolCallTracker toolCallTracker) {
+        return chatResponse != null
+                && !chatResponse.getResults().isEmpty()
+                && !chatResponse.hasToolCalls()
+                && !toolCallTracker.isCalled();
+    }
+
+    /**
+     * digest of everything in the prompt but the last user message: the system text with the rendered memory
+     * and summary, and any earlier messages. answers are only shared between requests with the same context.
+     */
+    static String contextDigest(Prompt prompt) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("sha-256 not supported", e);
+        }
+        List<Message> messages = prompt.getInstructions();
+        int last = messages.size() - 1;
+        while (last >= 0 && !(messages.get(last) instanceof UserMessage)) {
+            last--;
+        }
+        for (int i = 0; i < messages.size(); i++) {
+            if (i == last) {
+                continue;
+            }
+            Message message = messages.get(i);
+            digest.update(message.getMessageType().getValue().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            if (message.getText() != null) {
+                digest.update(message.getText().getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
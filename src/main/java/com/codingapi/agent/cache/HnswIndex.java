@@ -0,0 +1,353 @@
+package com.codingapi.agent.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * hierarchical navigable small world graph over float vectors with cosine similarity.
+ * vectors are normalized on insert so the similarity is a plain dot product.
+ * removed nodes stay in the graph as waypoints and are only skipped in the results.
+ * not thread safe, callers synchronize.
+ */
+public class HnswIndex {
+
+    private static final Comparator<Neighbor> NEAREST_FIRST = (a, b) -> Float.compare(b.similarity(), a.similarity());
+    private static final Comparator<Neighbor> FARTHEST_FIRST = (a, b) -> Float.compare(a.similarity(), b.similarity());
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelFactor;
+    private final Random random = new Random(42);
+
+    private float[][] vectors = new float[16][];
+    /**
+     * links[node][level] = [count, neighbor...]
+     */
+    private int[][][] links = new int[16][][];
+    private boolean[] deleted = new boolean[16];
+    private int[] visited = new int[16];
+    private int visitedEpoch = 0;
+
+    private int size = 0;
+    private int deletedCount = 0;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimension, int m, int efConstruction) {
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelFactor = 1 / Math.log(Math.max(2, m));
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * nodes in the graph, removed ones included
+     */
+    public int size() {
+        return size;
+    }
+
+    public int liveSize() {
+        return size - deletedCount;
+    }
+
+    public int deletedSize() {
+        return deletedCount;
+    }
+
+    public float[] vector(int node) {
+        return vectors[node];
+    }
+
+    public boolean isDeleted(int node) {
+        return deleted[node];
+    }
+
+    /**
+     * insert a vector
+     *
+     * @return node id, ids are dense and assigned in insertion order
+     */
+    public int add(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("vector dimension " + vector.length + " != " + dimension);
+        }
+        float[] normalized = normalize(vector);
+        this.ensureCapacity(size + 1);
+        int node = size++;
+        int level = this.randomLevel();
+        int[][] nodeLinks = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            nodeLinks[l] = new int[(l == 0 ? maxM0 : m) + 1];
+        }
+        vectors[node] = normalized;
+        links[node] = nodeLinks;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = this.greedy(normalized, current, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Neighbor> candidates = this.searchLayer(normalized, current, efConstruction, l);
+            int count = 0;
+            for (Neighbor candidate : candidates) {
+                if (count == m) {
+                    break;
+                }
+                nodeLinks[l][++count] = candidate.node();
+                this.connect(candidate.node(), node, l);
+            }
+            nodeLinks[l][0] = count;
+            current = candidates.get(0).node();
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    public void remove(int node) {
+        if (!deleted[node]) {
+            deleted[node] = true;
+            deletedCount++;
+        }
+    }
+
+    /**
+     * search the nearest live nodes
+     *
+     * @param query vector
+     * @param k     max results
+     * @param ef    size of the dynamic candidate list, higher is more accurate and slower
+     * @return nearest first
+     */
+    public List<Neighbor> search(float[] query, int k, int ef) {
+        if (entryPoint < 0 || query.length != dimension) {
+            return List.of();
+        }
+        float[] normalized = normalize(query);
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = this.greedy(normalized, current, l);
+        }
+        List<Neighbor> candidates = this.searchLayer(normalized, current, Math.max(ef, k), 0);
+        List<Neighbor> results = new ArrayList<>(k);
+        for (Neighbor candidate : candidates) {
+            if (results.size() == k) {
+                break;
+            }
+            if (!deleted[candidate.node()]) {
+                results.add(candidate);
+            }
+        }
+        return results;
+    }
+
+    private int greedy(float[] query, int entry, int level) {
+        int current = entry;
+        float best = similarity(query, vectors[current]);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] nodeLinks = links[current][level];
+            for (int i = 1; i <= nodeLinks[0]; i++) {
+                int neighbor = nodeLinks[i];
+                float similarity = similarity(query, vectors[neighbor]);
+                if (similarity > best) {
+                    best = similarity;
+                    current = neighbor;
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    private List<Neighbor> searchLayer(float[] query, int entry, int ef, int level) {
+        int epoch = this.nextVisitedEpoch();
+        PriorityQueue<Neighbor> candidates = new PriorityQueue<>(NEAREST_FIRST);
+        PriorityQueue<Neighbor> results = new PriorityQueue<>(FARTHEST_FIRST);
+        Neighbor start = new Neighbor(entry, similarity(query, vectors[entry]));
+        visited[entry] = epoch;
+        candidates.add(start);
+        results.add(start);
+
+        while (!candidates.isEmpty()) {
+            Neighbor candidate = candidates.poll();
+            if (results.size() >= ef && candidate.similarity() < results.peek().similarity()) {
+                break;
+            }
+            int[] nodeLinks = links[candidate.node()][level];
+            for (int i = 1; i <= nodeLinks[0]; i++) {
+                int neighbor = nodeLinks[i];
+                if (visited[neighbor] == epoch) {
+                    continue;
+                }
+                visited[neighbor] = epoch;
+                float similarity = similarity(query, vectors[neighbor]);
+                if (results.size() < ef || similarity > results.peek().similarity()) {
+                    Neighbor next = new Neighbor(neighbor, similarity);
+                    candidates.add(next);
+                    results.add(next);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        List<Neighbor> sorted = new ArrayList<>(results);
+        sorted.sort(NEAREST_FIRST);
+        return sorted;
+    }
+
+    /**
+     * link neighbor to node, a full link list drops its least similar link when the new neighbor is closer
+     */
+    private void connect(int node, int neighbor, int level) {
+        int[] nodeLinks = links[node][level];
+        int count = nodeLinks[0];
+        if (count < nodeLinks.length - 1) {
+            nodeLinks[++count] = neighbor;
+            nodeLinks[0] = count;
+            return;
+        }
+        float[] vector = vectors[node];
+        int worst = -1;
+        float worstSimilarity = similarity(vector, vectors[neighbor]);
+        for (int i = 1; i <= count; i++) {
+            float similarity = similarity(vector, vectors[nodeLinks[i]]);
+            if (similarity < worstSimilarity) {
+                worstSimilarity = similarity;
+                worst = i;
+            }
+        }
+        if (worst > 0) {
+            nodeLinks[worst] = neighbor;
+        }
+    }
+
+    private int nextVisitedEpoch() {
+        if (++visitedEpoch == Integer.MAX_VALUE) {
+            Arrays.fill(visited, 0);
+            visitedEpoch = 1;
+        }
+        return visitedEpoch;
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1 - random.nextDouble()) * levelFactor);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= vectors.length) {
+            return;
+        }
+        int length = Math.max(capacity, vectors.length * 2);
+        vectors = Arrays.copyOf(vectors, length);
+        links = Arrays.copyOf(links, length);
+        deleted = Arrays.copyOf(deleted, length);
+        visited = Arrays.copyOf(visited, length);
+    }
+
+    static float similarity(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    public void write(DataOutput output) throws IOException {
+        output.writeInt(dimension);
+        output.writeInt(m);
+        output.writeInt(efConstruction);
+        output.writeInt(size);
+        output.writeInt(entryPoint);
+        output.writeInt(maxLevel);
+        for (int node = 0; node < size; node++) {
+            output.writeBoolean(deleted[node]);
+            for (float value : vectors[node]) {
+                output.writeFloat(value);
+            }
+            output.writeInt(links[node].length);
+            for (int[] levelLinks : links[node]) {
+                output.writeInt(levelLinks[0]);
+                for (int i = 1; i <= levelLinks[0]; i++) {
+                    output.writeInt(levelLinks[i]);
+                }
+            }
+        }
+    }
+
+    public static HnswIndex read(DataInput input) throws IOException {
+        HnswIndex index = new HnswIndex(input.readInt(), input.readInt(), input.readInt());
+        int size = input.readInt();
+        index.ensureCapacity(size);
+        index.size = size;
+        index.entryPoint = input.readInt();
+        index.maxLevel = input.readInt();
+        for (int node = 0; node < size; node++) {
+            if (input.readBoolean()) {
+                index.deleted[node] = true;
+                index.deletedCount++;
+            }
+            float[] vector = new float[index.dimension];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = input.readFloat();
+            }
+            index.vectors[node] = vector;
+            int levels = input.readInt();
+            int[][] nodeLinks = new int[levels][];
+            for (int l = 0; l < levels; l++) {
+                int count = input.readInt();
+                nodeLinks[l] = new int[(l == 0 ? index.maxM0 : index.m) + 1];
+                nodeLinks[l][0] = count;
+                for (int i = 1; i <= count; i++) {
+                    nodeLinks[l][i] = input.readInt();
+                }
+            }
+            index.links[node] = nodeLinks;
+        }
+        return index;
+    }
+
+    public record Neighbor(int node, float similarity) {
+    }
+}
@@ -0,0 +1,148 @@
+package com.codingapi.agent.cache;
+
+import com.codingapi.agent.properties.AgentProperties;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * size-bounded LRU cache of model responses keyed on the hash of the fully assembled prompt
+ */
+@Component
+public class ResponseCache {
+
+    private final LinkedHashMap<String, Entry> entries;
+    private final long ttlMillis;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ResponseCache(AgentProperties agentProperties) {
+        AgentProperties.ResponseCache responseCache = agentProperties.getResponseCache();
+        int maxSize = responseCache.getMaxSize();
+        this.ttlMillis = responseCache.getTtl().toMillis();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * cache key of a prompt: messages in order, model, sampling options and the tool set.
+     * the tool context is left out, it carries the chat id and does not reach the model.
+     */
+    public static String key(Prompt prompt) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("sha-256 not supported", e);
+        }
+        for (Message message : prompt.getInstructions()) {
+            update(digest, message.getMessageType().getValue());
+            update(digest, message.getText());
+            if (message instanceof AssistantMessage assistantMessage && assistantMessage.hasToolCalls()) {
+                for (AssistantMessage.ToolCall toolCall : assistantMessage.getToolCalls()) {
+                    update(digest, toolCall.name());
+                    update(digest, toolCall.arguments());
+                }
+            }
+            if (message instanceof ToolResponseMessage toolResponseMessage) {
+                for (ToolResponseMessage.ToolResponse toolResponse : toolResponseMessage.getResponses()) {
+                    update(digest, toolResponse.name());
+                    update(digest, toolResponse.responseData());
+                }
+            }
+        }
+
+        ChatOptions options = prompt.getOptions();
+        if (options != null) {
+            update(digest, options.getModel());
+            update(digest, options.getTemperature());
+            update(digest, options.getTopP());
+            update(digest, options.getTopK());
+            update(digest, options.getMaxTokens());
+            update(digest, options.getFrequencyPenalty());
+            update(digest, options.getPresencePenalty());
+            update(digest, options.getStopSequences());
+            if (options instanceof ToolCallingChatOptions toolCallingChatOptions) {
+                TreeSet<String> toolNames = new TreeSet<>(toolCallingChatOptions.getToolNames());
+                for (ToolCallback toolCallback : toolCallingChatOptions.getToolCallbacks()) {
+                    toolNames.add(toolCallback.getToolDefinition().name());
+                }
+                update(digest, toolNames);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, Object value) {
+        if (value != null) {
+            digest.update(value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+    }
+
+    public synchronized ChatResponse get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expireAt < System.currentTimeMillis()) {
+            entries.remove(key);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.response;
+    }
+
+    public synchronized void put(String key, ChatResponse response) {
+        entries.put(key, new Entry(response, System.currentTimeMillis() + ttlMillis));
+    }
+
+    public synchronized Stats getStats() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return new Stats(entries.size(), hitCount, misses.sum(), evictions.sum(), total == 0 ? 0 : (double) hitCount / total);
+    }
+
+    private record Entry(ChatResponse response, long expireAt) {
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final double hitRatio;
+    }
+}
@@ -0,0 +1,113 @@
+package com.codingapi.agent.cache;
+
+import com.codingapi.agent.properties.AgentProperties;
+import lombok.NonNull;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * serves identical prompts from the {@link ResponseCache}.
+ * runs after the memory advisors, so the key covers the prompt exactly as it is sent to the model.
+ * requests and answers are cached by the rules of {@link CachePolicy}.
+ */
+public class ResponseCacheAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final ResponseCache responseCache;
+    private final AgentProperties.ResponseCache properties;
+
+    public ResponseCacheAdvisor(ResponseCache responseCache, AgentProperties.ResponseCache properties) {
+        this.responseCache = responseCache;
+        this.properties = properties;
+    }
+
+    private static ChatClientResponse cached(ChatResponse chatResponse, ChatClientRequest request) {
+        return ChatClientResponse.builder()
+                .chatResponse(chatResponse)
+                .context(request.context())
+                .build();
+    }
+
+    @NonNull
+    @Override
+    public ChatClientResponse adviseCall(@NonNull ChatClientRequest chatClientRequest,
+                                         @NonNull CallAdvisorChain callAdvisorChain) {
+        if (!CachePolicy.cacheable(chatClientRequest.prompt(), properties.getMaxTemperature())) {
+            return callAdvisorChain.nextCall(chatClientRequest);
+        }
+        String key = ResponseCache.key(chatClientRequest.prompt());
+        ChatResponse cachedResponse = responseCache.get(key);
+        if (cachedResponse != null) {
+            return cached(cachedResponse, chatClientRequest);
+        }
+        ToolCallTracker toolCallTracker = new ToolCallTracker();
+        ChatClientResponse response = callAdvisorChain.nextCall(toolCallTracker.track(chatClientRequest));
+        if (CachePolicy.cacheable(response.chatResponse(), toolCallTracker)) {
+            responseCache.put(key, response.chatResponse());
+        }
+        return response;
+    }
+
+    @NonNull
+    @Override
+    public Flux<ChatClientResponse> adviseStream(@NonNull ChatClientRequest chatClientRequest,
+                                                 @NonNull StreamAdvisorChain streamAdvisorChain) {
+        if (!CachePolicy.cacheable(chatClientRequest.prompt(), properties.getMaxTemperature())) {
+            return streamAdvisorChain.nextStream(chatClientRequest);
+        }
+        return Flux.defer(() -> {
+            String key = ResponseCache.key(chatClientRequest.prompt());
+            ChatResponse cachedResponse = responseCache.get(key);
+            if (cachedResponse != null) {
+                return Flux.just(cached(cachedResponse, chatClientRequest));
+            }
+            // the streamed chunks are joined into one response and cached when the stream completes
+            StringBuilder text = new StringBuilder();
+            ChatResponse[] last = new ChatResponse[1];
+            boolean[] toolCalls = new boolean[1];
+            ToolCallTracker toolCallTracker = new ToolCallTracker();
+            return streamAdvisorChain.nextStream(toolCallTracker.track(chatClientRequest))
+                    .doOnNext(response -> {
+                        ChatResponse chatResponse = response.chatResponse();
+                        if (chatResponse == null || chatResponse.getResult() == null) {
+                            return;
+                        }
+                        toolCalls[0] = toolCalls[0] || chatResponse.hasToolCalls();
+                        if (chatResponse.getResult().getOutput().getText() != null) {
+                            text.append(chatResponse.getResult().getOutput().getText());
+                        }
+                        last[0] = chatResponse;
+                    })
+                    .doOnComplete(() -> {
+                        if (last[0] != null && !toolCalls[0] && !toolCallTracker.isCalled()) {
+                            responseCache.put(key, ChatResponse.builder()
+                                    .from(last[0])
+                                    .generations(List.of(new Generation(new AssistantMessage(text.toString()),
+                                            last[0].getResult().getMetadata())))
+                                    .build());
+                        }
+                    });
+        });
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return this.getClass().getName();
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 5;
+    }
+}
@@ -0,0 +1,270 @@
+package com.codingapi.agent.cache;
+
+import com.codingapi.agent.properties.AgentProperties;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * semantic answer cache: question embeddings in an in-process {@link HnswIndex}, answers per node.
+ * bounded by evicting the oldest answers, removed nodes are dropped by rebuilding the index once they outnumber the live ones.
+ * the index is snapshotted to disk and loaded on start.
+ */
+@Slf4j
+@Component
+public class SemanticCache implements DisposableBean {
+
+    private static final int SNAPSHOT_MAGIC = 0x53434832;
+
+    private final AgentProperties.SemanticCache properties;
+    private final ScheduledExecutorService scheduler;
+
+    private HnswIndex index;
+    private List<Entry> entries = new ArrayList<>();
+    private ArrayDeque<Integer> order = new ArrayDeque<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SemanticCache(AgentProperties agentProperties) {
+        this.properties = agentProperties.getSemanticCache();
+        if (properties.isEnabled() && StringUtils.hasText(properties.getSnapshotFile())) {
+            this.load();
+            long snapshotMillis = properties.getSnapshotInterval().toMillis();
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("semantic-cache-"));
+            scheduler.scheduleWithFixedDelay(this::snapshot, snapshotMillis, snapshotMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * the stored answer of the most similar question above the similarity threshold
+     *
+     * @param embedding question embedding
+     * @param model     model that answered
+     * @param context   digest of the system text and memory the question was asked in
+     * @return entry, null on a miss
+     */
+    public synchronized Entry get(float[] embedding, String model, String context) {
+        if (index == null) {
+            misses.increment();
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        for (HnswIndex.Neighbor neighbor : index.search(embedding, 4, properties.getEfSearch())) {
+            if (neighbor.similarity() < properties.getSimilarityThreshold()) {
+                break;
+            }
+            Entry entry = entries.get(neighbor.node());
+            if (entry == null) {
+                continue;
+            }
+            if (entry.expireAt < now) {
+                this.remove(neighbor.node());
+                continue;
+            }
+            if (entry.model.equals(model) && entry.context.equals(context)) {
+                hits.increment();
+                return entry;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public synchronized void put(float[] embedding, String model, String context, String question, String answer) {
+        if (index == null) {
+            index = new HnswIndex(embedding.length, properties.getM(), properties.getEfConstruction());
+        }
+        if (embedding.length != index.getDimension()) {
+            // the embedding model was changed, start over
+            this.clear(embedding.length);
+        }
+        int node = index.add(embedding);
+        entries.add(new Entry(model, context, question, answer, System.currentTimeMillis() + properties.getTtl().toMillis()));
+        order.add(node);
+        while (index.liveSize() > properties.getMaxSize()) {
+            if (this.remove(order.poll())) {
+                evictions.increment();
+            }
+        }
+        if (index.deletedSize() > index.liveSize()) {
+            this.rebuild();
+        }
+    }
+
+    private boolean remove(int node) {
+        if (entries.get(node) == null) {
+            return false;
+        }
+        entries.set(node, null);
+        index.remove(node);
+        return true;
+    }
+
+    private void clear(int dimension) {
+        index = new HnswIndex(dimension, properties.getM(), properties.getEfConstruction());
+        entries = new ArrayList<>();
+        order = new ArrayDeque<>();
+    }
+
+    /**
+     * re-insert the live nodes in insertion order, node ids change
+     */
+    private void rebuild() {
+        HnswIndex liveIndex = new HnswIndex(index.getDimension(), properties.getM(), properties.getEfConstruction());
+        List<Entry> liveEntries = new ArrayList<>(index.liveSize());
+        ArrayDeque<Integer> liveOrder = new ArrayDeque<>(index.liveSize());
+        for (int node : order) {
+            Entry entry = entries.get(node);
+            if (entry != null) {
+                liveOrder.add(liveIndex.add(index.vector(node)));
+                liveEntries.add(entry);
+            }
+        }
+        index = liveIndex;
+        entries = liveEntries;
+        order = liveOrder;
+    }
+
+    /**
+     * write the index and the answers to the snapshot file, replaced atomically
+     */
+    public synchronized void snapshot() {
+        if (index == null) {
+            return;
+        }
+        Path file = Paths.get(properties.getSnapshotFile());
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                output.writeInt(SNAPSHOT_MAGIC);
+                index.write(output);
+                for (Entry entry : entries) {
+                    output.writeBoolean(entry != null);
+                    if (entry != null) {
+                        writeString(output, entry.model);
+                        writeString(output, entry.context);
+                        writeString(output, entry.question);
+                        writeString(output, entry.answer);
+                        output.writeLong(entry.expireAt);
+                    }
+                }
+                output.writeInt(order.size());
+                for (int node : order) {
+                    output.writeInt(node);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("semantic cache snapshot error:{}", file, e);
+        }
+    }
+
+    private synchronized void load() {
+        Path file = Paths.get(properties.getSnapshotFile());
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != SNAPSHOT_MAGIC) {
+                log.warn("semantic cache snapshot ignored, unknown format:{}", file);
+                return;
+            }
+            HnswIndex snapshotIndex = HnswIndex.read(input);
+            List<Entry> snapshotEntries = new ArrayList<>(snapshotIndex.size());
+            for (int node = 0; node < snapshotIndex.size(); node++) {
+                snapshotEntries.add(input.readBoolean()
+                        ? new Entry(readString(input), readString(input), readString(input), readString(input),
+                        input.readLong())
+                        : null);
+            }
+            int orderSize = input.readInt();
+            ArrayDeque<Integer> snapshotOrder = new ArrayDeque<>(orderSize);
+            for (int i = 0; i < orderSize; i++) {
+                snapshotOrder.add(input.readInt());
+            }
+            index = snapshotIndex;
+            entries = snapshotEntries;
+            order = snapshotOrder;
+            log.info("semantic cache loaded {} answers from {}", index.liveSize(), file);
+        } catch (IOException e) {
+            log.warn("semantic cache snapshot load error:{}", file, e);
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public synchronized Stats getStats() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return new Stats(index == null ? 0 : index.liveSize(),
+                hitCount,
+                misses.sum(),
+                evictions.sum(),
+                total == 0 ? 0 : (double) hitCount / total);
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            this.snapshot();
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+
+        private final String model;
+        private final String context;
+        private final String question;
+        private final String answer;
+        private final long expireAt;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final double hitRatio;
+    }
+}
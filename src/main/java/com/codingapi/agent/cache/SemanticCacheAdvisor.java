@@ -0,0 +1,148 @@
+package com.codingapi.agent.cache;
+
+import com.codingapi.agent.properties.AgentProperties;
+import lombok.NonNull;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * answers questions similar to an already answered one from the {@link SemanticCache}.
+ * the user message is embedded with the embedding model of the same endpoint, hits are limited to answers
+ * given under the same system text and memory, requests and answers are cached by the rules of {@link CachePolicy}.
+ * runs inside the memory advisor, so cached answers are still written to the chat memory,
+ * and outside the qwen3 think filter, so only filtered answers are cached.
+ */
+public class SemanticCacheAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final SemanticCache semanticCache;
+    private final EmbeddingModel embeddingModel;
+    private final AgentProperties.SemanticCache properties;
+    private final String defaultModel;
+
+    public SemanticCacheAdvisor(SemanticCache semanticCache,
+                                EmbeddingModel embeddingModel,
+                                AgentProperties.SemanticCache properties,
+                                String defaultModel) {
+        this.semanticCache = semanticCache;
+        this.embeddingModel = embeddingModel;
+        this.properties = properties;
+        this.defaultModel = defaultModel == null ? "" : defaultModel;
+    }
+
+    private boolean cacheable(Prompt prompt) {
+        return StringUtils.hasText(prompt.getUserMessage().getText())
+                && CachePolicy.cacheable(prompt, properties.getMaxTemperature());
+    }
+
+    private static boolean cacheable(String answer) {
+        return StringUtils.hasText(answer) && !answer.contains("<think>");
+    }
+
+    private String modelOf(Prompt prompt) {
+        ChatOptions options = prompt.getOptions();
+        return options != null && StringUtils.hasText(options.getModel()) ? options.getModel() : defaultModel;
+    }
+
+    private static ChatClientResponse cached(SemanticCache.Entry entry, ChatClientRequest request) {
+        return ChatClientResponse.builder()
+                .chatResponse(ChatResponse.builder()
+                        .generations(List.of(new Generation(new AssistantMessage(entry.getAnswer()))))
+                        .build())
+                .context(request.context())
+                .build();
+    }
+
+    @NonNull
+    @Override
+    public ChatClientResponse adviseCall(@NonNull ChatClientRequest chatClientRequest,
+                                         @NonNull CallAdvisorChain callAdvisorChain) {
+        Prompt prompt = chatClientRequest.prompt();
+        if (!this.cacheable(prompt)) {
+            return callAdvisorChain.nextCall(chatClientRequest);
+        }
+        String question = prompt.getUserMessage().getText();
+        String model = this.modelOf(prompt);
+        String context = CachePolicy.contextDigest(prompt);
+        float[] embedding = embeddingModel.embed(question);
+        SemanticCache.Entry entry = semanticCache.get(embedding, model, context);
+        if (entry != null) {
+            return cached(entry, chatClientRequest);
+        }
+        ToolCallTracker toolCallTracker = new ToolCallTracker();
+        ChatClientResponse response = callAdvisorChain.nextCall(toolCallTracker.track(chatClientRequest));
+        ChatResponse chatResponse = response.chatResponse();
+        if (CachePolicy.cacheable(chatResponse, toolCallTracker)) {
+            String answer = chatResponse.getResult().getOutput().getText();
+            if (cacheable(answer)) {
+                semanticCache.put(embedding, model, context, question, answer);
+            }
+        }
+        return response;
+    }
+
+    @NonNull
+    @Override
+    public Flux<ChatClientResponse> adviseStream(@NonNull ChatClientRequest chatClientRequest,
+                                                 @NonNull StreamAdvisorChain streamAdvisorChain) {
+        Prompt prompt = chatClientRequest.prompt();
+        if (!this.cacheable(prompt)) {
+            return streamAdvisorChain.nextStream(chatClientRequest);
+        }
+        return Flux.defer(() -> {
+            String question = prompt.getUserMessage().getText();
+            String model = this.modelOf(prompt);
+            String context = CachePolicy.contextDigest(prompt);
+            float[] embedding = embeddingModel.embed(question);
+            SemanticCache.Entry entry = semanticCache.get(embedding, model, context);
+            if (entry != null) {
+                return Flux.just(cached(entry, chatClientRequest));
+            }
+            StringBuilder text = new StringBuilder();
+            boolean[] toolCalls = new boolean[1];
+            ToolCallTracker toolCallTracker = new ToolCallTracker();
+            return streamAdvisorChain.nextStream(toolCallTracker.track(chatClientRequest))
+                    .doOnNext(response -> {
+                        ChatResponse chatResponse = response.chatResponse();
+                        if (chatResponse == null || chatResponse.getResult() == null) {
+                            return;
+                        }
+                        toolCalls[0] = toolCalls[0] || chatResponse.hasToolCalls();
+                        if (chatResponse.getResult().getOutput().getText() != null) {
+                            text.append(chatResponse.getResult().getOutput().getText());
+                        }
+                    })
+                    .doOnComplete(() -> {
+                        String answer = text.toString();
+                        if (!toolCalls[0] && !toolCallTracker.isCalled() && cacheable(answer)) {
+                            semanticCache.put(embedding, model, context, question, answer);
+                        }
+                    });
+        });
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return this.getClass().getName();
+    }
+
+    @Override
+    public int getOrder() {
+        return Advisor.DEFAULT_CHAT_MEMORY_PRECEDENCE_ORDER + 100;
+    }
+}
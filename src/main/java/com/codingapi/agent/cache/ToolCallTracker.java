@@ -0,0 +1,69 @@
+package com.codingapi.agent.cache;
+
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+/**
+ * records whether the tools of a request were called while the model answered it.
+ * native tools are executed inside the model call, so an answer without tool calls may still depend on tool results.
+ */
+class ToolCallTracker {
+
+    private volatile boolean called = false;
+
+    /**
+     * @return the request with its tool callbacks wrapped, unchanged when it offers no tool callbacks
+     */
+    ChatClientRequest track(ChatClientRequest request) {
+        Prompt prompt = request.prompt();
+        if (!(prompt.getOptions() instanceof ToolCallingChatOptions options) || options.getToolCallbacks().isEmpty()) {
+            return request;
+        }
+        ToolCallingChatOptions tracked = options.copy();
+        tracked.setToolCallbacks(options.getToolCallbacks().stream()
+                .map(this::wrap)
+                .toList());
+        return ChatClientRequest.builder()
+                .prompt(Prompt.builder()
+                        .messages(prompt.getInstructions())
+                        .chatOptions(tracked)
+                        .build())
+                .context(request.context())
+                .build();
+    }
+
+    boolean isCalled() {
+        return called;
+    }
+
+    private ToolCallback wrap(ToolCallback toolCallback) {
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return toolCallback.getToolDefinition();
+            }
+
+            @Override
+            public ToolMetadata getToolMetadata() {
+                return toolCallback.getToolMetadata();
+            }
+
+            @Override
+            public String call(String toolInput) {
+                called = true;
+                return toolCallback.call(toolInput);
+            }
+
+            @Override
+            public String call(String toolInput, ToolContext toolContext) {
+                called = true;
+                return toolCallback.call(toolInput, toolContext);
+            }
+        };
+    }
+}
@@ -0,0 +1,296 @@
+package com.codingapi.agent.cluster;
+
+import com.codingapi.agent.memory.MessageCodec;
+import com.codingapi.agent.properties.AgentProperties;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * chat memory partitioned across the cluster by consistent hashing of the chat id.
+ * the owner of a conversation keeps it in the local repository and copies every save to the next {@code replicas}
+ * nodes of the ring, other nodes read and write it on the owner over the {@link ClusterTransport} and fall back to
+ * a replica when the owner fails. the nodes are probed periodically, when the reachable nodes change the ring is
+ * rebuilt and the local conversations are handed to their new owners and replicas.
+ */
+@Slf4j
+public class ClusterChatMemoryRepository implements ChatMemoryRepository, DisposableBean {
+
+    private final ChatMemoryRepository local;
+    private final ClusterTransport transport;
+    private final String self;
+    private final List<String> nodes;
+    private final int virtualNodes;
+    private final int copies;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile ConsistentHashRing ring;
+
+    private final LongAdder remoteReads = new LongAdder();
+    private final LongAdder remoteWrites = new LongAdder();
+    private final LongAdder failovers = new LongAdder();
+    private final LongAdder replicationErrors = new LongAdder();
+    private final LongAdder rebalanced = new LongAdder();
+
+    public ClusterChatMemoryRepository(ChatMemoryRepository local,
+                                       ClusterTransport transport,
+                                       AgentProperties.Cluster cluster) {
+        this.local = local;
+        this.transport = transport;
+        this.self = normalize(cluster.getSelf());
+        Set<String> members = new LinkedHashSet<>();
+        members.add(self);
+        for (String node : cluster.getNodes()) {
+            members.add(normalize(node));
+        }
+        this.nodes = List.copyOf(members);
+        this.virtualNodes = cluster.getVirtualNodes();
+        this.copies = 1 + cluster.getReplicas();
+        // every configured node counts as reachable until the first probe
+        this.ring = new ConsistentHashRing(nodes, virtualNodes);
+        long probeMillis = cluster.getProbeInterval().toMillis();
+        if (probeMillis > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("cluster-memory-"));
+            scheduler.scheduleWithFixedDelay(this::probe, probeMillis, probeMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    private static String normalize(String node) {
+        if (!StringUtils.hasText(node)) {
+            throw new RuntimeException("cluster node url is empty");
+        }
+        return StringUtils.trimTrailingCharacter(node.trim(), '/');
+    }
+
+    /**
+     * conversations stored on this node, as owner or replica
+     */
+    @Override
+    public List<String> findConversationIds() {
+        return local.findConversationIds();
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        RuntimeException error = null;
+        List<String> owners = ring.owners(conversationId, copies);
+        for (int i = 0; i < owners.size(); i++) {
+            String node = owners.get(i);
+            if (node.equals(self)) {
+                return local.findByConversationId(conversationId);
+            }
+            try {
+                remoteReads.increment();
+                byte[] messages = transport.fetch(node, conversationId);
+                if (i > 0) {
+                    failovers.increment();
+                }
+                return messages == null ? List.of() : MessageCodec.decode(messages);
+            } catch (RuntimeException e) {
+                log.warn("fetch chat memory {} from {} failed:{}", conversationId, node, e.getMessage());
+                error = e;
+            }
+        }
+        throw new RuntimeException("chat memory unavailable:" + conversationId, error);
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        this.write(conversationId, MessageCodec.encode(messages), messages);
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        this.write(conversationId, null, null);
+    }
+
+    /**
+     * write on the first reachable owner, that node copies the write to the other replicas
+     *
+     * @param encoded  encoded messages, null deletes the conversation
+     * @param messages decoded messages, null when not decoded yet
+     */
+    private void write(String conversationId, byte[] encoded, List<Message> messages) {
+        RuntimeException error = null;
+        List<String> owners = ring.owners(conversationId, copies);
+        for (int i = 0; i < owners.size(); i++) {
+            String node = owners.get(i);
+            try {
+                if (node.equals(self)) {
+                    this.writeLocal(conversationId, encoded, messages, true);
+                } else {
+                    remoteWrites.increment();
+                    if (encoded == null) {
+                        transport.delete(node, conversationId, true);
+                    } else {
+                        transport.store(node, conversationId, encoded, true);
+                    }
+                }
+                if (i > 0) {
+                    failovers.increment();
+                }
+                return;
+            } catch (RuntimeException e) {
+                log.warn("write chat memory {} to {} failed:{}", conversationId, node, e.getMessage());
+                error = e;
+            }
+        }
+        throw new RuntimeException("chat memory unavailable:" + conversationId, error);
+    }
+
+    /**
+     * read the local copy, called by the other nodes
+     */
+    public byte[] fetchLocal(String conversationId) {
+        return MessageCodec.encode(local.findByConversationId(conversationId));
+    }
+
+    /**
+     * write the local copy, called by the other nodes
+     *
+     * @param encoded   encoded messages, null deletes the conversation
+     * @param replicate copy the write to the replicas of the conversation
+     */
+    public void writeLocal(String conversationId, byte[] encoded, boolean replicate) {
+        this.writeLocal(conversationId, encoded, null, replicate);
+    }
+
+    private void writeLocal(String conversationId, byte[] encoded, List<Message> messages, boolean replicate) {
+        if (encoded == null) {
+            local.deleteByConversationId(conversationId);
+        } else {
+            local.saveAll(conversationId, messages != null ? messages : MessageCodec.decode(encoded));
+        }
+        if (replicate) {
+            for (String node : ring.owners(conversationId, copies)) {
+                if (!node.equals(self)) {
+                    this.replicate(node, conversationId, encoded);
+                }
+            }
+        }
+    }
+
+    private boolean replicate(String node, String conversationId, byte[] encoded) {
+        try {
+            if (encoded == null) {
+                transport.delete(node, conversationId, false);
+            } else {
+                transport.store(node, conversationId, encoded, false);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            replicationErrors.increment();
+            log.warn("replicate chat memory {} to {} failed:{}", conversationId, node, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * probe the other nodes and rebalance when the reachable nodes changed
+     */
+    public void probe() {
+        SortedSet<String> reachable = new TreeSet<>();
+        for (String node : nodes) {
+            if (node.equals(self) || transport.ping(node)) {
+                reachable.add(node);
+            }
+        }
+        ConsistentHashRing previous = ring;
+        if (!previous.getNodes().equals(reachable)) {
+            log.info("cluster membership changed:{} -> {}", previous.getNodes(), reachable);
+            this.ring = new ConsistentHashRing(reachable, virtualNodes);
+            this.rebalance(previous, ring);
+        }
+    }
+
+    /**
+     * copy the local conversations to the nodes that became their owner or replica.
+     * of the previous holders only the first one still reachable copies, conversations this node no longer
+     * holds are removed locally.
+     */
+    private void rebalance(ConsistentHashRing previous, ConsistentHashRing current) {
+        for (String conversationId : local.findConversationIds()) {
+            List<String> previousOwners = previous.owners(conversationId, copies);
+            List<String> owners = current.owners(conversationId, copies);
+            String copier = self;
+            for (String node : previousOwners) {
+                if (current.getNodes().contains(node)) {
+                    copier = node;
+                    break;
+                }
+            }
+            boolean handedOver = !copier.equals(self);
+            if (copier.equals(self)) {
+                byte[] encoded = null;
+                for (String node : owners) {
+                    if (node.equals(self) || previousOwners.contains(node)) {
+                        continue;
+                    }
+                    if (encoded == null) {
+                        encoded = MessageCodec.encode(local.findByConversationId(conversationId));
+                    }
+                    if (this.replicate(node, conversationId, encoded)) {
+                        handedOver = true;
+                        rebalanced.increment();
+                    }
+                }
+            }
+            if (!owners.contains(self) && handedOver) {
+                local.deleteByConversationId(conversationId);
+            }
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(self,
+                new ArrayList<>(ring.getNodes()),
+                local.findConversationIds().size(),
+                remoteReads.sum(),
+                remoteWrites.sum(),
+                failovers.sum(),
+                replicationErrors.sum(),
+                rebalanced.sum());
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (local instanceof DisposableBean disposableBean) {
+            disposableBean.destroy();
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+
+        private final String self;
+        private final List<String> reachableNodes;
+        private final int localConversations;
+        private final long remoteReads;
+        private final long remoteWrites;
+        private final long failovers;
+        private final long replicationErrors;
+        private final long rebalanced;
+    }
+}
@@ -0,0 +1,86 @@
+package com.codingapi.agent.cluster;
+
+import com.codingapi.agent.properties.AgentProperties;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * node to node endpoints of the {@link ClusterChatMemoryRepository}.
+ * the {@code /agent/cluster} calls must carry the shared secret of the nodes, other callers get 401
+ */
+@RestController
+@RequestMapping("/agent")
+@ConditionalOnProperty(prefix = "codingapi.agent.cluster", name = "enabled", havingValue = "true")
+public class ClusterMemoryController {
+
+    private final ClusterChatMemoryRepository repository;
+    private final byte[] secret;
+
+    public ClusterMemoryController(ChatMemoryRepository chatMemoryRepository, AgentProperties agentProperties) {
+        String secret = agentProperties.getCluster().getSecret();
+        if (!StringUtils.hasText(secret)) {
+            throw new RuntimeException("codingapi.agent.cluster.secret is required when the cluster is enabled");
+        }
+        this.repository = (ClusterChatMemoryRepository) chatMemoryRepository;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @GetMapping("/cluster/ping")
+    public String ping(@RequestHeader(value = HttpClusterTransport.SECRET_HEADER, required = false) String secret) {
+        this.authorize(secret);
+        return "pong";
+    }
+
+    @GetMapping(value = "/cluster/memory", produces = MediaType.APPLICATION_JSON_VALUE)
+    public byte[] fetch(@RequestHeader(value = HttpClusterTransport.SECRET_HEADER, required = false) String secret,
+                        @RequestParam String chatId) {
+        this.authorize(secret);
+        return repository.fetchLocal(chatId);
+    }
+
+    @PutMapping(value = "/cluster/memory", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void store(@RequestHeader(value = HttpClusterTransport.SECRET_HEADER, required = false) String secret,
+                      @RequestParam String chatId,
+                      @RequestParam(defaultValue = "false") boolean replicate,
+                      @RequestBody byte[] messages) {
+        this.authorize(secret);
+        repository.writeLocal(chatId, messages, replicate);
+    }
+
+    @DeleteMapping("/cluster/memory")
+    public void delete(@RequestHeader(value = HttpClusterTransport.SECRET_HEADER, required = false) String secret,
+                       @RequestParam String chatId,
+                       @RequestParam(defaultValue = "false") boolean replicate) {
+        this.authorize(secret);
+        repository.writeLocal(chatId, null, replicate);
+    }
+
+    @GetMapping("/stats/cluster")
+    public ClusterChatMemoryRepository.Stats clusterStats() {
+        return repository.getStats();
+    }
+
+    /**
+     * compare in constant time, so the secret can not be guessed byte by byte from the response times
+     */
+    private void authorize(String secret) {
+        if (secret == null || !MessageDigest.isEqual(this.secret, secret.getBytes(StandardCharsets.UTF_8))) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "invalid cluster secret");
+        }
+    }
+}
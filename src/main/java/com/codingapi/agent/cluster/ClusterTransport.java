@@ -0,0 +1,31 @@
+package com.codingapi.agent.cluster;
+
+/**
+ * calls to the chat memory of another node, the messages travel in the {@link com.codingapi.agent.memory.MessageCodec} format
+ */
+public interface ClusterTransport {
+
+    /**
+     * the messages of the conversation stored on the node
+     */
+    byte[] fetch(String node, String chatId);
+
+    /**
+     * store the messages on the node
+     *
+     * @param replicate the node is the owner and copies the messages to the replicas
+     */
+    void store(String node, String chatId, byte[] messages, boolean replicate);
+
+    /**
+     * delete the conversation on the node
+     *
+     * @param replicate the node is the owner and deletes the replicas too
+     */
+    void delete(String node, String chatId, boolean replicate);
+
+    /**
+     * the node is reachable
+     */
+    boolean ping(String node);
+}
@@ -0,0 +1,81 @@
+package com.codingapi.agent.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * consistent hash ring of the cluster nodes, immutable.
+ * every node is placed on the ring at {@code virtualNodes} points, a key belongs to the first node clockwise
+ * from its hash and is replicated to the next distinct nodes, so a membership change only moves the keys
+ * next to the points of the changed node.
+ */
+public class ConsistentHashRing {
+
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+    private final SortedSet<String> nodes;
+
+    public ConsistentHashRing(Collection<String> nodes, int virtualNodes) {
+        this.nodes = new TreeSet<>(nodes);
+        for (String node : this.nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    /**
+     * the owner of the key followed by its replicas
+     *
+     * @param count max nodes returned
+     */
+    public List<String> owners(String key, int count) {
+        List<String> owners = new ArrayList<>(count);
+        if (ring.isEmpty()) {
+            return owners;
+        }
+        int wanted = Math.min(count, nodes.size());
+        long hash = hash(key);
+        for (Map.Entry<Long, String> entry : ring.tailMap(hash).entrySet()) {
+            if (owners.size() == wanted) {
+                return owners;
+            }
+            if (!owners.contains(entry.getValue())) {
+                owners.add(entry.getValue());
+            }
+        }
+        for (Map.Entry<Long, String> entry : ring.entrySet()) {
+            if (owners.size() == wanted) {
+                return owners;
+            }
+            if (!owners.contains(entry.getValue())) {
+                owners.add(entry.getValue());
+            }
+        }
+        return owners;
+    }
+
+    public SortedSet<String> getNodes() {
+        return nodes;
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xff);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("md5 not available", e);
+        }
+    }
+}
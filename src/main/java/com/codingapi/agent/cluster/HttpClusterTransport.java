@@ -0,0 +1,68 @@
+package com.codingapi.agent.cluster;
+
+import com.codingapi.agent.properties.AgentProperties;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+/**
+ * {@link ClusterTransport} over the {@code /agent/cluster} endpoints of the other nodes
+ */
+public class HttpClusterTransport implements ClusterTransport {
+
+    /**
+     * header carrying the shared secret of the nodes
+     */
+    public static final String SECRET_HEADER = "X-Cluster-Secret";
+
+    private final RestClient restClient;
+
+    public HttpClusterTransport(AgentProperties.Cluster cluster) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(cluster.getTimeout());
+        requestFactory.setReadTimeout(cluster.getTimeout());
+        this.restClient = RestClient.builder()
+                .requestFactory(requestFactory)
+                .defaultHeader(SECRET_HEADER, cluster.getSecret())
+                .build();
+    }
+
+    @Override
+    public byte[] fetch(String node, String chatId) {
+        return restClient.get()
+                .uri(node + "/agent/cluster/memory?chatId={chatId}", chatId)
+                .retrieve()
+                .body(byte[].class);
+    }
+
+    @Override
+    public void store(String node, String chatId, byte[] messages, boolean replicate) {
+        restClient.put()
+                .uri(node + "/agent/cluster/memory?chatId={chatId}&replicate={replicate}", chatId, replicate)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(messages)
+                .retrieve()
+                .toBodilessEntity();
+    }
+
+    @Override
+    public void delete(String node, String chatId, boolean replicate) {
+        restClient.delete()
+                .uri(node + "/agent/cluster/memory?chatId={chatId}&replicate={replicate}", chatId, replicate)
+                .retrieve()
+                .toBodilessEntity();
+    }
+
+    @Override
+    public boolean ping(String node) {
+        try {
+            restClient.get()
+                    .uri(node + "/agent/cluster/ping")
+                    .retrieve()
+                    .toBodilessEntity();
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}
@@ -1,12 +1,42 @@
 package com.codingapi.agent.controller;
 
+import com.codingapi.agent.admission.AdmissionController;
+import com.codingapi.agent.advisor.PromptPrefixAdvisor;
+import com.codingapi.agent.cache.ResponseCache;
+import com.codingapi.agent.cache.SemanticCache;
+import com.codingapi.agent.executor.AgentExecutor;
+import com.codingapi.agent.executor.ConversationExecutor;
+import com.codingapi.agent.executor.ModelConcurrencyLimiter;
+import com.codingapi.agent.executor.SingleFlightAdvisor;
+import com.codingapi.agent.job.Job;
+import com.codingapi.agent.job.JobService;
+import com.codingapi.agent.model.ModelRouter;
+import com.codingapi.agent.pojo.ChatBatchResult;
 import com.codingapi.agent.pojo.ChatRequest;
+import com.codingapi.agent.pojo.JobRequest;
+import com.codingapi.agent.routing.ModelEndpoint;
+import com.codingapi.agent.routing.RoutingChatModel;
 import com.codingapi.agent.service.ChatService;
+import com.codingapi.agent.tools.ToolResultCache;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/agent")
@@ -14,10 +44,135 @@ import org.springframework.web.bind.annotation.RestController;
 public class AgentController {
 
     private final ChatService chatService;
+    private final AgentExecutor agentExecutor;
+    private final ConversationExecutor conversationExecutor;
+    private final ToolResultCache toolResultCache;
+    private final ResponseCache responseCache;
+    private final SemanticCache semanticCache;
+    private final RoutingChatModel routingChatModel;
+    private final JobService jobService;
+    private final AdmissionController admissionController;
+
+    /**
+     * the client of the request, see {@link AdmissionController#clientKey}
+     */
+    private String clientId(String clientId, HttpServletRequest servletRequest) {
+        return admissionController.clientKey(clientId, servletRequest.getRemoteAddr());
+    }
 
     @PostMapping("/chat")
-    public String chat(@RequestBody ChatRequest request) {
-        return chatService.generation(request.getChatId(), request.getMessage(),request.isThink());
+    public CompletableFuture<String> chat(@RequestBody ChatRequest request,
+                                          @RequestHeader(value = "X-Client-Id", required = false) String clientId,
+                                          HttpServletRequest servletRequest) {
+        return admissionController.submit(clientId(clientId, servletRequest), request.getChatId(),
+                () -> chatService.generationAsync(request.getChatId(), request.getMessage(), request.isThink()));
+    }
+
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> chatStream(@RequestBody ChatRequest request,
+                                                    @RequestHeader(value = "X-Client-Id", required = false) String clientId,
+                                                    HttpServletRequest servletRequest) {
+        return admissionController.stream(clientId(clientId, servletRequest), request.getChatId(),
+                        () -> chatService.generationStream(request.getChatId(), request.getMessage(), request.isThink()))
+                .map(content -> ServerSentEvent.builder(content).build());
+    }
+
+    @PostMapping(value = "/chat/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ChatBatchResult> chatBatch(@RequestBody List<ChatRequest> requests,
+                                           @RequestHeader(value = "X-Client-Id", required = false) String clientId,
+                                           HttpServletRequest servletRequest) {
+        String clientKey = clientId(clientId, servletRequest);
+        // every request of the batch is admitted on its own, as if it was posted to /chat/stream
+        return chatService.generationBatch(requests,
+                (request, answer) -> admissionController.stream(clientKey, request.getChatId(), answer));
+    }
+
+    @PostMapping("/jobs")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Job submitJob(@RequestBody JobRequest request,
+                         @RequestHeader(value = "X-Client-Id", required = false) String clientId,
+                         HttpServletRequest servletRequest) {
+        return jobService.submit(request, clientId(clientId, servletRequest));
+    }
+
+    @GetMapping("/jobs/{id}")
+    public Job job(@PathVariable String id) {
+        Job job = jobService.get(id);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "job not found:" + id);
+        }
+        return job;
+    }
+
+    @GetMapping(value = "/jobs/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Job>> jobEvents(@PathVariable String id) {
+        return jobService.events(id)
+                .switchIfEmpty(Flux.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "job not found:" + id)))
+                .map(job -> ServerSentEvent.builder(job).event(job.getState().name()).build());
+    }
+
+    @DeleteMapping("/jobs/{id}")
+    public Job cancelJob(@PathVariable String id) {
+        Job job = jobService.cancel(id);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "job not found:" + id);
+        }
+        return job;
+    }
+
+    @GetMapping("/stats/jobs")
+    public JobService.Stats jobStats() {
+        return jobService.getStats();
+    }
+
+    @GetMapping("/stats/admission")
+    public AdmissionController.Stats admissionStats() {
+        return admissionController.getStats();
+    }
+
+    @GetMapping("/stats/execution")
+    public List<ModelConcurrencyLimiter.Stats> executionStats() {
+        return agentExecutor.getStats();
+    }
+
+    @GetMapping("/stats/conversations")
+    public ConversationExecutor.Stats conversationStats() {
+        return conversationExecutor.getStats();
+    }
+
+    @GetMapping("/stats/routing")
+    public List<ModelEndpoint.Stats> routingStats() {
+        return routingChatModel.getStats();
+    }
+
+    @GetMapping("/stats/model-routes")
+    public List<ModelRouter.Route.Stats> modelRouteStats() {
+        return chatService.getRouteStats();
+    }
+
+    @GetMapping("/stats/single-flight")
+    public SingleFlightAdvisor.Stats singleFlightStats() {
+        return chatService.getSingleFlightStats();
+    }
+
+    @GetMapping("/stats/tool-cache")
+    public ToolResultCache.Stats toolCacheStats() {
+        return toolResultCache.getStats();
+    }
+
+    @GetMapping("/stats/response-cache")
+    public ResponseCache.Stats responseCacheStats() {
+        return responseCache.getStats();
+    }
+
+    @GetMapping("/stats/semantic-cache")
+    public SemanticCache.Stats semanticCacheStats() {
+        return semanticCache.getStats();
+    }
+
+    @GetMapping("/stats/prompt-prefix")
+    public PromptPrefixAdvisor.Stats promptPrefixStats() {
+        return chatService.getPromptPrefixStats();
     }
 
 }
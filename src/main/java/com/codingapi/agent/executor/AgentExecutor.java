@@ -0,0 +1,172 @@
+package com.codingapi.agent.executor;
+
+import com.codingapi.agent.properties.AgentProperties;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * executes chat and tool work.
+ * with virtual threads enabled every task runs on its own virtual thread, otherwise tasks run on the caller thread.
+ * on a runtime before java 21 virtual threads fall back to bounded platform thread pools.
+ * the platform pools are layered, a request waits on the model and tool steps of its tool loop and a tool step waits
+ * on its tool calls, so every level runs on its own pool and a full pool never waits on tasks queued behind itself.
+ * model permits of {@link ModelConcurrencyLimiter} are held per model call, not per request,
+ * so requests waiting on tools or on a coalesced call do not occupy a model slot.
+ */
+@Slf4j
+@Component
+public class AgentExecutor implements DisposableBean {
+
+    private final boolean async;
+
+    /**
+     * requests and background tasks
+     */
+    @Getter
+    private final ExecutorService executorService;
+
+    /**
+     * model and tool steps of the tool loop, waited on by the requests
+     */
+    @Getter
+    private final ExecutorService stepExecutorService;
+
+    /**
+     * single tool calls, waited on by the tool steps
+     */
+    @Getter
+    private final ExecutorService toolExecutorService;
+    private final Scheduler scheduler;
+    private final ModelConcurrencyLimiter limiter;
+
+    @Getter
+    private final String defaultModel;
+
+    public AgentExecutor(AgentProperties agentProperties, Environment environment) {
+        AgentProperties.Execution execution = agentProperties.getExecution();
+        this.async = execution.isVirtualThreads();
+        ExecutorService virtualThreadExecutor = async ? createVirtualThreadExecutor() : null;
+        if (virtualThreadExecutor != null) {
+            this.executorService = virtualThreadExecutor;
+            this.stepExecutorService = virtualThreadExecutor;
+            this.toolExecutorService = virtualThreadExecutor;
+        } else {
+            if (async) {
+                log.warn("virtual threads are not supported by this runtime, use {} platform threads instead.",
+                        execution.getPlatformThreads());
+            }
+            this.executorService = createPlatformThreadExecutor(execution, "agent-executor-");
+            this.stepExecutorService = createPlatformThreadExecutor(execution, "agent-step-");
+            this.toolExecutorService = createPlatformThreadExecutor(execution, "agent-tool-");
+        }
+        this.scheduler = Schedulers.fromExecutorService(executorService, "agent-executor");
+        this.defaultModel = environment.getProperty("spring.ai.openai.chat.options.model");
+        String baseUrl = environment.getProperty("spring.ai.openai.chat.base-url",
+                environment.getProperty("spring.ai.openai.base-url"));
+        this.limiter = new ModelConcurrencyLimiter(execution, baseUrl);
+    }
+
+    /**
+     * @return null when the runtime has no virtual threads
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * bounded pool, tasks beyond the threads wait in a bounded queue and are rejected when it is full,
+     * so a burst cannot pile up unlimited platform threads blocked on model permits
+     */
+    private static ExecutorService createPlatformThreadExecutor(AgentProperties.Execution execution,
+                                                                String threadNamePrefix) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(execution.getPlatformThreads(),
+                execution.getPlatformThreads(),
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(execution.getQueueCapacity()),
+                new CustomizableThreadFactory(threadNamePrefix));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * run the chat task, the model permits are taken per model call by {@link ModelPermitAdvisor}
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        if (async) {
+            return CompletableFuture.supplyAsync(task, executorService);
+        }
+        try {
+            return CompletableFuture.completedFuture(task.get());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * run the background task on the executor with a permit of the default model, never on the caller thread
+     */
+    public CompletableFuture<Void> runAsync(Runnable task) {
+        return CompletableFuture.runAsync(() -> {
+            try (ModelConcurrencyLimiter.Permit ignored = limiter.acquire(defaultModel)) {
+                task.run();
+            }
+        }, executorService);
+    }
+
+    /**
+     * subscribe the chat stream on the executor, the model permits are taken per model call by {@link ModelPermitAdvisor}
+     */
+    public <T> Flux<T> stream(Supplier<Flux<T>> stream) {
+        Flux<T> flux = Flux.defer(stream);
+        return async ? flux.subscribeOn(scheduler) : flux;
+    }
+
+    /**
+     * acquire a permit of the model, blocks until a permit is free or the acquire timeout is reached
+     *
+     * @param model model name, null for the default model
+     * @return permit, release it by {@link ModelConcurrencyLimiter.Permit#close()}
+     */
+    public ModelConcurrencyLimiter.Permit acquire(String model) {
+        return limiter.acquire(model != null ? model : defaultModel);
+    }
+
+    /**
+     * run a task on the executor without a model permit, used for tool work
+     */
+    public void execute(Runnable task) {
+        executorService.execute(task);
+    }
+
+    public List<ModelConcurrencyLimiter.Stats> getStats() {
+        return limiter.getStats();
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+        executorService.shutdown();
+        stepExecutorService.shutdown();
+        toolExecutorService.shutdown();
+    }
+}
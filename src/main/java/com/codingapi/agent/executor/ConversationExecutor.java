@@ -0,0 +1,178 @@
+package com.codingapi.agent.executor;
+
+import com.codingapi.agent.properties.AgentProperties;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * runs the turns of one conversation strictly in order, different conversations run in parallel on the {@link AgentExecutor}.
+ * every conversation has a mailbox with a bounded queue of waiting turns, the mailbox is removed as soon as it drains.
+ * a turn ends when its task returns or its stream terminates or is cancelled, so the next turn reads the memory written by it.
+ */
+@Component
+public class ConversationExecutor {
+
+    private final AgentExecutor agentExecutor;
+    private final int queueSize;
+
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    public ConversationExecutor(AgentExecutor agentExecutor, AgentProperties agentProperties) {
+        this.agentExecutor = agentExecutor;
+        this.queueSize = agentProperties.getExecution().getConversationQueueSize();
+    }
+
+    /**
+     * run the chat task after the previous turns of the conversation
+     */
+    public <T> CompletableFuture<T> submit(String chatId, Supplier<T> task) {
+        if (chatId == null) {
+            return agentExecutor.submit(task);
+        }
+        CompletableFuture<Runnable> turn;
+        try {
+            turn = this.turn(chatId);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return this.due(turn).thenCompose(done -> {
+            CompletableFuture<T> result;
+            try {
+                result = agentExecutor.submit(task);
+            } catch (RuntimeException e) {
+                // rejected by a full executor, the turn ends here or the conversation would stay blocked
+                done.run();
+                throw e;
+            }
+            return result.whenComplete((value, e) -> done.run());
+        });
+    }
+
+    /**
+     * subscribe the chat stream after the previous turns of the conversation
+     */
+    public <T> Flux<T> stream(String chatId, Supplier<Flux<T>> stream) {
+        if (chatId == null) {
+            return agentExecutor.stream(stream);
+        }
+        return Flux.defer(() -> {
+            CompletableFuture<Runnable> turn = this.turn(chatId);
+            return Mono.fromFuture(this.due(turn))
+                    .flatMapMany(done -> agentExecutor.stream(stream))
+                    .doFinally(signal -> {
+                        // a turn cancelled while waiting is ended by the mailbox when it is due
+                        turn.cancel(false);
+                        if (!turn.isCancelled()) {
+                            turn.join().run();
+                        }
+                    });
+        });
+    }
+
+    /**
+     * queue a turn of the conversation
+     *
+     * @return completed with the callback ending the turn once it is the turn of the caller
+     */
+    private CompletableFuture<Runnable> turn(String chatId) {
+        CompletableFuture<Runnable> turn = new CompletableFuture<>();
+        boolean[] start = new boolean[1];
+        mailboxes.compute(chatId, (key, mailbox) -> {
+            if (mailbox == null) {
+                mailbox = new Mailbox();
+            }
+            if (!mailbox.running) {
+                mailbox.running = true;
+                start[0] = true;
+            } else if (mailbox.pending.size() >= queueSize) {
+                rejected.increment();
+                throw new RuntimeException("conversation queue is full:" + key);
+            } else {
+                mailbox.pending.add(turn);
+                queued.incrementAndGet();
+            }
+            return mailbox;
+        });
+        if (start[0]) {
+            this.start(chatId, turn);
+        }
+        return turn;
+    }
+
+    /**
+     * a turn that had to wait is started on the executor instead of inline on the thread that ended the previous turn,
+     * so a queue of turns in sync mode does not run as nested calls on one stack. runs inline when the executor is full.
+     */
+    private CompletableFuture<Runnable> due(CompletableFuture<Runnable> turn) {
+        if (turn.isDone()) {
+            return turn;
+        }
+        return turn.thenApplyAsync(done -> done, command -> {
+            try {
+                agentExecutor.execute(command);
+            } catch (RejectedExecutionException e) {
+                command.run();
+            }
+        });
+    }
+
+    private void start(String chatId, CompletableFuture<Runnable> turn) {
+        AtomicBoolean ended = new AtomicBoolean(false);
+        Runnable done = () -> {
+            if (ended.compareAndSet(false, true)) {
+                this.next(chatId);
+            }
+        };
+        if (!turn.complete(done)) {
+            done.run();
+        }
+    }
+
+    private void next(String chatId) {
+        AtomicReference<CompletableFuture<Runnable>> next = new AtomicReference<>();
+        mailboxes.computeIfPresent(chatId, (key, mailbox) -> {
+            next.set(mailbox.pending.poll());
+            return next.get() == null ? null : mailbox;
+        });
+        if (next.get() != null) {
+            queued.decrementAndGet();
+            this.start(chatId, next.get());
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(mailboxes.size(), queued.get(), rejected.sum());
+    }
+
+    private static class Mailbox {
+
+        private final Deque<CompletableFuture<Runnable>> pending = new ArrayDeque<>();
+        private boolean running;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+
+        private final int activeConversations;
+        private final int queuedTurns;
+        private final long rejected;
+    }
+}
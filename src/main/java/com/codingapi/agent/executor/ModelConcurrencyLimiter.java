@@ -0,0 +1,162 @@
+package com.codingapi.agent.executor;
+
+import com.codingapi.agent.properties.AgentProperties;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * fair per-model concurrency limiter.
+ * the limit is looked up by model name first, then by base-url, then the default max concurrency.
+ * callers queue in arrival order on a fair semaphore.
+ */
+public class ModelConcurrencyLimiter {
+
+    private final AgentProperties.Execution execution;
+    private final String baseUrl;
+
+    private final Map<String, Limit> limits = new ConcurrentHashMap<>();
+
+    public ModelConcurrencyLimiter(AgentProperties.Execution execution, String baseUrl) {
+        this.execution = execution;
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * acquire a permit of the model, blocks until a permit is free or the acquire timeout is reached
+     *
+     * @param model model name
+     * @return permit, release it by {@link Permit#close()}
+     */
+    public Permit acquire(String model) {
+        Limit limit = this.resolveLimit(model);
+        if (limit == null) {
+            return Permit.NONE;
+        }
+        return limit.acquire(execution.getAcquireTimeout().toMillis());
+    }
+
+    public List<Stats> getStats() {
+        List<Stats> stats = new ArrayList<>();
+        for (Limit limit : limits.values()) {
+            stats.add(limit.toStats());
+        }
+        return stats;
+    }
+
+    private Limit resolveLimit(String model) {
+        Map<String, Integer> concurrency = execution.getConcurrency();
+        String key;
+        int maxConcurrency;
+        if (model != null && concurrency.containsKey(model)) {
+            key = model;
+            maxConcurrency = concurrency.get(model);
+        } else if (baseUrl != null && concurrency.containsKey(baseUrl)) {
+            key = baseUrl;
+            maxConcurrency = concurrency.get(baseUrl);
+        } else {
+            key = model == null ? "default" : model;
+            maxConcurrency = execution.getMaxConcurrency();
+        }
+        if (maxConcurrency <= 0) {
+            return null;
+        }
+        return limits.computeIfAbsent(key, k -> new Limit(k, maxConcurrency));
+    }
+
+    private static class Limit {
+
+        private final String key;
+        private final int maxConcurrency;
+        private final Semaphore semaphore;
+
+        private final LongAdder acquired = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder totalWaitNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private Limit(String key, int maxConcurrency) {
+            this.key = key;
+            this.maxConcurrency = maxConcurrency;
+            this.semaphore = new Semaphore(maxConcurrency, true);
+        }
+
+        private Permit acquire(long timeoutMillis) {
+            long start = System.nanoTime();
+            boolean success;
+            try {
+                success = semaphore.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("acquire model permit interrupted:" + key, e);
+            }
+            long waitNanos = System.nanoTime() - start;
+            totalWaitNanos.add(waitNanos);
+            maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+            if (!success) {
+                rejected.increment();
+                throw new RuntimeException("acquire model permit timeout:" + key);
+            }
+            acquired.increment();
+            return new Permit(semaphore);
+        }
+
+        private Stats toStats() {
+            long count = acquired.sum() + rejected.sum();
+            long totalWait = TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum());
+            return new Stats(key,
+                    maxConcurrency,
+                    maxConcurrency - semaphore.availablePermits(),
+                    semaphore.getQueueLength(),
+                    acquired.sum(),
+                    rejected.sum(),
+                    count == 0 ? 0 : totalWait / count,
+                    TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+        }
+    }
+
+    /**
+     * model permit, closing it more than once releases only once
+     */
+    public static class Permit implements AutoCloseable {
+
+        private static final Permit NONE = new Permit(null);
+
+        private final Semaphore semaphore;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Permit(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        @Override
+        public void close() {
+            if (semaphore != null && released.compareAndSet(false, true)) {
+                semaphore.release();
+            }
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+
+        private final String key;
+        private final int maxConcurrency;
+        private final int running;
+        private final int queueDepth;
+        private final long acquired;
+        private final long rejected;
+        private final long avgWaitMillis;
+        private final long maxWaitMillis;
+    }
+}
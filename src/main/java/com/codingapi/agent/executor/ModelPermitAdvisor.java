@@ -0,0 +1,86 @@
+package com.codingapi.agent.executor;
+
+import lombok.NonNull;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * holds a model permit of the {@link AgentExecutor} for the duration of one model call.
+ * streams wait for the permit on the bounded elastic scheduler, so the subscribing thread is never blocked.
+ */
+public class ModelPermitAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final AgentExecutor agentExecutor;
+
+    public ModelPermitAdvisor(AgentExecutor agentExecutor) {
+        this.agentExecutor = agentExecutor;
+    }
+
+    private static String modelOf(ChatClientRequest request) {
+        ChatOptions options = request.prompt().getOptions();
+        return options != null ? options.getModel() : null;
+    }
+
+    @NonNull
+    @Override
+    public ChatClientResponse adviseCall(@NonNull ChatClientRequest chatClientRequest,
+                                         @NonNull CallAdvisorChain callAdvisorChain) {
+        try (ModelConcurrencyLimiter.Permit ignored = agentExecutor.acquire(modelOf(chatClientRequest))) {
+            return callAdvisorChain.nextCall(chatClientRequest);
+        }
+    }
+
+    @NonNull
+    @Override
+    public Flux<ChatClientResponse> adviseStream(@NonNull ChatClientRequest chatClientRequest,
+                                                 @NonNull StreamAdvisorChain streamAdvisorChain) {
+        String model = modelOf(chatClientRequest);
+        return Flux.defer(() -> {
+            AtomicReference<ModelConcurrencyLimiter.Permit> acquired = new AtomicReference<>();
+            AtomicBoolean cancelled = new AtomicBoolean();
+            return Mono.fromCallable(() -> {
+                        ModelConcurrencyLimiter.Permit permit = agentExecutor.acquire(model);
+                        acquired.set(permit);
+                        // the stream was cancelled while waiting, release the permit right away
+                        if (cancelled.get()) {
+                            permit.close();
+                        }
+                        return permit;
+                    })
+                    .subscribeOn(Schedulers.boundedElastic())
+                    // released before the subscriber sees the completion, like an eager Flux.using
+                    .flatMapMany(permit -> streamAdvisorChain.nextStream(chatClientRequest)
+                            .doOnTerminate(permit::close))
+                    .doOnCancel(() -> {
+                        cancelled.set(true);
+                        ModelConcurrencyLimiter.Permit permit = acquired.get();
+                        if (permit != null) {
+                            permit.close();
+                        }
+                    });
+        });
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return this.getClass().getName();
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 3;
+    }
+}
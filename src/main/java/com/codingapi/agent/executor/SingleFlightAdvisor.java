@@ -0,0 +1,123 @@
+package com.codingapi.agent.executor;
+
+import com.codingapi.agent.cache.ResponseCache;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.core.Ordered;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * coalesces identical in-flight model calls: the first caller runs the call, later callers with the same prompt
+ * attach to the pending result instead of taking another model slot.
+ * a shared stream is replayed to late subscribers and cancelled upstream only when the last subscriber cancels.
+ */
+public class SingleFlightAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final Map<String, CompletableFuture<ChatClientResponse>> calls = new ConcurrentHashMap<>();
+    private final Map<String, Flux<ChatClientResponse>> streams = new ConcurrentHashMap<>();
+
+    private final LongAdder flights = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * the response with the context of the caller, the memory advisors read the conversation id from it
+     */
+    private static ChatClientResponse withContext(ChatClientResponse response, ChatClientRequest request) {
+        return ChatClientResponse.builder()
+                .chatResponse(response.chatResponse())
+                .context(request.context())
+                .build();
+    }
+
+    @NonNull
+    @Override
+    public ChatClientResponse adviseCall(@NonNull ChatClientRequest chatClientRequest,
+                                         @NonNull CallAdvisorChain callAdvisorChain) {
+        String key = ResponseCache.key(chatClientRequest.prompt());
+        CompletableFuture<ChatClientResponse> flight = new CompletableFuture<>();
+        CompletableFuture<ChatClientResponse> pending = calls.putIfAbsent(key, flight);
+        if (pending != null) {
+            coalesced.increment();
+            try {
+                return withContext(pending.join(), chatClientRequest);
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+            }
+        }
+
+        flights.increment();
+        try {
+            ChatClientResponse response = callAdvisorChain.nextCall(chatClientRequest);
+            flight.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, flight);
+        }
+    }
+
+    @NonNull
+    @Override
+    public Flux<ChatClientResponse> adviseStream(@NonNull ChatClientRequest chatClientRequest,
+                                                 @NonNull StreamAdvisorChain streamAdvisorChain) {
+        return Flux.defer(() -> {
+            String key = ResponseCache.key(chatClientRequest.prompt());
+            boolean[] leader = new boolean[1];
+            Flux<ChatClientResponse> shared = streams.computeIfAbsent(key, k -> {
+                leader[0] = true;
+                AtomicReference<Flux<ChatClientResponse>> self = new AtomicReference<>();
+                self.set(streamAdvisorChain.nextStream(chatClientRequest)
+                        .doFinally(signal -> streams.remove(k, self.get()))
+                        .replay()
+                        .refCount());
+                return self.get();
+            });
+            if (leader[0]) {
+                flights.increment();
+            } else {
+                coalesced.increment();
+            }
+            return shared.map(response -> withContext(response, chatClientRequest));
+        });
+    }
+
+    public Stats getStats() {
+        return new Stats(calls.size() + streams.size(), flights.sum(), coalesced.sum());
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return this.getClass().getName();
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 4;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+
+        private final int inFlight;
+        private final long flights;
+        private final long coalesced;
+    }
+}
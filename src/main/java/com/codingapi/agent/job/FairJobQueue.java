@@ -0,0 +1,94 @@
+package com.codingapi.agent.job;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * job queue that is fair across clients.
+ * every client has its own queue ordered by priority, then submit order, and the clients take turns.
+ * the priority only orders the jobs of one client, so a client cannot starve the others by raising it. not thread safe.
+ */
+public class FairJobQueue {
+
+    private final Map<String, PriorityQueue<Entry>> queues = new HashMap<>();
+    /**
+     * clients with queued jobs, in the order they are served
+     */
+    private final Deque<String> clients = new ArrayDeque<>();
+    private long sequence;
+    private int size;
+
+    public void add(Job job) {
+        PriorityQueue<Entry> queue = queues.get(job.getClientId());
+        if (queue == null) {
+            queue = new PriorityQueue<>(Comparator.comparingInt((Entry entry) -> -entry.job.getPriority())
+                    .thenComparingLong(entry -> entry.sequence));
+            queues.put(job.getClientId(), queue);
+            clients.add(job.getClientId());
+        }
+        queue.add(new Entry(job, sequence++));
+        size++;
+    }
+
+    /**
+     * the next job to run, null when empty
+     */
+    public Job poll() {
+        String selected = clients.pollFirst();
+        if (selected == null) {
+            return null;
+        }
+        PriorityQueue<Entry> queue = queues.get(selected);
+        Job job = queue.poll().job;
+        size--;
+        if (queue.isEmpty()) {
+            queues.remove(selected);
+        } else {
+            clients.addLast(selected);
+        }
+        return job;
+    }
+
+    public boolean remove(Job job) {
+        PriorityQueue<Entry> queue = queues.get(job.getClientId());
+        if (queue == null) {
+            return false;
+        }
+        for (Iterator<Entry> iterator = queue.iterator(); iterator.hasNext(); ) {
+            if (iterator.next().job == job) {
+                iterator.remove();
+                size--;
+                if (queue.isEmpty()) {
+                    queues.remove(job.getClientId());
+                    clients.remove(job.getClientId());
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int clients() {
+        return clients.size();
+    }
+
+    private static class Entry {
+
+        private final Job job;
+        private final long sequence;
+
+        private Entry(Job job, long sequence) {
+            this.job = job;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.codingapi.agent.job;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * a chat request run in the background, persisted as json by the {@link JobStore}
+ */
+@Setter
+@Getter
+public class Job {
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        DONE,
+        FAILED,
+        CANCELLED
+    }
+
+    private String id;
+    /**
+     * tenant the job is scheduled fairly for
+     */
+    private String clientId;
+    private String chatId;
+    private String message;
+    private boolean think;
+    /**
+     * higher runs first
+     */
+    private int priority;
+    private State state;
+    private String answer;
+    private String error;
+    private long createdAt;
+    private long startedAt;
+    private long finishedAt;
+    /**
+     * incremented on every change, the {@link JobStore} drops saves of older versions
+     */
+    private long version;
+
+    public boolean isFinished() {
+        return state == State.DONE || state == State.FAILED || state == State.CANCELLED;
+    }
+
+    /**
+     * snapshot handed out of the {@link JobService}, the job itself keeps changing
+     */
+    public Job copy() {
+        Job job = new Job();
+        job.id = id;
+        job.clientId = clientId;
+        job.chatId = chatId;
+        job.message = message;
+        job.think = think;
+        job.priority = priority;
+        job.state = state;
+        job.answer = answer;
+        job.error = error;
+        job.createdAt = createdAt;
+        job.startedAt = startedAt;
+        job.finishedAt = finishedAt;
+        job.version = version;
+        return job;
+    }
+}
@@ -0,0 +1,280 @@
+package com.codingapi.agent.job;
+
+import com.codingapi.agent.executor.AgentExecutor;
+import com.codingapi.agent.pojo.JobRequest;
+import com.codingapi.agent.properties.AgentProperties;
+import com.codingapi.agent.service.ChatService;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * runs chat requests in the background.
+ * jobs wait in a {@link FairJobQueue} and at most {@code workers} of them run at the same time, a finished job
+ * starts the next one, so no thread waits on the queue. every state change is persisted by the {@link JobStore}
+ * under a new version, so a save that loses the race against a later change cannot overwrite it.
+ * on startup queued jobs are queued again and jobs that were running are run again from the start.
+ */
+@Slf4j
+@Component
+public class JobService implements DisposableBean {
+
+    private final Generation generation;
+    private final Executor executor;
+    private final AgentProperties.Jobs properties;
+    private final JobStore jobStore;
+    private final ScheduledExecutorService scheduler;
+
+    private final FairJobQueue queue = new FairJobQueue();
+    private final Map<String, Job> jobs = new HashMap<>();
+    private final Map<String, Sinks.Many<Job>> events = new HashMap<>();
+    private int running;
+
+    private final LongAdder done = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    @Autowired
+    public JobService(ChatService chatService, AgentExecutor agentExecutor, AgentProperties agentProperties) {
+        this(chatService::generationAsync, agentExecutor.getExecutorService(), agentProperties);
+    }
+
+    JobService(Generation generation, Executor executor, AgentProperties agentProperties) {
+        this.generation = generation;
+        this.executor = executor;
+        this.properties = agentProperties.getJobs();
+        this.jobStore = new JobStore(properties.getDirectory());
+        this.load();
+        long cleanupMillis = Math.max(1000, properties.getRetention().toMillis() / 10);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("agent-job-"));
+        scheduler.scheduleWithFixedDelay(this::cleanup, cleanupMillis, cleanupMillis, TimeUnit.MILLISECONDS);
+        this.dispatch();
+    }
+
+    private void load() {
+        List<Job> stored = jobStore.loadAll();
+        stored.sort(Comparator.comparingLong(Job::getCreatedAt));
+        for (Job job : stored) {
+            jobs.put(job.getId(), job);
+            if (!job.isFinished()) {
+                job.setState(Job.State.QUEUED);
+                job.setStartedAt(0);
+                queue.add(job);
+                events.put(job.getId(), Sinks.many().replay().latest());
+            }
+        }
+        if (!stored.isEmpty()) {
+            log.info("jobs loaded:{}, queued:{}", stored.size(), queue.size());
+        }
+    }
+
+    /**
+     * queue the request
+     *
+     * @param clientId tenant of the request, see {@link com.codingapi.agent.admission.AdmissionController#clientKey},
+     *                 a shared tenant when empty
+     * @return the queued job
+     */
+    public Job submit(JobRequest request, String clientId) {
+        Job job = new Job();
+        job.setId(UUID.randomUUID().toString());
+        job.setClientId(StringUtils.hasText(clientId) ? clientId : "anonymous");
+        job.setChatId(request.getChatId());
+        job.setMessage(request.getMessage());
+        job.setThink(request.isThink());
+        job.setPriority(request.getPriority());
+        job.setState(Job.State.QUEUED);
+        job.setCreatedAt(System.currentTimeMillis());
+        Job snapshot;
+        synchronized (this) {
+            if (queue.size() >= properties.getMaxQueued()) {
+                rejected.increment();
+                throw new RuntimeException("job queue is full:" + properties.getMaxQueued());
+            }
+            jobs.put(job.getId(), job);
+            queue.add(job);
+            Sinks.Many<Job> sink = Sinks.many().replay().latest();
+            events.put(job.getId(), sink);
+            snapshot = snapshot(job);
+            sink.tryEmitNext(snapshot);
+        }
+        jobStore.save(snapshot);
+        this.dispatch();
+        return snapshot;
+    }
+
+    public synchronized Job get(String id) {
+        Job job = jobs.get(id);
+        return job == null ? null : job.copy();
+    }
+
+    /**
+     * the job state now and on every change until the job finishes
+     *
+     * @return empty when the job is unknown
+     */
+    public synchronized Flux<Job> events(String id) {
+        Sinks.Many<Job> sink = events.get(id);
+        if (sink != null) {
+            return sink.asFlux();
+        }
+        Job job = jobs.get(id);
+        return job == null ? Flux.empty() : Flux.just(job.copy());
+    }
+
+    /**
+     * cancel a queued job, a running job runs to the end
+     *
+     * @return the job, null when unknown
+     */
+    public Job cancel(String id) {
+        Job snapshot;
+        synchronized (this) {
+            Job job = jobs.get(id);
+            if (job == null) {
+                return null;
+            }
+            if (job.getState() != Job.State.QUEUED || !queue.remove(job)) {
+                return job.copy();
+            }
+            snapshot = this.finish(job, Job.State.CANCELLED, null, null);
+        }
+        jobStore.save(snapshot);
+        return snapshot;
+    }
+
+    private void dispatch() {
+        while (true) {
+            Job snapshot;
+            synchronized (this) {
+                if (running >= properties.getWorkers()) {
+                    return;
+                }
+                Job job = queue.poll();
+                if (job == null) {
+                    return;
+                }
+                running++;
+                job.setState(Job.State.RUNNING);
+                job.setStartedAt(System.currentTimeMillis());
+                snapshot = snapshot(job);
+                events.get(job.getId()).tryEmitNext(snapshot);
+            }
+            jobStore.save(snapshot);
+            this.run(snapshot);
+        }
+    }
+
+    private void run(Job job) {
+        // completes on the executor, a job failing right away must not start the next one on this stack
+        generation.apply(job.getChatId(), job.getMessage(), job.isThink())
+                .whenCompleteAsync((answer, e) -> {
+                    Job snapshot;
+                    synchronized (this) {
+                        running--;
+                        Job current = jobs.get(job.getId());
+                        if (e == null) {
+                            done.increment();
+                            snapshot = this.finish(current, Job.State.DONE, answer, null);
+                        } else {
+                            failed.increment();
+                            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                            snapshot = this.finish(current, Job.State.FAILED, null, cause.getMessage());
+                        }
+                    }
+                    jobStore.save(snapshot);
+                    this.dispatch();
+                }, executor);
+    }
+
+    /**
+     * a copy of the job under a new version, taken under the lock with every change
+     */
+    private static Job snapshot(Job job) {
+        job.setVersion(job.getVersion() + 1);
+        return job.copy();
+    }
+
+    private Job finish(Job job, Job.State state, String answer, String error) {
+        job.setState(state);
+        job.setAnswer(answer);
+        job.setError(error);
+        job.setFinishedAt(System.currentTimeMillis());
+        Job snapshot = snapshot(job);
+        Sinks.Many<Job> sink = events.remove(job.getId());
+        if (sink != null) {
+            sink.tryEmitNext(snapshot);
+            sink.tryEmitComplete();
+        }
+        return snapshot;
+    }
+
+    /**
+     * drop the jobs finished longer than the retention ago
+     */
+    private void cleanup() {
+        long expireBefore = System.currentTimeMillis() - properties.getRetention().toMillis();
+        List<String> expired = new ArrayList<>();
+        synchronized (this) {
+            jobs.values().removeIf(job -> {
+                if (job.isFinished() && job.getFinishedAt() < expireBefore) {
+                    expired.add(job.getId());
+                    return true;
+                }
+                return false;
+            });
+        }
+        expired.forEach(jobStore::delete);
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(queue.size(), running, queue.clients(), done.sum(), failed.sum(), rejected.sum());
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * answers a job, {@link ChatService#generationAsync} in the application
+     */
+    @FunctionalInterface
+    interface Generation {
+
+        CompletableFuture<String> apply(String chatId, String message, boolean think);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+
+        private final int queued;
+        private final int running;
+        private final int clients;
+        private final long done;
+        private final long failed;
+        private final long rejected;
+    }
+}
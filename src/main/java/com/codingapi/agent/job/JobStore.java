@@ -0,0 +1,102 @@
+package com.codingapi.agent.job;
+
+import com.alibaba.fastjson.JSON;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * one json file per job in the jobs directory, written to a temp file and moved in place.
+ * saves of one job are ordered by the job version, a save that arrives after a newer one is dropped.
+ * without a directory the jobs are kept in memory only.
+ */
+@Slf4j
+public class JobStore {
+
+    private static final String SUFFIX = ".json";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    /**
+     * last saved version per job
+     */
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+
+    public JobStore(String directory) {
+        this.directory = StringUtils.hasText(directory) ? Paths.get(directory) : null;
+    }
+
+    public void save(Job job) {
+        if (directory == null) {
+            return;
+        }
+        versions.compute(job.getId(), (id, saved) -> {
+            if (saved != null && saved >= job.getVersion()) {
+                return saved;
+            }
+            Path file = directory.resolve(id + SUFFIX);
+            try {
+                Files.createDirectories(directory);
+                Path temp = Files.createTempFile(directory, id + ".", TEMP_SUFFIX);
+                Files.write(temp, JSON.toJSONBytes(job));
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                return job.getVersion();
+            } catch (IOException e) {
+                log.warn("save job error:{}", file, e);
+                return saved;
+            }
+        });
+    }
+
+    public void delete(String id) {
+        if (directory == null) {
+            return;
+        }
+        versions.compute(id, (key, saved) -> {
+            try {
+                Files.deleteIfExists(directory.resolve(key + SUFFIX));
+            } catch (IOException e) {
+                log.warn("delete job error:{}", key, e);
+            }
+            return null;
+        });
+    }
+
+    public List<Job> loadAll() {
+        List<Job> jobs = new ArrayList<>();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return jobs;
+        }
+        // temp files of saves interrupted by a crash
+        try (DirectoryStream<Path> temps = Files.newDirectoryStream(directory, "*" + TEMP_SUFFIX)) {
+            for (Path temp : temps) {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn("delete job temp files error:{}", directory, e);
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    jobs.add(JSON.parseObject(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), Job.class));
+                } catch (Exception e) {
+                    log.warn("job file ignored:{}", file, e);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("load jobs:" + directory + ",error:", e);
+        }
+        return jobs;
+    }
+}
@@ -0,0 +1,167 @@
+package com.codingapi.agent.memory;
+
+import com.codingapi.agent.advisor.ThinkTagFilter;
+import com.codingapi.agent.executor.AgentExecutor;
+import com.codingapi.agent.executor.ConversationExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * folds the turns that no longer fit in the token budget into a rolling summary.
+ * the summary is kept as a system message at the head of the conversation memory
+ * and is produced in the background after the response was returned.
+ * the rewrite runs as a turn of the conversation and is written with a single save,
+ * so it cannot interleave with the memory writes of a concurrent turn.
+ */
+@Slf4j
+public class ConversationSummarizer {
+
+    public static final String SUMMARY_METADATA = "summary";
+
+    private final static String SUMMARY_TEMPLATE =
+            """
+                    请将已有的对话摘要与以下较早的对话合并为一份简洁的摘要，保留用户身份、偏好、关键事实与尚未完成的事项。
+                    只输出摘要内容。
+                    已有摘要：
+                    {summary}
+                    较早的对话：
+                    {memory}
+                    /no_think
+                    """;
+
+    private final ChatClient chatClient;
+    private final ChatMemoryRepository chatMemoryRepository;
+    private final AgentExecutor agentExecutor;
+    private final ConversationExecutor conversationExecutor;
+    private final int tokenBudget;
+
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    public ConversationSummarizer(ChatClient chatClient,
+                                  ChatMemoryRepository chatMemoryRepository,
+                                  AgentExecutor agentExecutor,
+                                  ConversationExecutor conversationExecutor,
+                                  int tokenBudget) {
+        this.chatClient = chatClient;
+        this.chatMemoryRepository = chatMemoryRepository;
+        this.agentExecutor = agentExecutor;
+        this.conversationExecutor = conversationExecutor;
+        this.tokenBudget = tokenBudget;
+    }
+
+    /**
+     * schedule a summary of the conversation when its history is over the token budget
+     */
+    public void summarizeAsync(String conversationId) {
+        if (!running.add(conversationId)) {
+            return;
+        }
+        AtomicReference<Supplier<Boolean>> rewrite = new AtomicReference<>();
+        agentExecutor.runAsync(() -> rewrite.set(this.summarize(conversationId)))
+                .thenCompose(done -> rewrite.get() == null
+                        ? CompletableFuture.completedFuture(false)
+                        : conversationExecutor.submit(conversationId, rewrite.get()))
+                .whenComplete((result, e) -> {
+                    running.remove(conversationId);
+                    if (e != null) {
+                        log.warn("summarize conversation {} error", conversationId, e);
+                    }
+                });
+    }
+
+    /**
+     * summarize the turns outside the token budget
+     *
+     * @return the rewrite of the conversation memory to run as a turn, null when there is nothing to fold
+     */
+    Supplier<Boolean> summarize(String conversationId) {
+        List<Message> messages = chatMemoryRepository.findByConversationId(conversationId);
+        String summary = summaryOf(messages);
+        List<Message> history = historyOf(messages);
+        int windowStart = TokenEstimator.windowStart(history, tokenBudget);
+        if (windowStart == 0) {
+            return null;
+        }
+        List<Message> overflow = history.subList(0, windowStart);
+        String content = chatClient.prompt()
+                .user(SUMMARY_TEMPLATE
+                        .replace("{summary}", summary)
+                        .replace("{memory}", render(overflow)))
+                .call()
+                .content();
+        ThinkTagFilter thinkTagFilter = new ThinkTagFilter();
+        String newSummary = (thinkTagFilter.filter(content) + thinkTagFilter.flush()).trim();
+        if (!StringUtils.hasText(newSummary)) {
+            return null;
+        }
+        return () -> this.rewrite(conversationId, overflow, newSummary);
+    }
+
+    /**
+     * replace the summarized turns with the new summary, skipped when they were changed meanwhile
+     */
+    boolean rewrite(String conversationId, List<Message> overflow, String newSummary) {
+        List<Message> latestHistory = historyOf(chatMemoryRepository.findByConversationId(conversationId));
+        if (latestHistory.size() < overflow.size() || !sameMessages(latestHistory.subList(0, overflow.size()), overflow)) {
+            log.debug("conversation {} changed while summarizing, skip", conversationId);
+            return false;
+        }
+        List<Message> rewritten = new ArrayList<>();
+        rewritten.add(SystemMessage.builder()
+                .text(newSummary)
+                .metadata(Map.of(SUMMARY_METADATA, true))
+                .build());
+        rewritten.addAll(latestHistory.subList(overflow.size(), latestHistory.size()));
+        chatMemoryRepository.saveAll(conversationId, rewritten);
+        return true;
+    }
+
+    static String summaryOf(List<Message> messages) {
+        for (Message message : messages) {
+            if (message.getMessageType() == MessageType.SYSTEM) {
+                return message.getText();
+            }
+        }
+        return "";
+    }
+
+    static List<Message> historyOf(List<Message> messages) {
+        return messages.stream()
+                .filter(message -> message.getMessageType() == MessageType.USER
+                        || message.getMessageType() == MessageType.ASSISTANT)
+                .toList();
+    }
+
+    static String render(List<Message> messages) {
+        return messages.stream()
+                .map(message -> message.getMessageType() + ":" + message.getText())
+                .collect(Collectors.joining(System.lineSeparator()));
+    }
+
+    private static boolean sameMessages(List<Message> left, List<Message> right) {
+        for (int i = 0; i < left.size(); i++) {
+            Message l = left.get(i);
+            Message r = right.get(i);
+            if (l.getMessageType() != r.getMessageType() || !Objects.equals(l.getText(), r.getText())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
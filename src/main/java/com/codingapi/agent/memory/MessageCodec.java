@@ -0,0 +1,122 @@
+package com.codingapi.agent.memory;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * json codec of chat messages, only simple metadata values are kept
+ */
+public final class MessageCodec {
+
+    private MessageCodec() {
+    }
+
+    public static byte[] encode(List<Message> messages) {
+        JSONArray array = new JSONArray(messages.size());
+        for (Message message : messages) {
+            JSONObject item = new JSONObject();
+            item.put("type", message.getMessageType().name());
+            item.put("text", message.getText());
+            item.put("metadata", simpleMetadata(message.getMetadata()));
+            if (message instanceof AssistantMessage assistantMessage && assistantMessage.hasToolCalls()) {
+                JSONArray toolCalls = new JSONArray();
+                for (AssistantMessage.ToolCall toolCall : assistantMessage.getToolCalls()) {
+                    JSONObject call = new JSONObject();
+                    call.put("id", toolCall.id());
+                    call.put("type", toolCall.type());
+                    call.put("name", toolCall.name());
+                    call.put("arguments", toolCall.arguments());
+                    toolCalls.add(call);
+                }
+                item.put("toolCalls", toolCalls);
+            }
+            if (message instanceof ToolResponseMessage toolResponseMessage) {
+                JSONArray responses = new JSONArray();
+                for (ToolResponseMessage.ToolResponse toolResponse : toolResponseMessage.getResponses()) {
+                    JSONObject response = new JSONObject();
+                    response.put("id", toolResponse.id());
+                    response.put("name", toolResponse.name());
+                    response.put("responseData", toolResponse.responseData());
+                    responses.add(response);
+                }
+                item.put("responses", responses);
+            }
+            array.add(item);
+        }
+        return array.toJSONString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static List<Message> decode(byte[] data) {
+        JSONArray array = JSON.parseArray(new String(data, StandardCharsets.UTF_8));
+        List<Message> messages = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            JSONObject item = array.getJSONObject(i);
+            String text = item.getString("text");
+            Map<String, Object> metadata = new HashMap<>();
+            JSONObject metadataJson = item.getJSONObject("metadata");
+            if (metadataJson != null) {
+                metadata.putAll(metadataJson);
+            }
+            MessageType type = MessageType.valueOf(item.getString("type"));
+            switch (type) {
+                case USER -> messages.add(UserMessage.builder().text(text).metadata(metadata).build());
+                case SYSTEM -> messages.add(SystemMessage.builder().text(text).metadata(metadata).build());
+                case ASSISTANT -> {
+                    List<AssistantMessage.ToolCall> toolCalls = new ArrayList<>();
+                    JSONArray toolCallsJson = item.getJSONArray("toolCalls");
+                    if (toolCallsJson != null) {
+                        for (int j = 0; j < toolCallsJson.size(); j++) {
+                            JSONObject call = toolCallsJson.getJSONObject(j);
+                            toolCalls.add(new AssistantMessage.ToolCall(call.getString("id"),
+                                    call.getString("type"),
+                                    call.getString("name"),
+                                    call.getString("arguments")));
+                        }
+                    }
+                    messages.add(new AssistantMessage(text, metadata, toolCalls, List.of()));
+                }
+                case TOOL -> {
+                    List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>();
+                    JSONArray responsesJson = item.getJSONArray("responses");
+                    if (responsesJson != null) {
+                        for (int j = 0; j < responsesJson.size(); j++) {
+                            JSONObject response = responsesJson.getJSONObject(j);
+                            responses.add(new ToolResponseMessage.ToolResponse(response.getString("id"),
+                                    response.getString("name"),
+                                    response.getString("responseData")));
+                        }
+                    }
+                    messages.add(new ToolResponseMessage(responses, metadata));
+                }
+            }
+        }
+        return messages;
+    }
+
+    private static Map<String, Object> simpleMetadata(Map<String, Object> metadata) {
+        Map<String, Object> values = new HashMap<>();
+        if (metadata == null) {
+            return values;
+        }
+        for (Map.Entry<String, Object> entry : metadata.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof String || value instanceof Number || value instanceof Boolean) {
+                values.put(entry.getKey(), value);
+            }
+        }
+        return values;
+    }
+}
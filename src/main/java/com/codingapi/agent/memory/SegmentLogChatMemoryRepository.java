@@ -0,0 +1,661 @@
+package com.codingapi.agent.memory;
+
+import com.codingapi.agent.properties.AgentProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * chat memory repository backed by append-only, memory-mapped segment files.
+ * every save appends a snapshot record of the conversation window, the heap only keeps a flat
+ * open-addressing index of id hashes to record locations plus a size-bounded LRU of hot conversations
+ * that are evicted after an idle ttl. sealed segments with few live records are compacted in the background.
+ * records are written to the page cache and survive a process crash; with fsync enabled every save is also
+ * forced to disk, so it survives an os crash or power loss.
+ */
+@Slf4j
+public class SegmentLogChatMemoryRepository implements ChatMemoryRepository, DisposableBean {
+
+    private static final byte SNAPSHOT = 1;
+    private static final byte DELETE = 2;
+
+    /**
+     * record header: body length + crc32 of the body
+     */
+    private static final int HEADER_SIZE = 8;
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final double compactThreshold;
+    private final boolean fsync;
+
+    /**
+     * conversation id to record location, see {@link #location(int, int)}
+     */
+    private final LocationIndex index = new LocationIndex(this::conversationIdAt);
+    private final NavigableMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private final HotCache hotCache;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ScheduledExecutorService scheduler;
+
+    private volatile Segment activeSegment;
+
+    public SegmentLogChatMemoryRepository(AgentProperties.Memory memory) {
+        this.directory = Paths.get(memory.getDirectory());
+        long segmentSize = memory.getSegmentSize().toBytes();
+        // a segment is mapped into one buffer and addressed by int offsets
+        if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+            throw new RuntimeException("chat memory segment size must be positive and at most 2GB:"
+                    + memory.getSegmentSize());
+        }
+        this.segmentSize = (int) segmentSize;
+        this.compactThreshold = memory.getCompactThreshold();
+        this.fsync = memory.isFsync();
+        this.hotCache = new HotCache(memory.getHotCacheSize(), memory.getIdleTtl().toMillis());
+        this.recover();
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("chat-memory-"));
+        long idleCheckMillis = Math.max(1000, memory.getIdleTtl().toMillis() / 4);
+        scheduler.scheduleWithFixedDelay(hotCache::evictIdle, idleCheckMillis, idleCheckMillis, TimeUnit.MILLISECONDS);
+        long compactMillis = memory.getCompactInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::compact, compactMillis, compactMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        return index.conversationIds();
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        List<Message> messages = hotCache.get(conversationId);
+        if (messages != null) {
+            return messages;
+        }
+        LocatedRecord located = this.readRecord(conversationId);
+        if (located == null) {
+            return List.of();
+        }
+        messages = List.copyOf(MessageCodec.decode(located.record().payload()));
+        writeLock.lock();
+        try {
+            // a save or delete meanwhile moved the index, caching this older snapshot would overwrite the newer one
+            if (index.get(conversationId) == located.location()) {
+                hotCache.put(conversationId, messages);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return messages;
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        byte[] record = encodeRecord(SNAPSHOT, conversationId, MessageCodec.encode(messages));
+        List<Message> snapshot = List.copyOf(messages);
+        writeLock.lock();
+        try {
+            long location = this.append(record);
+            this.release(index.put(conversationId, location));
+            segments.get(segmentId(location)).liveBytes.addAndGet(record.length);
+            this.force(location, record.length);
+            hotCache.put(conversationId, snapshot);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        byte[] record = encodeRecord(DELETE, conversationId, new byte[0]);
+        writeLock.lock();
+        try {
+            if (index.get(conversationId) >= 0) {
+                long location = this.append(record);
+                segments.get(segmentId(location)).tombstoneBytes.addAndGet(record.length);
+                this.release(index.remove(conversationId));
+                this.force(location, record.length);
+            }
+            hotCache.remove(conversationId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * copy the live records of sealed, mostly dead segments to the active segment and delete them.
+     * tombstones count as live while an older segment may still hold a snapshot they delete,
+     * so the oldest segment drops them and newer segments do not re-copy them on every pass.
+     */
+    void compact() {
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment == activeSegment || segment.position == 0) {
+                continue;
+            }
+            long liveBytes = segment.liveBytes.get();
+            if (segments.firstKey() < segment.id) {
+                liveBytes += segment.tombstoneBytes.get();
+            }
+            double liveRatio = (double) liveBytes / segment.position;
+            if (liveRatio >= compactThreshold) {
+                continue;
+            }
+            writeLock.lock();
+            try {
+                this.compactSegment(segment);
+            } catch (Exception e) {
+                log.error("compact chat memory segment {} error", segment.path, e);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    private void compactSegment(Segment segment) throws IOException {
+        boolean hasOlderSegment = segments.firstKey() < segment.id;
+        int offset = 0;
+        while (offset < segment.position) {
+            SegmentRecord record = segment.read(offset);
+            long location = location(segment.id, offset);
+            if (record.type() == SNAPSHOT) {
+                if (index.get(record.conversationId()) == location) {
+                    long moved = this.append(record.raw());
+                    index.put(record.conversationId(), moved);
+                    segments.get(segmentId(moved)).liveBytes.addAndGet(record.raw().length);
+                }
+            } else if (hasOlderSegment && index.get(record.conversationId()) < 0) {
+                // keep tombstones while older segments may still hold snapshots of the conversation
+                long moved = this.append(record.raw());
+                segments.get(segmentId(moved)).tombstoneBytes.addAndGet(record.raw().length);
+            }
+            offset += record.raw().length;
+        }
+        // moved records must be durable before their only other copy is deleted
+        activeSegment.flush();
+        segments.remove(segment.id);
+        segment.close();
+        Files.deleteIfExists(segment.path);
+        log.debug("compacted chat memory segment {}", segment.path);
+    }
+
+    private LocatedRecord readRecord(String conversationId) {
+        for (int i = 0; i < 3; i++) {
+            long location = index.get(conversationId);
+            if (location < 0) {
+                return null;
+            }
+            Segment segment = segments.get(segmentId(location));
+            if (segment != null) {
+                return new LocatedRecord(location, segment.read(offset(location)));
+            }
+            // the segment was compacted meanwhile, read the new location
+        }
+        throw new RuntimeException("read chat memory error, conversationId:" + conversationId);
+    }
+
+    private long append(byte[] record) {
+        if (record.length > segmentSize) {
+            throw new RuntimeException("chat memory record is larger than segment size:" + record.length);
+        }
+        Segment segment = activeSegment;
+        if (segment.position + record.length > segment.capacity) {
+            segment.flush();
+            segment = this.openSegment(segment.id + 1);
+            activeSegment = segment;
+        }
+        int offset = segment.append(record);
+        return location(segment.id, offset);
+    }
+
+    private void force(long location, int length) {
+        if (fsync) {
+            segments.get(segmentId(location)).force(offset(location), length);
+        }
+    }
+
+    private String conversationIdAt(long location) {
+        return segments.get(segmentId(location)).conversationId(offset(location));
+    }
+
+    private void release(long location) {
+        if (location < 0) {
+            return;
+        }
+        Segment segment = segments.get(segmentId(location));
+        if (segment != null) {
+            segment.liveBytes.addAndGet(-segment.recordLength(offset(location)));
+        }
+    }
+
+    private void recover() {
+        try {
+            Files.createDirectories(directory);
+            List<Integer> ids;
+            try (Stream<Path> files = Files.list(directory)) {
+                ids = files.map(path -> path.getFileName().toString())
+                        .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                        .map(name -> Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length())))
+                        .sorted()
+                        .toList();
+            }
+            for (int id : ids) {
+                Segment segment = this.openSegment(id);
+                this.replay(segment);
+                activeSegment = segment;
+            }
+            if (activeSegment == null) {
+                activeSegment = this.openSegment(0);
+            }
+            log.info("recovered {} conversations from {} chat memory segments", index.size(), segments.size());
+        } catch (IOException e) {
+            throw new RuntimeException("recover chat memory error, directory:" + directory, e);
+        }
+    }
+
+    private void replay(Segment segment) {
+        int offset = 0;
+        while (offset + HEADER_SIZE <= segment.capacity) {
+            SegmentRecord record = segment.tryRead(offset);
+            if (record == null) {
+                break;
+            }
+            if (record.type() == SNAPSHOT) {
+                this.release(index.put(record.conversationId(), location(segment.id, offset)));
+                segment.liveBytes.addAndGet(record.raw().length);
+            } else {
+                this.release(index.remove(record.conversationId()));
+                segment.tombstoneBytes.addAndGet(record.raw().length);
+            }
+            offset += record.raw().length;
+        }
+        segment.position = offset;
+    }
+
+    private Segment openSegment(int id) {
+        Path path = directory.resolve(String.format("%010d%s", id, SEGMENT_SUFFIX));
+        try {
+            Segment segment = new Segment(id, path, segmentSize);
+            segments.put(id, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new RuntimeException("open chat memory segment error:" + path, e);
+        }
+    }
+
+    private static byte[] encodeRecord(byte type, String conversationId, byte[] payload) {
+        byte[] id = conversationId.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = 1 + 4 + id.length + payload.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + bodyLength);
+        buffer.putInt(bodyLength);
+        buffer.putInt(0);
+        buffer.put(type).putInt(id.length).put(id).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, bodyLength);
+        buffer.putInt(4, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    private static long location(int segmentId, int offset) {
+        return ((long) segmentId << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static int segmentId(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offset(long location) {
+        return (int) location;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        writeLock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private record SegmentRecord(byte type, String conversationId, byte[] payload, byte[] raw) {
+    }
+
+    private record LocatedRecord(long location, SegmentRecord record) {
+    }
+
+    private static class Segment {
+
+        private final int id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private final AtomicLong liveBytes = new AtomicLong();
+        private final AtomicLong tombstoneBytes = new AtomicLong();
+
+        private volatile int position;
+
+        private Segment(int id, Path path, int segmentSize) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.capacity = (int) Math.max(segmentSize, channel.size());
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+
+        private int append(byte[] record) {
+            int offset = position;
+            buffer.put(offset, record);
+            position = offset + record.length;
+            return offset;
+        }
+
+        private int recordLength(int offset) {
+            return HEADER_SIZE + buffer.getInt(offset);
+        }
+
+        private String conversationId(int offset) {
+            byte[] id = new byte[buffer.getInt(offset + HEADER_SIZE + 1)];
+            buffer.get(offset + HEADER_SIZE + 1 + 4, id);
+            return new String(id, StandardCharsets.UTF_8);
+        }
+
+        private SegmentRecord read(int offset) {
+            SegmentRecord record = this.tryRead(offset);
+            if (record == null) {
+                throw new RuntimeException("corrupted chat memory record, segment:" + path + ",offset:" + offset);
+            }
+            return record;
+        }
+
+        private SegmentRecord tryRead(int offset) {
+            int bodyLength = buffer.getInt(offset);
+            if (bodyLength <= 0 || offset + HEADER_SIZE + bodyLength > capacity) {
+                return null;
+            }
+            byte[] raw = new byte[HEADER_SIZE + bodyLength];
+            buffer.get(offset, raw);
+            CRC32 crc = new CRC32();
+            crc.update(raw, HEADER_SIZE, bodyLength);
+            if ((int) crc.getValue() != ByteBuffer.wrap(raw).getInt(4)) {
+                return null;
+            }
+            ByteBuffer body = ByteBuffer.wrap(raw, HEADER_SIZE, bodyLength);
+            byte type = body.get();
+            byte[] id = new byte[body.getInt()];
+            body.get(id);
+            byte[] payload = new byte[body.remaining()];
+            body.get(payload);
+            return new SegmentRecord(type, new String(id, StandardCharsets.UTF_8), payload, raw);
+        }
+
+        private void flush() {
+            buffer.force();
+        }
+
+        private void force(int offset, int length) {
+            buffer.force(offset, length);
+        }
+
+        private void close() {
+            try {
+                this.flush();
+                channel.close();
+            } catch (IOException e) {
+                log.warn("close chat memory segment {} error", path, e);
+            }
+        }
+    }
+
+    /**
+     * open-addressing map of conversation id to record location, kept in two flat long arrays.
+     * slots hold a 64-bit hash of the id instead of the id, equal hashes are confirmed against
+     * the id stored in the record. removal shifts the probe chain back, so there are no tombstones.
+     */
+    private static class LocationIndex {
+
+        private static final long EMPTY = 0;
+
+        private final Function<Long, String> conversationIdAt;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private long[] hashes = new long[1024];
+        private long[] locations = new long[1024];
+        private int size;
+
+        private LocationIndex(Function<Long, String> conversationIdAt) {
+            this.conversationIdAt = conversationIdAt;
+        }
+
+        private static long hash(String conversationId) {
+            // fnv-1a with a final mix, 0 marks an empty slot
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < conversationId.length(); i++) {
+                hash ^= conversationId.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            return hash == EMPTY ? 1 : hash;
+        }
+
+        private int slot(long hash, String conversationId) {
+            int mask = hashes.length - 1;
+            int slot = (int) hash & mask;
+            while (hashes[slot] != EMPTY) {
+                if (hashes[slot] == hash && conversationId.equals(conversationIdAt.apply(locations[slot]))) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * @return the record location, or -1 when the conversation is not indexed
+         */
+        private long get(String conversationId) {
+            lock.readLock().lock();
+            try {
+                int slot = this.slot(hash(conversationId), conversationId);
+                return hashes[slot] == EMPTY ? -1 : locations[slot];
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * @return the previous location, or -1
+         */
+        private long put(String conversationId, long location) {
+            lock.writeLock().lock();
+            try {
+                long hash = hash(conversationId);
+                int slot = this.slot(hash, conversationId);
+                if (hashes[slot] != EMPTY) {
+                    long previous = locations[slot];
+                    locations[slot] = location;
+                    return previous;
+                }
+                hashes[slot] = hash;
+                locations[slot] = location;
+                if (++size > hashes.length * 3 / 4) {
+                    this.resize();
+                }
+                return -1;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * @return the removed location, or -1
+         */
+        private long remove(String conversationId) {
+            lock.writeLock().lock();
+            try {
+                int slot = this.slot(hash(conversationId), conversationId);
+                if (hashes[slot] == EMPTY) {
+                    return -1;
+                }
+                long removed = locations[slot];
+                int mask = hashes.length - 1;
+                int next = slot;
+                while (true) {
+                    next = (next + 1) & mask;
+                    if (hashes[next] == EMPTY) {
+                        break;
+                    }
+                    int home = (int) hashes[next] & mask;
+                    // move the entry back unless its home lies cyclically in (slot, next]
+                    boolean reachable = slot <= next ? slot < home && home <= next : slot < home || home <= next;
+                    if (!reachable) {
+                        hashes[slot] = hashes[next];
+                        locations[slot] = locations[next];
+                        slot = next;
+                    }
+                }
+                hashes[slot] = EMPTY;
+                size--;
+                return removed;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void resize() {
+            long[] oldHashes = hashes;
+            long[] oldLocations = locations;
+            hashes = new long[oldHashes.length * 2];
+            locations = new long[oldHashes.length * 2];
+            int mask = hashes.length - 1;
+            for (int i = 0; i < oldHashes.length; i++) {
+                if (oldHashes[i] != EMPTY) {
+                    int slot = (int) oldHashes[i] & mask;
+                    while (hashes[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    hashes[slot] = oldHashes[i];
+                    locations[slot] = oldLocations[i];
+                }
+            }
+        }
+
+        private List<String> conversationIds() {
+            lock.readLock().lock();
+            try {
+                List<String> ids = new ArrayList<>(size);
+                for (int i = 0; i < hashes.length; i++) {
+                    if (hashes[i] != EMPTY) {
+                        ids.add(conversationIdAt.apply(locations[i]));
+                    }
+                }
+                return ids;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private int size() {
+            lock.readLock().lock();
+            try {
+                return size;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * size-bounded LRU of hot conversations with idle eviction
+     */
+    private static class HotCache {
+
+        private final long idleTtlMillis;
+        private final LinkedHashMap<String, HotEntry> entries;
+
+        private HotCache(int maxSize, long idleTtlMillis) {
+            this.idleTtlMillis = idleTtlMillis;
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, HotEntry> eldest) {
+                    return size() > maxSize;
+                }
+            };
+        }
+
+        private synchronized List<Message> get(String conversationId) {
+            HotEntry entry = entries.get(conversationId);
+            if (entry == null) {
+                return null;
+            }
+            entry.lastAccess = System.currentTimeMillis();
+            return entry.messages;
+        }
+
+        private synchronized void put(String conversationId, List<Message> messages) {
+            entries.put(conversationId, new HotEntry(messages, System.currentTimeMillis()));
+        }
+
+        private synchronized void remove(String conversationId) {
+            entries.remove(conversationId);
+        }
+
+        private synchronized void evictIdle() {
+            long deadline = System.currentTimeMillis() - idleTtlMillis;
+            Iterator<HotEntry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                // entries are kept in access order, the first non-idle entry ends the scan
+                if (iterator.next().lastAccess > deadline) {
+                    break;
+                }
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class HotEntry {
+
+        private final List<Message> messages;
+        private long lastAccess;
+
+        private HotEntry(List<Message> messages, long lastAccess) {
+            this.messages = messages;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.codingapi.agent.memory;
+
+import com.codingapi.agent.template.CompiledTemplate;
+import lombok.NonNull;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
+import org.springframework.ai.chat.client.advisor.api.AdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.BaseChatMemoryAdvisor;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * prompt chat memory advisor with a token budget window.
+ * only the newest turns that fit in the budget are rendered into the system prompt together with the rolling summary,
+ * the turns outside the window are folded into the summary by {@link ConversationSummarizer} after the response.
+ * the system prompt is rendered by the memory template with {@code {instructions}}, {@code {summary}} and {@code {memory}}.
+ * a token budget of 0 renders the whole chat memory window.
+ */
+public class TokenBudgetChatMemoryAdvisor implements BaseChatMemoryAdvisor {
+
+    private final ChatMemory chatMemory;
+    private final Supplier<CompiledTemplate> systemPromptTemplate;
+    private final int tokenBudget;
+    private final ConversationSummarizer summarizer;
+
+    public TokenBudgetChatMemoryAdvisor(ChatMemory chatMemory,
+                                        Supplier<CompiledTemplate> systemPromptTemplate,
+                                        int tokenBudget,
+                                        ConversationSummarizer summarizer) {
+        this.chatMemory = chatMemory;
+        this.systemPromptTemplate = systemPromptTemplate;
+        this.tokenBudget = tokenBudget;
+        this.summarizer = summarizer;
+    }
+
+    @NonNull
+    @Override
+    public ChatClientRequest before(@NonNull ChatClientRequest chatClientRequest, @NonNull AdvisorChain advisorChain) {
+        String conversationId = this.getConversationId(chatClientRequest.context(), ChatMemory.DEFAULT_CONVERSATION_ID);
+        List<Message> messages = chatMemory.get(conversationId);
+        List<Message> history = ConversationSummarizer.historyOf(messages);
+        List<Message> window = tokenBudget > 0
+                ? history.subList(TokenEstimator.windowStart(history, tokenBudget), history.size())
+                : history;
+
+        Prompt prompt = chatClientRequest.prompt();
+        String systemText = systemPromptTemplate.get().render(Map.of(
+                "instructions", prompt.getSystemMessage().getText(),
+                "summary", ConversationSummarizer.summaryOf(messages),
+                "memory", ConversationSummarizer.render(window)));
+        ChatClientRequest request = ChatClientRequest.builder()
+                .prompt(prompt.augmentSystemMessage(systemText))
+                .context(chatClientRequest.context())
+                .build();
+
+        chatMemory.add(conversationId, request.prompt().getUserMessage());
+        return request;
+    }
+
+    @NonNull
+    @Override
+    public ChatClientResponse after(@NonNull ChatClientResponse chatClientResponse, @NonNull AdvisorChain advisorChain) {
+        String conversationId = this.getConversationId(chatClientResponse.context(), ChatMemory.DEFAULT_CONVERSATION_ID);
+        ChatResponse chatResponse = chatClientResponse.chatResponse();
+        if (chatResponse != null) {
+            List<Message> assistantMessages = new ArrayList<>();
+            for (Generation generation : chatResponse.getResults()) {
+                assistantMessages.add(generation.getOutput());
+            }
+            chatMemory.add(conversationId, assistantMessages);
+        }
+        if (summarizer != null && tokenBudget > 0) {
+            List<Message> history = ConversationSummarizer.historyOf(chatMemory.get(conversationId));
+            if (TokenEstimator.windowStart(history, tokenBudget) > 0) {
+                summarizer.summarizeAsync(conversationId);
+            }
+        }
+        return chatClientResponse;
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return "tokenBudgetChatMemory";
+    }
+
+    @Override
+    public int getOrder() {
+        return Advisor.DEFAULT_CHAT_MEMORY_PRECEDENCE_ORDER;
+    }
+}
@@ -0,0 +1,69 @@
+package com.codingapi.agent.memory;
+
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+
+/**
+ * local token estimator, no tokenizer round trip.
+ * CJK characters count as one token each, other text counts as one token per four characters.
+ */
+public final class TokenEstimator {
+
+    /**
+     * per message overhead of the chat format
+     */
+    private static final int MESSAGE_OVERHEAD = 4;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int tokens = 0;
+        int asciiRun = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '\u2E80') {
+                tokens++;
+                tokens += (asciiRun + 3) / 4;
+                asciiRun = 0;
+            } else {
+                asciiRun++;
+            }
+        }
+        return tokens + (asciiRun + 3) / 4;
+    }
+
+    public static int estimate(Message message) {
+        return MESSAGE_OVERHEAD + estimate(message.getText());
+    }
+
+    public static int estimate(List<Message> messages) {
+        int tokens = 0;
+        for (Message message : messages) {
+            tokens += estimate(message);
+        }
+        return tokens;
+    }
+
+    /**
+     * find the start of the newest messages that fit in the token budget
+     *
+     * @param messages    history, oldest first
+     * @param tokenBudget token budget
+     * @return index of the first message inside the window, {@code messages.size()} when nothing fits
+     */
+    public static int windowStart(List<Message> messages, int tokenBudget) {
+        int tokens = 0;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            tokens += estimate(messages.get(i));
+            if (tokens > tokenBudget) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,179 @@
+package com.codingapi.agent.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * micrometer meters of the agent.
+ * meters are registered once per tool or model and cached, so recording on the hot path is a map lookup
+ * and does not build tags per request.
+ */
+@Component
+public class AgentMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, ModelMeters> models = new ConcurrentHashMap<>();
+    private final ToolRetrievalMeters toolRetrieval;
+    private final ToolOutputMeters toolOutput;
+
+    public AgentMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.toolRetrieval = new ToolRetrievalMeters(meterRegistry);
+        this.toolOutput = new ToolOutputMeters(meterRegistry);
+    }
+
+    /**
+     * meters of the tool result budget
+     */
+    public ToolOutputMeters toolOutput() {
+        return toolOutput;
+    }
+
+    /**
+     * meters of the tool retrieval
+     */
+    public ToolRetrievalMeters toolRetrieval() {
+        return toolRetrieval;
+    }
+
+    /**
+     * duration of the turns sent over a model route, called once per route
+     */
+    public Timer route(String route, String model) {
+        return Timer.builder("agent.route.duration")
+                .description("turn time from prompt to the last token, per model route")
+                .tag("route", route)
+                .tag("model", model)
+                .register(meterRegistry);
+    }
+
+    /**
+     * meters of a tool, called once when the tool callback is created
+     */
+    public ToolMeters tool(String toolName) {
+        return new ToolMeters(meterRegistry, toolName);
+    }
+
+    /**
+     * meters of a model
+     */
+    public ModelMeters model(String model) {
+        ModelMeters modelMeters = models.get(model);
+        if (modelMeters == null) {
+            modelMeters = models.computeIfAbsent(model, key -> new ModelMeters(meterRegistry, key));
+        }
+        return modelMeters;
+    }
+
+    @Getter
+    public static class ToolMeters {
+
+        private final Timer duration;
+        private final Counter errors;
+
+        private ToolMeters(MeterRegistry meterRegistry, String toolName) {
+            this.duration = Timer.builder("agent.tool.duration")
+                    .description("tool method execution time")
+                    .tag("tool", toolName)
+                    .register(meterRegistry);
+            this.errors = Counter.builder("agent.tool.errors")
+                    .description("tool method executions that threw")
+                    .tag("tool", toolName)
+                    .register(meterRegistry);
+        }
+    }
+
+    @Getter
+    public static class ToolRetrievalMeters {
+
+        private final DistributionSummary selected;
+        private final Counter savedTokens;
+
+        private ToolRetrievalMeters(MeterRegistry meterRegistry) {
+            this.selected = DistributionSummary.builder("agent.tool.retrieval.selected")
+                    .description("tools offered to the model per request")
+                    .register(meterRegistry);
+            this.savedTokens = Counter.builder("agent.tool.retrieval.saved.tokens")
+                    .description("estimated prompt tokens of the tool schemas left out")
+                    .register(meterRegistry);
+        }
+    }
+
+    @Getter
+    public static class ToolOutputMeters {
+
+        private final Counter truncated;
+        private final Counter savedTokens;
+
+        private ToolOutputMeters(MeterRegistry meterRegistry) {
+            this.truncated = Counter.builder("agent.tool.output.truncated")
+                    .description("tool results compressed to the token budget")
+                    .register(meterRegistry);
+            this.savedTokens = Counter.builder("agent.tool.output.saved.tokens")
+                    .description("estimated prompt tokens removed from tool results")
+                    .register(meterRegistry);
+        }
+    }
+
+    @Getter
+    public static class ModelMeters {
+
+        private final Timer call;
+        private final Timer callError;
+        private final Timer firstToken;
+        private final Timer stream;
+        private final Timer streamError;
+        private final Timer streamCancel;
+        private final DistributionSummary tokensPerSecond;
+        private final Counter promptTokens;
+        private final Counter completionTokens;
+
+        private ModelMeters(MeterRegistry meterRegistry, String model) {
+            this.call = modelTimer(meterRegistry, "agent.model.call.duration", "blocking model call time",
+                    model, "success");
+            this.callError = modelTimer(meterRegistry, "agent.model.call.duration", "blocking model call time",
+                    model, "error");
+            this.firstToken = Timer.builder("agent.model.first.token")
+                    .description("time to the first streamed token")
+                    .tag("model", model)
+                    .register(meterRegistry);
+            this.stream = modelTimer(meterRegistry, "agent.model.stream.duration", "streamed model call time",
+                    model, "success");
+            this.streamError = modelTimer(meterRegistry, "agent.model.stream.duration", "streamed model call time",
+                    model, "error");
+            this.streamCancel = modelTimer(meterRegistry, "agent.model.stream.duration", "streamed model call time",
+                    model, "cancel");
+            this.tokensPerSecond = DistributionSummary.builder("agent.model.tokens.per.second")
+                    .description("streamed completion tokens per second after the first token")
+                    .tag("model", model)
+                    .register(meterRegistry);
+            this.promptTokens = Counter.builder("agent.model.tokens")
+                    .description("tokens reported by the model")
+                    .tag("model", model)
+                    .tag("type", "prompt")
+                    .register(meterRegistry);
+            this.completionTokens = Counter.builder("agent.model.tokens")
+                    .description("tokens reported by the model")
+                    .tag("model", model)
+                    .tag("type", "completion")
+                    .register(meterRegistry);
+        }
+
+        private static Timer modelTimer(MeterRegistry meterRegistry, String name, String description,
+                                        String model, String outcome) {
+            return Timer.builder(name)
+                    .description(description)
+                    .tag("model", model)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+    }
+}
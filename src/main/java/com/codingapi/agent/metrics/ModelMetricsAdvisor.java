@@ -0,0 +1,157 @@
+package com.codingapi.agent.metrics;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.NonNull;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.core.Ordered;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * records model latency, time to first token, tokens per second and token usage per model.
+ * runs right before the model call, so every round of a tool loop is recorded as its own model call.
+ * failed and cancelled calls are timed too, under the {@code outcome} tag.
+ * per-advisor timings come from the spring ai advisor observations ({@code spring.ai.advisor}).
+ */
+public class ModelMetricsAdvisor implements CallAdvisor, StreamAdvisor {
+
+    private final AgentMetrics agentMetrics;
+    private final String defaultModel;
+
+    public ModelMetricsAdvisor(AgentMetrics agentMetrics, String defaultModel) {
+        this.agentMetrics = agentMetrics;
+        this.defaultModel = StringUtils.hasText(defaultModel) ? defaultModel : "default";
+    }
+
+    private AgentMetrics.ModelMeters meters(ChatClientRequest request) {
+        ChatOptions options = request.prompt().getOptions();
+        String model = options != null && StringUtils.hasText(options.getModel()) ? options.getModel() : defaultModel;
+        return agentMetrics.model(model);
+    }
+
+    private static void recordUsage(AgentMetrics.ModelMeters meters, Usage usage) {
+        if (usage == null) {
+            return;
+        }
+        if (usage.getPromptTokens() != null && usage.getPromptTokens() > 0) {
+            meters.getPromptTokens().increment(usage.getPromptTokens());
+        }
+        if (usage.getCompletionTokens() != null && usage.getCompletionTokens() > 0) {
+            meters.getCompletionTokens().increment(usage.getCompletionTokens());
+        }
+    }
+
+    private static Usage usageOf(ChatResponse chatResponse) {
+        return chatResponse != null && chatResponse.getMetadata() != null ? chatResponse.getMetadata().getUsage() : null;
+    }
+
+    @NonNull
+    @Override
+    public ChatClientResponse adviseCall(@NonNull ChatClientRequest chatClientRequest,
+                                         @NonNull CallAdvisorChain callAdvisorChain) {
+        AgentMetrics.ModelMeters meters = this.meters(chatClientRequest);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            ChatClientResponse response = callAdvisorChain.nextCall(chatClientRequest);
+            failed = false;
+            recordUsage(meters, usageOf(response.chatResponse()));
+            return response;
+        } finally {
+            Timer timer = failed ? meters.getCallError() : meters.getCall();
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @NonNull
+    @Override
+    public Flux<ChatClientResponse> adviseStream(@NonNull ChatClientRequest chatClientRequest,
+                                                 @NonNull StreamAdvisorChain streamAdvisorChain) {
+        return Flux.defer(() -> {
+            StreamSample sample = new StreamSample(this.meters(chatClientRequest));
+            // recorded before the terminal signal is passed on, so a subscriber that saw it sees the meters too
+            return streamAdvisorChain.nextStream(chatClientRequest)
+                    .doOnNext(sample::onNext)
+                    .doOnComplete(() -> sample.onFinally(SignalType.ON_COMPLETE))
+                    .doOnError(e -> sample.onFinally(SignalType.ON_ERROR))
+                    .doOnCancel(() -> sample.onFinally(SignalType.CANCEL));
+        });
+    }
+
+    @NonNull
+    @Override
+    public String getName() {
+        return this.getClass().getName();
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 2;
+    }
+
+    /**
+     * timings of one streamed model call
+     */
+    private static class StreamSample {
+
+        private final AgentMetrics.ModelMeters meters;
+        private final long start = System.nanoTime();
+        private long firstToken;
+        private long chunks;
+        private Usage usage;
+
+        private StreamSample(AgentMetrics.ModelMeters meters) {
+            this.meters = meters;
+        }
+
+        private void onNext(ChatClientResponse response) {
+            ChatResponse chatResponse = response.chatResponse();
+            if (chatResponse == null) {
+                return;
+            }
+            Usage chunkUsage = usageOf(chatResponse);
+            if (chunkUsage != null && chunkUsage.getTotalTokens() != null && chunkUsage.getTotalTokens() > 0) {
+                usage = chunkUsage;
+            }
+            if (chatResponse.getResult() != null && StringUtils.hasLength(chatResponse.getResult().getOutput().getText())) {
+                if (firstToken == 0) {
+                    firstToken = System.nanoTime();
+                    meters.getFirstToken().record(firstToken - start, TimeUnit.NANOSECONDS);
+                }
+                chunks++;
+            }
+        }
+
+        private void onFinally(SignalType signalType) {
+            long end = System.nanoTime();
+            Timer timer = switch (signalType) {
+                case ON_COMPLETE -> meters.getStream();
+                case ON_ERROR -> meters.getStreamError();
+                default -> meters.getStreamCancel();
+            };
+            timer.record(end - start, TimeUnit.NANOSECONDS);
+            if (signalType != SignalType.ON_COMPLETE) {
+                return;
+            }
+            recordUsage(meters, usage);
+            // without usage in the stream every content chunk is counted as one token
+            long tokens = usage != null && usage.getCompletionTokens() != null && usage.getCompletionTokens() > 0
+                    ? usage.getCompletionTokens()
+                    : chunks;
+            if (firstToken > 0 && end > firstToken && tokens > 0) {
+                meters.getTokensPerSecond().record(tokens * 1_000_000_000.0 / (end - firstToken));
+            }
+        }
+    }
+}
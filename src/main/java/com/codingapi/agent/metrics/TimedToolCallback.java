@@ -0,0 +1,55 @@
+package com.codingapi.agent.metrics;
+
+import lombok.NonNull;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * tool callback that records the execution time and errors of the tool method
+ */
+public class TimedToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+    private final AgentMetrics.ToolMeters toolMeters;
+
+    public TimedToolCallback(ToolCallback delegate, AgentMetrics agentMetrics) {
+        this.delegate = delegate;
+        this.toolMeters = agentMetrics.tool(delegate.getToolDefinition().name());
+    }
+
+    @NonNull
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @NonNull
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @NonNull
+    @Override
+    public String call(@NonNull String toolInput) {
+        return this.call(toolInput, null);
+    }
+
+    @NonNull
+    @Override
+    public String call(@NonNull String toolInput, ToolContext toolContext) {
+        long start = System.nanoTime();
+        try {
+            return delegate.call(toolInput, toolContext);
+        } catch (RuntimeException e) {
+            toolMeters.getErrors().increment();
+            throw e;
+        } finally {
+            toolMeters.getDuration().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.codingapi.agent.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * capabilities of a model, resolved once per model name by {@link ModelProfiles}
+ */
+@Getter
+@AllArgsConstructor
+public class ModelProfile {
+
+    private final String model;
+
+    /**
+     * the model writes its reasoning in {@code <think>} blocks
+     */
+    private final boolean thinkTags;
+
+    /**
+     * the model turns thinking off when the question ends with {@code /no_think}
+     */
+    private final boolean thinkSwitch;
+
+    /**
+     * the model returns tool calls natively, otherwise tools are described in the prompt
+     */
+    private final boolean nativeTools;
+
+    /**
+     * context window in tokens
+     */
+    private final int contextTokens;
+}
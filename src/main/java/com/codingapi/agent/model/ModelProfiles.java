@@ -0,0 +1,60 @@
+package com.codingapi.agent.model;
+
+import com.codingapi.agent.properties.AgentProperties;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * registry of the {@link ModelProfile}s.
+ * a profile is resolved once per model name from {@code codingapi.agent.models}, unset capabilities are detected
+ * from the model family in the name.
+ */
+@Component
+public class ModelProfiles {
+
+    private static final int DEFAULT_CONTEXT_TOKENS = 8192;
+
+    private final Map<String, AgentProperties.ModelProfile> properties;
+    private final String defaultModel;
+    private final Map<String, ModelProfile> profiles = new ConcurrentHashMap<>();
+
+    public ModelProfiles(AgentProperties agentProperties, Environment environment) {
+        this.properties = agentProperties.getModels();
+        this.defaultModel = environment.getProperty("spring.ai.openai.chat.options.model", "default");
+    }
+
+    /**
+     * profile of the model
+     *
+     * @param model model name, null for the default model
+     */
+    public ModelProfile resolve(String model) {
+        String name = StringUtils.hasText(model) ? model : defaultModel;
+        ModelProfile profile = profiles.get(name);
+        if (profile == null) {
+            profile = profiles.computeIfAbsent(name, this::create);
+        }
+        return profile;
+    }
+
+    public String getDefaultModel() {
+        return defaultModel;
+    }
+
+    private ModelProfile create(String model) {
+        String family = model.toLowerCase(Locale.ROOT);
+        boolean qwen3 = family.contains("qwen3");
+        boolean reasoning = family.contains("deepseek-r1") || family.contains("qwq");
+        AgentProperties.ModelProfile configured = properties.getOrDefault(model, new AgentProperties.ModelProfile());
+        return new ModelProfile(model,
+                configured.getThinkTags() != null ? configured.getThinkTags() : qwen3 || reasoning,
+                configured.getThinkSwitch() != null ? configured.getThinkSwitch() : qwen3,
+                configured.getNativeTools() != null ? configured.getNativeTools() : !family.contains("deepseek-r1"),
+                configured.getContextTokens() != null ? configured.getContextTokens() : DEFAULT_CONTEXT_TOKENS);
+    }
+}
@@ -0,0 +1,148 @@
+package com.codingapi.agent.model;
+
+import com.codingapi.agent.metrics.AgentMetrics;
+import com.codingapi.agent.properties.AgentProperties;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * picks the model of a turn.
+ * short turns without think and without matching tools that fit in the context window of the simple model go to the
+ * simple model, every other turn to the complex model. the simple model keeps the tools unless simple-tools is off,
+ * tool matching is lexical and misses paraphrases. the routes and their options are built once at startup,
+ * a request only copies the options of its route.
+ */
+@Component
+public class ModelRouter {
+
+    private final AgentProperties.Router router;
+    private final Route simple;
+    private final Route complex;
+
+    public ModelRouter(ModelProfiles modelProfiles,
+                       ChatModel chatModel,
+                       AgentMetrics agentMetrics,
+                       AgentProperties agentProperties) {
+        this.router = agentProperties.getRouter();
+        ChatOptions defaultOptions = chatModel.getDefaultOptions();
+        this.complex = new Route("complex", router.getComplexModel(), true,
+                defaultOptions, modelProfiles, agentMetrics);
+        this.simple = this.isEnabled()
+                ? new Route("simple", router.getSimpleModel(), router.isSimpleTools(),
+                defaultOptions, modelProfiles, agentMetrics)
+                : complex;
+    }
+
+    public boolean isEnabled() {
+        return router.isEnabled() && StringUtils.hasText(router.getSimpleModel());
+    }
+
+    /**
+     * route of the turn
+     *
+     * @param userMessage  user text of the turn
+     * @param promptTokens estimated tokens of the system text, history and user text
+     * @param think        think requested
+     * @param toolRelevant some tool matches the turn
+     */
+    public Route route(String userMessage, int promptTokens, boolean think, boolean toolRelevant) {
+        if (simple != complex
+                && !think
+                && !toolRelevant
+                && userMessage.length() <= router.getMaxSimpleChars()
+                && promptTokens <= simple.profile.getContextTokens()) {
+            return simple;
+        }
+        return complex;
+    }
+
+    public List<Route.Stats> getStats() {
+        return simple == complex ? List.of(complex.getStats()) : List.of(simple.getStats(), complex.getStats());
+    }
+
+    public static class Route {
+
+        @Getter
+        private final String name;
+        @Getter
+        private final ModelProfile profile;
+        /**
+         * options of the routed model, null when the route uses the default options
+         */
+        private final ToolCallingChatOptions options;
+        @Getter
+        private final Timer duration;
+        @Getter
+        private final boolean simple;
+        /**
+         * the tools are offered on this route
+         */
+        @Getter
+        private final boolean offerTools;
+
+        private Route(String name,
+                      String model,
+                      boolean offerTools,
+                      ChatOptions defaultOptions,
+                      ModelProfiles modelProfiles,
+                      AgentMetrics agentMetrics) {
+            this.name = name;
+            this.options = StringUtils.hasText(model) ? options(defaultOptions, model) : null;
+            this.profile = modelProfiles.resolve(model);
+            this.duration = agentMetrics.route(name, profile.getModel());
+            this.simple = "simple".equals(name);
+            this.offerTools = offerTools;
+        }
+
+        private static ToolCallingChatOptions options(ChatOptions defaultOptions, String model) {
+            if (defaultOptions instanceof OpenAiChatOptions openAiChatOptions) {
+                OpenAiChatOptions options = OpenAiChatOptions.fromOptions(openAiChatOptions);
+                options.setModel(model);
+                return options;
+            }
+            return ToolCallingChatOptions.builder().model(model).build();
+        }
+
+        /**
+         * a copy of the route options for one request, the client writes the tools into it
+         */
+        public ChatOptions newOptions() {
+            return options == null ? null : options.copy();
+        }
+
+        public Stats getStats() {
+            return new Stats(name,
+                    profile.getModel(),
+                    duration.count(),
+                    duration.mean(TimeUnit.MILLISECONDS),
+                    duration.max(TimeUnit.MILLISECONDS));
+        }
+
+        @Getter
+        public static class Stats {
+
+            private final String route;
+            private final String model;
+            private final long turns;
+            private final double meanMillis;
+            private final double maxMillis;
+
+            private Stats(String route, String model, long turns, double meanMillis, double maxMillis) {
+                this.route = route;
+                this.model = model;
+                this.turns = turns;
+                this.meanMillis = meanMillis;
+                this.maxMillis = maxMillis;
+            }
+        }
+    }
+}
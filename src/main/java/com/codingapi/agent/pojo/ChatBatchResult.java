@@ -0,0 +1,23 @@
+package com.codingapi.agent.pojo;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * result of one request of a chat batch, either the answer or the error
+ */
+@Getter
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChatBatchResult {
+
+    /**
+     * position of the request in the batch
+     */
+    private final int index;
+    private final String chatId;
+    private final String answer;
+    private final String error;
+    private final long durationMillis;
+}
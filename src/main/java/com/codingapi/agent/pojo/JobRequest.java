@@ -0,0 +1,14 @@
+package com.codingapi.agent.pojo;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Setter
+@Getter
+public class JobRequest extends ChatRequest {
+
+    /**
+     * higher runs first
+     */
+    private int priority;
+}
@@ -2,12 +2,13 @@ package com.codingapi.agent.properties;
 
 import lombok.Getter;
 import lombok.Setter;
-import org.apache.commons.io.IOUtils;
-import org.springframework.core.io.DefaultResourceLoader;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.ResourceLoader;
+import org.springframework.util.unit.DataSize;
 
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @Setter
 @Getter
@@ -33,24 +34,584 @@ public class AgentProperties {
      */
     private String defaultPromptMemoryTemplateFile = "classpath:texts/memory.txt";
 
-    public String getDefaultSystemTemplateText() {
-        try {
-            ResourceLoader resourceLoader = new DefaultResourceLoader();
-            Resource resource = resourceLoader.getResource(defaultSystemTemplateFile);
-            return IOUtils.toString(resource.getInputStream(), StandardCharsets.UTF_8);
-        } catch (Exception e) {
-            throw new RuntimeException("load defaultSystemTemplateFile:" + defaultSystemTemplateFile + ",error:", e);
-        }
-    }
-
-    public String getDefaultPromptMemoryTemplateText() {
-        try {
-            ResourceLoader resourceLoader = new DefaultResourceLoader();
-            Resource resource = resourceLoader.getResource(defaultPromptMemoryTemplateFile);
-            return IOUtils.toString(resource.getInputStream(), StandardCharsets.UTF_8);
-        } catch (Exception e) {
-            throw new RuntimeException("load defaultPromptMemoryTemplateFile:" + defaultPromptMemoryTemplateFile + ",error:", e);
-        }
+    /**
+     * recompile the template files when they change on disk
+     */
+    private boolean templateReload = true;
+
+    /**
+     * chat memory store
+     */
+    private Memory memory = new Memory();
+
+    /**
+     * chat memory partitioned across several instances
+     */
+    private Cluster cluster = new Cluster();
+
+    /**
+     * request execution
+     */
+    private Execution execution = new Execution();
+
+    /**
+     * admission control of the chat endpoints
+     */
+    private Admission admission = new Admission();
+
+    /**
+     * tool execution
+     */
+    private Tools tools = new Tools();
+
+    /**
+     * tool loop budget
+     */
+    private Loop loop = new Loop();
+
+    /**
+     * model endpoint pools
+     */
+    private Routing routing = new Routing();
+
+    /**
+     * model capabilities keyed by model name, unset values are detected from the name
+     */
+    private Map<String, ModelProfile> models = new HashMap<>();
+
+    /**
+     * complexity-aware model router
+     */
+    private Router router = new Router();
+
+    /**
+     * batch chat endpoint
+     */
+    private Batch batch = new Batch();
+
+    /**
+     * background chat jobs
+     */
+    private Jobs jobs = new Jobs();
+
+    /**
+     * exact-match response cache
+     */
+    private ResponseCache responseCache = new ResponseCache();
+
+    /**
+     * semantic response cache
+     */
+    private SemanticCache semanticCache = new SemanticCache();
+
+    @Setter
+    @Getter
+    public static class Cluster {
+
+        /**
+         * partition the chat memory across the nodes by chat id
+         */
+        private boolean enabled = false;
+
+        /**
+         * base-url the other nodes reach this node at
+         */
+        private String self = "http://localhost:8080";
+
+        /**
+         * base-urls of the other nodes, this node may be listed too
+         */
+        private List<String> nodes = new ArrayList<>();
+
+        /**
+         * nodes holding a copy of a conversation besides its owner
+         */
+        private int replicas = 1;
+
+        /**
+         * points of every node on the hash ring
+         */
+        private int virtualNodes = 128;
+
+        /**
+         * interval of the reachability probes, 0 disables probing and rebalancing
+         */
+        private Duration probeInterval = Duration.ofSeconds(2);
+
+        /**
+         * connect and read timeout of the node to node calls
+         */
+        private Duration timeout = Duration.ofSeconds(2);
+
+        /**
+         * shared secret of the nodes, sent in the X-Cluster-Secret header of the node to node calls, required when
+         * the cluster is enabled
+         */
+        private String secret;
+    }
+
+    @Setter
+    @Getter
+    public static class Execution {
+
+        /**
+         * run chat and tool work on virtual threads, falls back to platform threads before java 21
+         */
+        private boolean virtualThreads = false;
+
+        /**
+         * platform threads of each of the request, tool step and tool call executors when virtual threads are
+         * not available
+         */
+        private int platformThreads = 200;
+
+        /**
+         * tasks waiting for a platform thread of an executor before new tasks are rejected
+         */
+        private int queueCapacity = 1000;
+
+        /**
+         * default max concurrent requests per model, 0 means unlimited
+         */
+        private int maxConcurrency = 0;
+
+        /**
+         * max concurrent requests keyed by model name or base-url
+         */
+        private Map<String, Integer> concurrency = new HashMap<>();
+
+        /**
+         * max time a request waits in the queue for a model permit
+         */
+        private Duration acquireTimeout = Duration.ofMinutes(1);
+
+        /**
+         * share one model call between identical concurrent prompts
+         */
+        private boolean singleFlight = true;
+
+        /**
+         * max turns of one conversation waiting behind the running turn
+         */
+        private int conversationQueueSize = 16;
+    }
+
+    @Setter
+    @Getter
+    public static class Admission {
+
+        /**
+         * reject requests above the rates or the concurrency limit with 429
+         */
+        private boolean enabled = false;
+
+        /**
+         * requests per second of one client
+         */
+        private double clientRate = 10;
+
+        /**
+         * requests one client can send at once after being idle
+         */
+        private int clientBurst = 20;
+
+        /**
+         * requests per second of one conversation
+         */
+        private double chatRate = 1;
+
+        /**
+         * requests one conversation can send at once after being idle
+         */
+        private int chatBurst = 3;
+
+        /**
+         * concurrency limit before latency samples are observed
+         */
+        private int initialLimit = 20;
+
+        /**
+         * lower bound of the adaptive concurrency limit
+         */
+        private int minLimit = 4;
+
+        /**
+         * upper bound of the adaptive concurrency limit
+         */
+        private int maxLimit = 200;
+
+        /**
+         * weight of a new limit estimate, between 0 and 1
+         */
+        private double smoothing = 0.2;
+
+        /**
+         * Retry-After of requests over the concurrency limit
+         */
+        private Duration retryAfter = Duration.ofSeconds(1);
+
+        /**
+         * max rate buckets, idle ones are dropped first, new clients and conversations are rejected while every
+         * bucket is in use
+         */
+        private int maxKeys = 100000;
+
+        /**
+         * key the clients by the X-Client-Id header instead of the remote address,
+         * only behind a gateway that sets the header, a client could rotate it to skip its rate
+         */
+        private boolean trustClientId = false;
+    }
+
+    @Setter
+    @Getter
+    public static class Tools {
+
+        /**
+         * execute the tool calls of one turn in parallel
+         */
+        private boolean parallel = true;
+
+        /**
+         * timeout of a single tool call
+         */
+        private Duration callTimeout = Duration.ofSeconds(30);
+
+        /**
+         * max results kept by the tool result cache, see {@link com.codingapi.agent.tools.ToolCache}
+         */
+        private int cacheSize = 1000;
+
+        /**
+         * offer only the k tools most relevant to the request, 0 offers every tool
+         */
+        private int retrievalTopK = 8;
+
+        /**
+         * token budget of a single tool result, larger results are compressed, 0 disables
+         */
+        private int resultTokenBudget = 2000;
+
+        /**
+         * array items kept when a json tool result is compressed
+         */
+        private int resultArrayItems = 10;
+
+        /**
+         * max full tool results kept for paging
+         */
+        private int resultStoreSize = 1000;
+
+        /**
+         * time to live of a full tool result kept for paging
+         */
+        private Duration resultTtl = Duration.ofMinutes(30);
+    }
+
+    @Setter
+    @Getter
+    public static class Loop {
+
+        /**
+         * max model rounds of one request, including the final answer round
+         */
+        private int maxRounds = 5;
+
+        /**
+         * wall-clock budget of the whole tool loop
+         */
+        private Duration timeout = Duration.ofMinutes(3);
+
+        /**
+         * wall-clock budget of a single round, model call plus tool execution
+         */
+        private Duration roundTimeout = Duration.ofSeconds(90);
+    }
+
+    @Setter
+    @Getter
+    public static class Routing {
+
+        /**
+         * base-urls serving a model, keyed by model name; models without a pool use spring.ai.openai.chat.base-url
+         */
+        private Map<String, List<String>> endpoints = new HashMap<>();
+
+        /**
+         * consecutive failed or slow calls before an endpoint is ejected
+         */
+        private int failureThreshold = 3;
+
+        /**
+         * how long an ejected endpoint receives no requests
+         */
+        private Duration ejectDuration = Duration.ofSeconds(30);
+
+        /**
+         * time to first token above which a call counts as slow, 0 disables
+         */
+        private Duration slowCallThreshold = Duration.ZERO;
+
+        /**
+         * send a hedged request to a second endpoint when the first token is late
+         */
+        private boolean hedging = false;
+
+        /**
+         * quantile of the observed time to first token used as hedge delay
+         */
+        private double hedgeQuantile = 0.95;
+
+        /**
+         * lower bound of the hedge delay
+         */
+        private Duration hedgeMinDelay = Duration.ofMillis(500);
+
+        /**
+         * latency samples required before requests are hedged
+         */
+        private int hedgeMinSamples = 20;
+    }
+
+    @Setter
+    @Getter
+    public static class ModelProfile {
+
+        /**
+         * the model writes its reasoning in think blocks
+         */
+        private Boolean thinkTags;
+
+        /**
+         * the model turns thinking off with /no_think
+         */
+        private Boolean thinkSwitch;
+
+        /**
+         * the model returns tool calls natively, otherwise tools are described in the prompt
+         */
+        private Boolean nativeTools;
+
+        /**
+         * context window in tokens
+         */
+        private Integer contextTokens;
+    }
+
+    @Setter
+    @Getter
+    public static class Router {
+
+        /**
+         * send simple turns to the simple model
+         */
+        private boolean enabled = false;
+
+        /**
+         * small fast model for short turns without think and tools
+         */
+        private String simpleModel;
+
+        /**
+         * model of the other turns, empty uses spring.ai.openai.chat.options.model
+         */
+        private String complexModel;
+
+        /**
+         * max characters of a simple turn
+         */
+        private int maxSimpleChars = 200;
+
+        /**
+         * offer the tools to the simple model too, so a turn the tool index does not match can still call them
+         */
+        private boolean simpleTools = true;
+    }
+
+    @Setter
+    @Getter
+    public static class Batch {
+
+        /**
+         * max requests of one batch running at the same time
+         */
+        private int parallelism = 8;
+
+        /**
+         * max requests of one batch
+         */
+        private int maxSize = 10000;
+    }
+
+    @Setter
+    @Getter
+    public static class Jobs {
+
+        /**
+         * max jobs running at the same time
+         */
+        private int workers = 4;
+
+        /**
+         * max jobs waiting to run
+         */
+        private int maxQueued = 10000;
+
+        /**
+         * job files directory, empty to keep the jobs in memory only
+         */
+        private String directory = "./data/jobs";
+
+        /**
+         * finished jobs are kept this long for polling
+         */
+        private Duration retention = Duration.ofHours(1);
+    }
+
+    @Setter
+    @Getter
+    public static class ResponseCache {
+
+        /**
+         * cache model responses of identical prompts
+         */
+        private boolean enabled = false;
+
+        /**
+         * max cached responses
+         */
+        private int maxSize = 1000;
+
+        /**
+         * time to live of a cached response
+         */
+        private Duration ttl = Duration.ofMinutes(10);
+
+        /**
+         * only requests with an explicit temperature up to this are cached
+         */
+        private double maxTemperature = 0;
+    }
+
+    @Setter
+    @Getter
+    public static class SemanticCache {
+
+        /**
+         * answer similar questions from the cache
+         */
+        private boolean enabled = false;
+
+        /**
+         * min cosine similarity of the question embeddings for a hit
+         */
+        private double similarityThreshold = 0.92;
+
+        /**
+         * max cached answers, the oldest are evicted
+         */
+        private int maxSize = 10000;
+
+        /**
+         * time to live of a cached answer
+         */
+        private Duration ttl = Duration.ofHours(1);
+
+        /**
+         * hnsw links per node
+         */
+        private int m = 16;
+
+        /**
+         * hnsw candidate list size on insert
+         */
+        private int efConstruction = 100;
+
+        /**
+         * hnsw candidate list size on search
+         */
+        private int efSearch = 50;
+
+        /**
+         * snapshot file of the index, empty to keep it in memory only
+         */
+        private String snapshotFile = "./data/semantic-cache.bin";
+
+        /**
+         * snapshot interval
+         */
+        private Duration snapshotInterval = Duration.ofMinutes(5);
+
+        /**
+         * only requests with an explicit temperature up to this are cached
+         */
+        private double maxTemperature = 0;
+    }
+
+    public enum MemoryType {
+        /**
+         * in-heap message window
+         */
+        IN_MEMORY,
+        /**
+         * append-only memory-mapped segment files on local disk
+         */
+        SEGMENT_LOG
+    }
+
+    @Setter
+    @Getter
+    public static class Memory {
+
+        /**
+         * chat memory store type
+         */
+        private MemoryType type = MemoryType.IN_MEMORY;
+
+        /**
+         * segment files directory
+         */
+        private String directory = "./data/chat-memory";
+
+        /**
+         * segment file size, at most 2GB
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * max conversations kept in heap
+         */
+        private int hotCacheSize = 10000;
+
+        /**
+         * conversations idle longer than this are evicted from heap
+         */
+        private Duration idleTtl = Duration.ofMinutes(30);
+
+        /**
+         * background compaction interval
+         */
+        private Duration compactInterval = Duration.ofMinutes(5);
+
+        /**
+         * sealed segments with a live ratio below this are compacted
+         */
+        private double compactThreshold = 0.5;
+
+        /**
+         * force every save to disk, otherwise records survive a process crash but not an os crash
+         */
+        private boolean fsync = false;
+
+        /**
+         * token budget of the history rendered into the prompt, 0 means the message count window only
+         */
+        private int tokenBudget = 0;
+
+        /**
+         * fold the turns outside the token budget into a rolling summary in the background
+         */
+        private boolean summarize = true;
     }
 
 }
@@ -0,0 +1,128 @@
+package com.codingapi.agent.routing;
+
+import com.codingapi.agent.properties.AgentProperties;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * the endpoints serving one model.
+ * requests go to the available endpoint with the fewest outstanding requests, ties rotate.
+ * when every endpoint is ejected the pool fails open and uses all of them.
+ */
+public class EndpointPool {
+
+    @Getter
+    private final String model;
+    @Getter
+    private final List<ModelEndpoint> endpoints;
+    private final AgentProperties.Routing routing;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final LatencyWindow callLatency = new LatencyWindow(256);
+    private final LatencyWindow firstTokenLatency = new LatencyWindow(256);
+
+    public EndpointPool(String model, List<ModelEndpoint> endpoints, AgentProperties.Routing routing) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("model endpoint pool is empty:" + model);
+        }
+        this.model = model;
+        this.endpoints = List.copyOf(endpoints);
+        this.routing = routing;
+    }
+
+    /**
+     * select the endpoint with the fewest outstanding requests
+     *
+     * @param exclude endpoint already serving the request, null for the first attempt
+     * @return endpoint, null when there is no other available endpoint than {@code exclude}
+     */
+    public ModelEndpoint select(ModelEndpoint exclude) {
+        long now = System.currentTimeMillis();
+        int size = endpoints.size();
+        int offset = Math.floorMod(next.getAndIncrement(), size);
+        ModelEndpoint best = null;
+        ModelEndpoint fallback = null;
+        for (int i = 0; i < size; i++) {
+            ModelEndpoint endpoint = endpoints.get((offset + i) % size);
+            if (endpoint == exclude) {
+                continue;
+            }
+            int outstanding = endpoint.getOutstanding();
+            if (fallback == null || outstanding < fallback.getOutstanding()) {
+                fallback = endpoint;
+            }
+            if (endpoint.isAvailable(now) && (best == null || outstanding < best.getOutstanding())) {
+                best = endpoint;
+            }
+        }
+        if (best != null) {
+            return best;
+        }
+        return exclude == null ? fallback : null;
+    }
+
+    void record(boolean stream, long latencyNanos) {
+        (stream ? firstTokenLatency : callLatency).add(latencyNanos);
+    }
+
+    /**
+     * delay before a hedged request, the configured quantile of the observed latency
+     *
+     * @param stream time to first token of streams, or latency of blocking calls
+     * @return delay, null when the pool has a single endpoint or too few samples
+     */
+    Duration hedgeDelay(boolean stream) {
+        if (endpoints.size() < 2) {
+            return null;
+        }
+        long quantile = (stream ? firstTokenLatency : callLatency)
+                .quantile(routing.getHedgeQuantile(), routing.getHedgeMinSamples());
+        if (quantile < 0) {
+            return null;
+        }
+        long minDelay = routing.getHedgeMinDelay().toNanos();
+        return Duration.ofNanos(Math.max(quantile, minDelay));
+    }
+
+    List<ModelEndpoint.Stats> getStats() {
+        List<ModelEndpoint.Stats> stats = new ArrayList<>();
+        for (ModelEndpoint endpoint : endpoints) {
+            stats.add(endpoint.toStats(model));
+        }
+        return stats;
+    }
+
+    /**
+     * ring buffer of the latest latency samples
+     */
+    private static class LatencyWindow {
+
+        private final long[] samples;
+        private final AtomicLong count = new AtomicLong();
+
+        private LatencyWindow(int size) {
+            this.samples = new long[size];
+        }
+
+        private void add(long latencyNanos) {
+            samples[(int) (count.getAndIncrement() % samples.length)] = latencyNanos;
+        }
+
+        private long quantile(double quantile, int minSamples) {
+            int size = (int) Math.min(count.get(), samples.length);
+            if (size == 0 || size < minSamples) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(quantile * size) - 1;
+            return sorted[Math.max(0, Math.min(size - 1, index))];
+        }
+    }
+}
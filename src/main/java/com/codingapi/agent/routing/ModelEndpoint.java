@@ -0,0 +1,112 @@
+package com.codingapi.agent.routing;
+
+import com.codingapi.agent.properties.AgentProperties;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * one model server of an {@link EndpointPool} with passive health tracking.
+ * the endpoint is ejected for {@code eject-duration} after {@code failure-threshold} consecutive failed or slow calls.
+ */
+@Slf4j
+public class ModelEndpoint {
+
+    @Getter
+    private final String url;
+    @Getter
+    private final ChatModel chatModel;
+    private final AgentProperties.Routing routing;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long ejectedUntil;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder ejections = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+
+    public ModelEndpoint(String url, ChatModel chatModel, AgentProperties.Routing routing) {
+        this.url = url;
+        this.chatModel = chatModel;
+        this.routing = routing;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public boolean isAvailable(long nowMillis) {
+        return nowMillis >= ejectedUntil;
+    }
+
+    void begin(boolean hedge) {
+        outstanding.incrementAndGet();
+        requests.increment();
+        if (hedge) {
+            hedges.increment();
+        }
+    }
+
+    void end() {
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * a call produced its first token, slow calls count as failures
+     */
+    void success(long latencyNanos) {
+        if (this.isSlow(latencyNanos)) {
+            this.failure();
+            return;
+        }
+        consecutiveFailures.set(0);
+    }
+
+    boolean isSlow(long latencyNanos) {
+        long slowCallThreshold = routing.getSlowCallThreshold().toNanos();
+        return slowCallThreshold > 0 && latencyNanos > slowCallThreshold;
+    }
+
+    void failure() {
+        failures.increment();
+        if (consecutiveFailures.incrementAndGet() >= routing.getFailureThreshold()) {
+            consecutiveFailures.set(0);
+            ejectedUntil = System.currentTimeMillis() + routing.getEjectDuration().toMillis();
+            ejections.increment();
+            log.warn("model endpoint {} ejected for {}", url, routing.getEjectDuration());
+        }
+    }
+
+    Stats toStats(String model) {
+        long remaining = ejectedUntil - System.currentTimeMillis();
+        return new Stats(model,
+                url,
+                outstanding.get(),
+                requests.sum(),
+                failures.sum(),
+                ejections.sum(),
+                hedges.sum(),
+                remaining > 0 ? TimeUnit.MILLISECONDS.toSeconds(remaining) : 0);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+
+        private final String model;
+        private final String url;
+        private final int outstanding;
+        private final long requests;
+        private final long failures;
+        private final long ejections;
+        private final long hedges;
+        private final long ejectedSeconds;
+    }
+}
@@ -0,0 +1,183 @@
+package com.codingapi.agent.routing;
+
+import com.codingapi.agent.properties.AgentProperties;
+import lombok.NonNull;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * routes model calls over the {@link EndpointPool} of the requested model, models without a pool use the default model.
+ * with hedging enabled a second request is sent to another endpoint when the first has not produced a token within
+ * the pool's latency quantile; the first response wins and the other stream is cancelled.
+ * requests whose tools are executed inside the model are never hedged, their tools would run twice.
+ */
+public class RoutingChatModel implements ChatModel {
+
+    private final ChatModel defaultChatModel;
+    private final Map<String, EndpointPool> pools;
+    private final AgentProperties.Routing routing;
+    private final String defaultModel;
+
+    public RoutingChatModel(ChatModel defaultChatModel,
+                            Map<String, EndpointPool> pools,
+                            AgentProperties.Routing routing,
+                            String defaultModel) {
+        this.defaultChatModel = defaultChatModel;
+        this.pools = Map.copyOf(pools);
+        this.routing = routing;
+        this.defaultModel = defaultModel;
+    }
+
+    private EndpointPool poolOf(Prompt prompt) {
+        if (pools.isEmpty()) {
+            return null;
+        }
+        ChatOptions options = prompt.getOptions();
+        String model = options != null && StringUtils.hasText(options.getModel()) ? options.getModel() : defaultModel;
+        return model != null ? pools.get(model) : null;
+    }
+
+    private boolean hedgeable(Prompt prompt) {
+        if (!routing.isHedging()) {
+            return false;
+        }
+        if (prompt.getOptions() instanceof ToolCallingChatOptions toolCallingChatOptions) {
+            boolean tools = !toolCallingChatOptions.getToolCallbacks().isEmpty()
+                    || !toolCallingChatOptions.getToolNames().isEmpty();
+            return !tools || Boolean.FALSE.equals(toolCallingChatOptions.getInternalToolExecutionEnabled());
+        }
+        return true;
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return defaultChatModel.getDefaultOptions();
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        EndpointPool pool = this.poolOf(prompt);
+        if (pool == null) {
+            return defaultChatModel.call(prompt);
+        }
+        ModelEndpoint first = pool.select(null);
+        Duration delay = this.hedgeable(prompt) ? pool.hedgeDelay(false) : null;
+        if (delay == null) {
+            return callOn(pool, first, prompt, false, new AtomicBoolean());
+        }
+        Mono<ChatResponse> primary = callAsync(pool, first, prompt, false);
+        Mono<ChatResponse> hedge = Mono.delay(delay)
+                .flatMap(tick -> {
+                    ModelEndpoint second = pool.select(first);
+                    return second == null ? Mono.empty() : callAsync(pool, second, prompt, true);
+                });
+        try {
+            return Mono.firstWithValue(primary, hedge).block();
+        } catch (RuntimeException e) {
+            throw new RuntimeException("routed model call failed:" + pool.getModel(), e);
+        }
+    }
+
+    @NonNull
+    @Override
+    public Flux<ChatResponse> stream(@NonNull Prompt prompt) {
+        EndpointPool pool = this.poolOf(prompt);
+        if (pool == null) {
+            return defaultChatModel.stream(prompt);
+        }
+        return Flux.defer(() -> {
+            ModelEndpoint first = pool.select(null);
+            Duration delay = this.hedgeable(prompt) ? pool.hedgeDelay(true) : null;
+            Flux<ChatResponse> primary = streamOn(pool, first, prompt, false);
+            if (delay == null) {
+                return primary;
+            }
+            Flux<ChatResponse> hedge = Mono.delay(delay)
+                    .flatMapMany(tick -> {
+                        ModelEndpoint second = pool.select(first);
+                        return second == null ? Flux.empty() : streamOn(pool, second, prompt, true);
+                    });
+            return Flux.firstWithValue(primary, hedge);
+        });
+    }
+
+    /**
+     * the losing call is interrupted when cancelled, that is not counted as a failure of its endpoint
+     */
+    private static Mono<ChatResponse> callAsync(EndpointPool pool, ModelEndpoint endpoint, Prompt prompt, boolean hedge) {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        return Mono.fromCallable(() -> callOn(pool, endpoint, prompt, hedge, cancelled))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnCancel(() -> cancelled.set(true));
+    }
+
+    private static ChatResponse callOn(EndpointPool pool,
+                                       ModelEndpoint endpoint,
+                                       Prompt prompt,
+                                       boolean hedge,
+                                       AtomicBoolean cancelled) {
+        long start = System.nanoTime();
+        endpoint.begin(hedge);
+        try {
+            ChatResponse chatResponse = endpoint.getChatModel().call(prompt);
+            long latency = System.nanoTime() - start;
+            pool.record(false, latency);
+            endpoint.success(latency);
+            return chatResponse;
+        } catch (RuntimeException e) {
+            if (!cancelled.get()) {
+                endpoint.failure();
+            }
+            throw e;
+        } finally {
+            endpoint.end();
+        }
+    }
+
+    private static Flux<ChatResponse> streamOn(EndpointPool pool, ModelEndpoint endpoint, Prompt prompt, boolean hedge) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            boolean[] firstToken = new boolean[1];
+            endpoint.begin(hedge);
+            return endpoint.getChatModel().stream(prompt)
+                    .doOnNext(chatResponse -> {
+                        if (!firstToken[0]) {
+                            firstToken[0] = true;
+                            long latency = System.nanoTime() - start;
+                            pool.record(true, latency);
+                            endpoint.success(latency);
+                        }
+                    })
+                    .doOnError(e -> endpoint.failure())
+                    // end before the subscriber sees the completion, so the outstanding count is settled by then
+                    .doOnTerminate(endpoint::end)
+                    .doOnCancel(() -> {
+                        if (!firstToken[0] && endpoint.isSlow(System.nanoTime() - start)) {
+                            endpoint.failure();
+                        }
+                        endpoint.end();
+                    });
+        });
+    }
+
+    public List<ModelEndpoint.Stats> getStats() {
+        List<ModelEndpoint.Stats> stats = new ArrayList<>();
+        for (EndpointPool pool : pools.values()) {
+            stats.addAll(pool.getStats());
+        }
+        return stats;
+    }
+}
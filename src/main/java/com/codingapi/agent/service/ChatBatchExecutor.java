@@ -0,0 +1,83 @@
+package com.codingapi.agent.service;
+
+import com.codingapi.agent.pojo.ChatBatchResult;
+import com.codingapi.agent.pojo.ChatRequest;
+import com.codingapi.agent.properties.AgentProperties;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * runs the requests of a chat batch with bounded parallelism, results are emitted as they finish, not in request order.
+ * requests without chatId get a throwaway conversation that is cleared afterwards.
+ * cancelling the returned flux cancels the running requests and skips the remaining ones.
+ */
+class ChatBatchExecutor {
+
+    private final AgentProperties.Batch batch;
+    private final BiFunction<String, ChatRequest, Flux<String>> generation;
+    private final Consumer<String> clear;
+
+    /**
+     * @param batch      batch properties
+     * @param generation streamed answer of a request in a conversation
+     * @param clear      clears the memory of a throwaway conversation
+     */
+    ChatBatchExecutor(AgentProperties.Batch batch,
+                      BiFunction<String, ChatRequest, Flux<String>> generation,
+                      Consumer<String> clear) {
+        this.batch = batch;
+        this.generation = generation;
+        this.clear = clear;
+    }
+
+    /**
+     * @throws ResponseStatusException 400 when the batch is larger than max-size
+     */
+    Flux<ChatBatchResult> execute(List<ChatRequest> requests) {
+        return this.execute(requests, (request, answer) -> answer.get());
+    }
+
+    /**
+     * @param admission runs the answer of a request or rejects it, a rejected request gets an error result
+     * @throws ResponseStatusException 400 when the batch is larger than max-size
+     */
+    Flux<ChatBatchResult> execute(List<ChatRequest> requests,
+                                  BiFunction<ChatRequest, Supplier<Flux<String>>, Flux<String>> admission) {
+        if (requests.size() > batch.getMaxSize()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "batch size exceeds max-size:" + batch.getMaxSize());
+        }
+        return Flux.range(0, requests.size())
+                .flatMap(index -> this.executeItem(index, requests.get(index), admission), batch.getParallelism());
+    }
+
+    private Mono<ChatBatchResult> executeItem(int index, ChatRequest request,
+                                              BiFunction<ChatRequest, Supplier<Flux<String>>, Flux<String>> admission) {
+        boolean temporary = !StringUtils.hasText(request.getChatId());
+        String chatId = temporary ? "batch-" + UUID.randomUUID() : request.getChatId();
+        return Mono.defer(() -> {
+            long start = System.currentTimeMillis();
+            // a rejection is thrown right away, defer turns it into the error result of the request
+            return Flux.defer(() -> admission.apply(request, () -> generation.apply(chatId, request)))
+                    .collect(Collectors.joining())
+                    .map(answer -> new ChatBatchResult(index, chatId, answer, null,
+                            System.currentTimeMillis() - start))
+                    .onErrorResume(e -> Mono.just(new ChatBatchResult(index, chatId, null, e.getMessage(),
+                            System.currentTimeMillis() - start)));
+        }).doFinally(signal -> {
+            if (temporary) {
+                clear.accept(chatId);
+            }
+        });
+    }
+}
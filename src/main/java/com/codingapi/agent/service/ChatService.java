@@ -1,55 +1,177 @@
 package com.codingapi.agent.service;
 
 import com.codingapi.agent.advisor.DeepSeekToolsAdvisor;
+import com.codingapi.agent.advisor.PromptPrefixAdvisor;
 import com.codingapi.agent.advisor.Qwen3ThinkFilterAdvisor;
+import com.codingapi.agent.cache.ResponseCache;
+import com.codingapi.agent.cache.ResponseCacheAdvisor;
+import com.codingapi.agent.cache.SemanticCache;
+import com.codingapi.agent.cache.SemanticCacheAdvisor;
+import com.codingapi.agent.executor.AgentExecutor;
+import com.codingapi.agent.executor.ConversationExecutor;
+import com.codingapi.agent.executor.ModelPermitAdvisor;
+import com.codingapi.agent.executor.SingleFlightAdvisor;
+import com.codingapi.agent.memory.ConversationSummarizer;
+import com.codingapi.agent.memory.TokenBudgetChatMemoryAdvisor;
+import com.codingapi.agent.memory.TokenEstimator;
+import com.codingapi.agent.metrics.AgentMetrics;
+import com.codingapi.agent.metrics.ModelMetricsAdvisor;
+import com.codingapi.agent.model.ModelProfiles;
+import com.codingapi.agent.model.ModelRouter;
+import com.codingapi.agent.pojo.ChatBatchResult;
+import com.codingapi.agent.pojo.ChatRequest;
 import com.codingapi.agent.properties.AgentProperties;
+import com.codingapi.agent.template.PromptTemplates;
+import com.codingapi.agent.tools.ParallelToolCallingManager;
 import com.codingapi.agent.tools.ToolsContext;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.PromptChatMemoryAdvisor;
+import org.springframework.ai.chat.client.advisor.api.Advisor;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
-import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
 @Service
 public class ChatService {
 
     private final ChatClient chatClient;
     private final ToolCallingManager toolCallingManager;
+    private final AgentExecutor agentExecutor;
+    private final ConversationExecutor conversationExecutor;
+    private final ChatMemory chatMemory;
+    private final ChatBatchExecutor batchExecutor;
+    private final AgentProperties.Loop loop;
+    private final PromptTemplates promptTemplates;
+    private final ToolsContext toolsContext;
+    private final ModelRouter modelRouter;
+    private final Qwen3ThinkFilterAdvisor thinkFilterAdvisor;
+    private final Qwen3ThinkFilterAdvisor noThinkFilterAdvisor;
+    private final PromptPrefixAdvisor promptPrefixAdvisor = new PromptPrefixAdvisor();
+    private final SingleFlightAdvisor singleFlightAdvisor = new SingleFlightAdvisor();
 
     public ChatService(ChatClient.Builder modelBuilder,
                        ToolCallingManager toolCallingManager,
+                       ToolExecutionExceptionProcessor toolExecutionExceptionProcessor,
                        ChatMemory chatMemory,
+                       ChatMemoryRepository chatMemoryRepository,
                        ToolsContext toolsContext,
-                       AgentProperties agentProperties) {
-        this.toolCallingManager = toolCallingManager;
+                       AgentProperties agentProperties,
+                       AgentExecutor agentExecutor,
+                       ConversationExecutor conversationExecutor,
+                       PromptTemplates promptTemplates,
+                       AgentMetrics agentMetrics,
+                       ResponseCache responseCache,
+                       SemanticCache semanticCache,
+                       ObjectProvider<EmbeddingModel> embeddingModel,
+                       ModelProfiles modelProfiles,
+                       ModelRouter modelRouter) {
+        this.toolCallingManager = new ParallelToolCallingManager(toolCallingManager,
+                agentExecutor.getToolExecutorService(),
+                toolExecutionExceptionProcessor,
+                agentProperties.getTools());
+        this.agentExecutor = agentExecutor;
+        this.conversationExecutor = conversationExecutor;
+        this.chatMemory = chatMemory;
+        this.batchExecutor = new ChatBatchExecutor(agentProperties.getBatch(),
+                (chatId, request) -> this.generationStream(chatId, request.getMessage(), request.isThink()),
+                chatMemory::clear);
+        this.loop = agentProperties.getLoop();
+        this.promptTemplates = promptTemplates;
+        this.toolsContext = toolsContext;
+        this.modelRouter = modelRouter;
+        this.thinkFilterAdvisor = new Qwen3ThinkFilterAdvisor(true, modelProfiles);
+        this.noThinkFilterAdvisor = new Qwen3ThinkFilterAdvisor(false, modelProfiles);
 
+        Advisor sessionChatMemoryAdvisor = this.createChatMemoryAdvisor(modelBuilder.clone().build(),
+                chatMemory,
+                chatMemoryRepository,
+                agentProperties);
 
-        PromptChatMemoryAdvisor sessionChatMemoryAdvisor =
-                PromptChatMemoryAdvisor
-                        .builder(chatMemory)
-                        .build();
+        List<Advisor> advisors = new ArrayList<>();
+        advisors.add(sessionChatMemoryAdvisor);
+        advisors.add(promptPrefixAdvisor);
+        advisors.add(new ModelMetricsAdvisor(agentMetrics, agentExecutor.getDefaultModel()));
+        if (agentProperties.getResponseCache().isEnabled()) {
+            advisors.add(new ResponseCacheAdvisor(responseCache, agentProperties.getResponseCache()));
+        }
+        if (agentProperties.getExecution().isSingleFlight()) {
+            advisors.add(singleFlightAdvisor);
+        }
+        advisors.add(new ModelPermitAdvisor(agentExecutor));
+        if (agentProperties.getSemanticCache().isEnabled()) {
+            advisors.add(new SemanticCacheAdvisor(semanticCache,
+                    embeddingModel.getObject(),
+                    agentProperties.getSemanticCache(),
+                    agentExecutor.getDefaultModel()));
+        }
 
         this.chatClient = modelBuilder
-                .defaultAdvisors(sessionChatMemoryAdvisor)
-                .defaultSystem(agentProperties.getDefaultSystemTemplateText())
-                .defaultTools(toolsContext.getTools())
+                .defaultAdvisors(advisors)
                 .build();
     }
 
-    public String generation(String chatId, String userMessage, boolean think) {
+    /**
+     * the system text is taken per request, so a reloaded system template applies to the next request.
+     * only the tools relevant to the message and the previous question of the conversation are offered,
+     * simple turns are sent to the simple model.
+     *
+     * @param promptTools describe the tools in the prompt even when the model calls tools natively
+     */
+    private Turn turn(String chatId, String userMessage, boolean think, boolean promptTools) {
+        List<Message> history = chatMemory.get(chatId);
+        String toolQuery = toolQuery(history, userMessage);
+        String system = promptTemplates.system().getText();
+        int promptTokens = TokenEstimator.estimate(system)
+                + TokenEstimator.estimate(history)
+                + TokenEstimator.estimate(userMessage);
+        ModelRouter.Route route = modelRouter.route(userMessage, promptTokens, think,
+                toolsContext.isToolRelevant(toolQuery));
+        List<ToolCallback> toolCallbacks = route.isOfferTools() ? toolsContext.getToolCallbacks(toolQuery) : List.of();
+        ChatClient.ChatClientRequestSpec requestSpec = chatClient
+                .prompt()
+                .system(system)
+                .user(userMessage)
+                .toolCallbacks(toolCallbacks)
+                .advisors(think ? thinkFilterAdvisor : noThinkFilterAdvisor)
+                .advisors(a -> {
+                    a.param(ChatMemory.CONVERSATION_ID, chatId);
+                })
+                .toolContext(Map.of(ChatMemory.CONVERSATION_ID, chatId));
+        ChatOptions options = route.newOptions();
+        if (options != null) {
+            requestSpec.options(options);
+        }
+        if (promptTools || (!route.getProfile().isNativeTools() && !toolCallbacks.isEmpty())) {
+            requestSpec.advisors(new DeepSeekToolsAdvisor(toolCallingManager, loop,
+                    agentExecutor.getStepExecutorService()));
+        }
+        return new Turn(route, requestSpec);
+    }
+
+    private String call(Turn turn) {
+        Timer.Sample sample = Timer.start();
         try {
-            ChatClient.CallResponseSpec responseSpec = chatClient
-                    .prompt()
-                    .user(userMessage)
-                    .advisors(new Qwen3ThinkFilterAdvisor(think))
-                    .advisors(a -> {
-                        a.param(ChatMemory.CONVERSATION_ID, chatId);
-                    })
-                    .call();
-            ChatResponse chatResponse = responseSpec.chatResponse();
+            ChatResponse chatResponse = turn.requestSpec.call().chatResponse();
             if (chatResponse != null) {
                 Generation generation = chatResponse.getResult();
                 return generation.getOutput().getText();
@@ -57,28 +179,100 @@ public class ChatService {
             throw new RuntimeException("generation response was null");
         } catch (Exception e) {
             throw new RuntimeException("generation response was error", e);
+        } finally {
+            sample.stop(turn.route.getDuration());
         }
     }
 
+    private Flux<String> stream(Turn turn) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            return turn.requestSpec
+                    .stream()
+                    .content()
+                    .filter(StringUtils::hasLength)
+                    .doFinally(signal -> sample.stop(turn.route.getDuration()));
+        });
+    }
 
-    public String generationWithDeepseek(String chatId, String userMessage) {
-        try {
-            ChatClient.CallResponseSpec responseSpec = chatClient
-                    .prompt()
-                    .user(userMessage)
-                    .advisors(new DeepSeekToolsAdvisor(toolCallingManager))
-                    .advisors(a -> {
-                        a.param(ChatMemory.CONVERSATION_ID, chatId);
-                    })
-                    .call();
-            ChatResponse chatResponse = responseSpec.chatResponse();
-            if (chatResponse != null) {
-                Generation generation = chatResponse.getResult();
-                return generation.getOutput().getText();
+    private static String toolQuery(List<Message> messages, String userMessage) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i).getMessageType() == MessageType.USER) {
+                return messages.get(i).getText() + "\n" + userMessage;
             }
-            throw new RuntimeException("generation response was null");
-        } catch (Exception e) {
-            throw new RuntimeException("generation response was error", e);
+        }
+        return userMessage;
+    }
+
+    public String generation(String chatId, String userMessage, boolean think) {
+        return this.call(this.turn(chatId, userMessage, think, false));
+    }
+
+    private Advisor createChatMemoryAdvisor(ChatClient summaryClient,
+                                            ChatMemory chatMemory,
+                                            ChatMemoryRepository chatMemoryRepository,
+                                            AgentProperties agentProperties) {
+        AgentProperties.Memory memory = agentProperties.getMemory();
+        ConversationSummarizer summarizer = memory.isSummarize() && memory.getTokenBudget() > 0
+                ? new ConversationSummarizer(summaryClient,
+                chatMemoryRepository,
+                agentExecutor,
+                conversationExecutor,
+                memory.getTokenBudget())
+                : null;
+        return new TokenBudgetChatMemoryAdvisor(chatMemory,
+                promptTemplates::memory,
+                memory.getTokenBudget(),
+                summarizer);
+    }
+
+    public PromptPrefixAdvisor.Stats getPromptPrefixStats() {
+        return promptPrefixAdvisor.getStats();
+    }
+
+    public SingleFlightAdvisor.Stats getSingleFlightStats() {
+        return singleFlightAdvisor.getStats();
+    }
+
+    public CompletableFuture<String> generationAsync(String chatId, String userMessage, boolean think) {
+        return conversationExecutor.submit(chatId, () -> this.generation(chatId, userMessage, think));
+    }
+
+    public Flux<String> generationStream(String chatId, String userMessage, boolean think) {
+        return conversationExecutor.stream(chatId, () -> this.stream(this.turn(chatId, userMessage, think, false)));
+    }
+
+    /**
+     * run a batch of requests, see {@link ChatBatchExecutor}
+     *
+     * @param admission runs the answer of a request or rejects it, a rejected request gets an error result
+     */
+    public Flux<ChatBatchResult> generationBatch(
+            List<ChatRequest> requests,
+            BiFunction<ChatRequest, Supplier<Flux<String>>, Flux<String>> admission) {
+        return batchExecutor.execute(requests, admission);
+    }
+
+    public String generationWithDeepseek(String chatId, String userMessage) {
+        return this.call(this.turn(chatId, userMessage, true, true));
+    }
+
+    public Flux<String> generationStreamWithDeepseek(String chatId, String userMessage) {
+        return conversationExecutor.stream(chatId, () -> this.stream(this.turn(chatId, userMessage, true, true)));
+    }
+
+    public List<ModelRouter.Route.Stats> getRouteStats() {
+        return modelRouter.getStats();
+    }
+
+    private static class Turn {
+
+        private final ModelRouter.Route route;
+        private final ChatClient.ChatClientRequestSpec requestSpec;
+
+        private Turn(ModelRouter.Route route, ChatClient.ChatClientRequestSpec requestSpec) {
+            this.route = route;
+            this.requestSpec = requestSpec;
         }
     }
 }
@@ -0,0 +1,89 @@
+package com.codingapi.agent.template;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * prompt template parsed once into literal segments and {@code {name}} placeholders.
+ * rendering only appends the segments and the variables, braces that do not enclose a name are kept as text.
+ */
+public class CompiledTemplate {
+
+    @Getter
+    private final String text;
+    @Getter
+    private final Set<String> placeholders;
+
+    /**
+     * literal text before each placeholder, plus the tail after the last one
+     */
+    private final String[] literals;
+    private final String[] names;
+    private final int literalLength;
+
+    private CompiledTemplate(String text, List<String> literals, List<String> names) {
+        this.text = text;
+        this.literals = literals.toArray(String[]::new);
+        this.names = names.toArray(String[]::new);
+        this.placeholders = Collections.unmodifiableSet(new LinkedHashSet<>(names));
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    public static CompiledTemplate compile(String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int literalStart = 0;
+        int index = 0;
+        while ((index = text.indexOf('{', index)) >= 0) {
+            int end = index + 1;
+            while (end < text.length() && isNameChar(text.charAt(end))) {
+                end++;
+            }
+            if (end > index + 1 && end < text.length() && text.charAt(end) == '}') {
+                literals.add(text.substring(literalStart, index));
+                names.add(text.substring(index + 1, end));
+                literalStart = end + 1;
+                index = end + 1;
+            } else {
+                index++;
+            }
+        }
+        literals.add(text.substring(literalStart));
+        return new CompiledTemplate(text, literals, names);
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    /**
+     * render the template, missing variables render as empty text
+     */
+    public String render(Map<String, String> variables) {
+        if (names.length == 0) {
+            return text;
+        }
+        String[] values = new String[names.length];
+        int length = literalLength;
+        for (int i = 0; i < names.length; i++) {
+            String value = variables.get(names[i]);
+            values[i] = value == null ? "" : value;
+            length += values[i].length();
+        }
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < names.length; i++) {
+            builder.append(literals[i]).append(values[i]);
+        }
+        return builder.append(literals[names.length]).toString();
+    }
+}
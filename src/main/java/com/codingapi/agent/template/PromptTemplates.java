@@ -0,0 +1,164 @@
+package com.codingapi.agent.template;
+
+import com.codingapi.agent.properties.AgentProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * the system and memory templates, compiled once at startup.
+ * templates backed by a file are watched and recompiled when the file changes, the compiled template is swapped
+ * atomically so the request path never reads the file. a template that fails to load keeps its previous version.
+ * classpath templates inside the jar are never reloaded, point the template properties to a file: path for that.
+ */
+@Slf4j
+@Component
+public class PromptTemplates implements DisposableBean {
+
+    /**
+     * wait for the editor to finish writing before reloading
+     */
+    private static final long RELOAD_DELAY_MILLIS = 100;
+
+    private final Template system;
+    private final Template memory;
+    private final WatchService watchService;
+
+    public PromptTemplates(AgentProperties agentProperties) {
+        ResourceLoader resourceLoader = new DefaultResourceLoader();
+        this.system = new Template(resourceLoader.getResource(agentProperties.getDefaultSystemTemplateFile()));
+        this.memory = new Template(resourceLoader.getResource(agentProperties.getDefaultPromptMemoryTemplateFile()));
+        this.system.load();
+        this.memory.load();
+        this.watchService = agentProperties.isTemplateReload() ? this.watch(List.of(system, memory)) : null;
+    }
+
+    public CompiledTemplate system() {
+        return system.current.get();
+    }
+
+    public CompiledTemplate memory() {
+        return memory.current.get();
+    }
+
+    private WatchService watch(List<Template> templates) {
+        Set<Path> directories = new HashSet<>();
+        for (Template template : templates) {
+            if (template.file != null) {
+                directories.add(template.file.getParent());
+            } else {
+                log.info("prompt template {} is not a file and will not be reloaded, use a file: path to reload it.",
+                        template.resource.getDescription());
+            }
+        }
+        if (directories.isEmpty()) {
+            return null;
+        }
+        try {
+            WatchService watchService = FileSystems.getDefault().newWatchService();
+            for (Path directory : directories) {
+                directory.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+            Thread watcher = new Thread(() -> this.watchLoop(watchService, templates), "prompt-template-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+            return watchService;
+        } catch (IOException e) {
+            log.warn("watch prompt templates failed, templates will not be reloaded.", e);
+            return null;
+        }
+    }
+
+    private void watchLoop(WatchService watchService, List<Template> templates) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Thread.sleep(RELOAD_DELAY_MILLIS);
+                Path directory = (Path) key.watchable();
+                Set<Template> changed = new HashSet<>();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (!(event.context() instanceof Path name)) {
+                        continue;
+                    }
+                    Path file = directory.resolve(name);
+                    for (Template template : templates) {
+                        if (file.equals(template.file)) {
+                            changed.add(template);
+                        }
+                    }
+                }
+                key.reset();
+                for (Template template : changed) {
+                    template.reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.debug("prompt template watcher stopped.");
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private static class Template {
+
+        private final Resource resource;
+        private final Path file;
+        private final AtomicReference<CompiledTemplate> current = new AtomicReference<>();
+
+        private Template(Resource resource) {
+            this.resource = resource;
+            this.file = fileOf(resource);
+        }
+
+        private static Path fileOf(Resource resource) {
+            try {
+                return resource.isFile() ? resource.getFile().toPath().toAbsolutePath() : null;
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        private void load() {
+            try {
+                String text = IOUtils.toString(resource.getInputStream(), StandardCharsets.UTF_8);
+                current.set(CompiledTemplate.compile(text));
+            } catch (Exception e) {
+                throw new RuntimeException("load template:" + resource.getDescription() + ",error:", e);
+            }
+        }
+
+        private void reload() {
+            try {
+                this.load();
+                log.info("prompt template {} reloaded.", file);
+            } catch (RuntimeException e) {
+                log.warn("reload prompt template {} failed, keep the previous version.", file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.codingapi.agent.tools;
+
+import com.codingapi.agent.memory.TokenEstimator;
+import com.codingapi.agent.metrics.AgentMetrics;
+import lombok.NonNull;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+/**
+ * tool callback that keeps the result within the tool result token budget.
+ * a larger result is compressed by the {@link ToolOutputCompressor} before it enters the prompt and the memory,
+ * the full result is kept in the {@link ToolResultStore} and the model can page through it by reference,
+ * within the same conversation and until the reference expires.
+ */
+public class BudgetedToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+    private final ToolOutputCompressor compressor;
+    private final ToolResultStore toolResultStore;
+    private final AgentMetrics.ToolOutputMeters meters;
+
+    public BudgetedToolCallback(ToolCallback delegate,
+                                ToolOutputCompressor compressor,
+                                ToolResultStore toolResultStore,
+                                AgentMetrics.ToolOutputMeters meters) {
+        this.delegate = delegate;
+        this.compressor = compressor;
+        this.toolResultStore = toolResultStore;
+        this.meters = meters;
+    }
+
+    @NonNull
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @NonNull
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @NonNull
+    @Override
+    public String call(@NonNull String toolInput) {
+        return this.call(toolInput, null);
+    }
+
+    @NonNull
+    @Override
+    public String call(@NonNull String toolInput, ToolContext toolContext) {
+        String result = delegate.call(toolInput, toolContext);
+        if (result == null || compressor.fits(result)) {
+            return result;
+        }
+        String ref = toolResultStore.put(ToolResultStore.conversationId(toolContext), result);
+        String compressed = compressor.compress(result)
+                + "\n[tool result truncated, call " + ToolResultReader.TOOL_NAME
+                + " with ref=" + ref + " and page=1 to read the full result, the ref expires in "
+                + toolResultStore.lifetime() + "]";
+        meters.getTruncated().increment();
+        meters.getSavedTokens().increment(TokenEstimator.estimate(result) - TokenEstimator.estimate(compressed));
+        return compressed;
+    }
+}
@@ -0,0 +1,62 @@
+package com.codingapi.agent.tools;
+
+import lombok.NonNull;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+/**
+ * tool callback that serves repeated calls from the {@link ToolResultCache}
+ */
+public class CachingToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+    private final ToolCache toolCache;
+    private final ToolResultCache toolResultCache;
+
+    public CachingToolCallback(ToolCallback delegate, ToolCache toolCache, ToolResultCache toolResultCache) {
+        this.delegate = delegate;
+        this.toolCache = toolCache;
+        this.toolResultCache = toolResultCache;
+    }
+
+    @NonNull
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @NonNull
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @NonNull
+    @Override
+    public String call(@NonNull String toolInput) {
+        return this.call(toolInput, null);
+    }
+
+    @NonNull
+    @Override
+    public String call(@NonNull String toolInput, ToolContext toolContext) {
+        String chatId = null;
+        if (toolCache.scope() == ToolCache.Scope.CHAT) {
+            Object conversationId = toolContext != null ? toolContext.getContext().get(ChatMemory.CONVERSATION_ID) : null;
+            if (conversationId == null) {
+                return delegate.call(toolInput, toolContext);
+            }
+            chatId = conversationId.toString();
+        }
+        String key = ToolResultCache.key(getToolDefinition().name(), toolInput, chatId);
+        String result = toolResultCache.get(key);
+        if (result == null) {
+            result = delegate.call(toolInput, toolContext);
+            toolResultCache.put(key, result, toolCache.ttl() * 1000);
+        }
+        return result;
+    }
+}
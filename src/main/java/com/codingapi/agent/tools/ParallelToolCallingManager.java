@@ -0,0 +1,212 @@
+package com.codingapi.agent.tools;
+
+import com.alibaba.fastjson.JSONObject;
+import com.codingapi.agent.properties.AgentProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.util.CollectionUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * tool calling manager that dispatches the independent tool calls of one turn in parallel.
+ * each call has its own timeout, a timed out call is interrupted, results are appended in the order of the tool calls.
+ * failed and timed out calls go through the {@link ToolExecutionExceptionProcessor}, which reports them back to the model
+ * or aborts the request, the same as the default tool calling manager.
+ */
+@Slf4j
+public class ParallelToolCallingManager implements ToolCallingManager {
+
+    private final ToolCallingManager delegate;
+    private final ExecutorService executorService;
+    private final ToolExecutionExceptionProcessor exceptionProcessor;
+    private final AgentProperties.Tools tools;
+
+    public ParallelToolCallingManager(ToolCallingManager delegate,
+                                      ExecutorService executorService,
+                                      ToolExecutionExceptionProcessor exceptionProcessor,
+                                      AgentProperties.Tools tools) {
+        this.delegate = delegate;
+        this.executorService = executorService;
+        this.exceptionProcessor = exceptionProcessor;
+        this.tools = tools;
+    }
+
+    @Override
+    public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+        return delegate.resolveToolDefinitions(chatOptions);
+    }
+
+    @Override
+    public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+        if (!tools.isParallel()) {
+            return delegate.executeToolCalls(prompt, chatResponse);
+        }
+        AssistantMessage assistantMessage = chatResponse.getResults().stream()
+                .map(Generation::getOutput)
+                .filter(AssistantMessage::hasToolCalls)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("no tool call requested by the chat model"));
+
+        Map<String, ToolCallback> toolCallbacks = toolCallbacks(prompt);
+        ToolContext toolContext = toolContext(prompt, assistantMessage);
+        List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+        List<CompletableFuture<String>> futures = new ArrayList<>(toolCalls.size());
+        for (AssistantMessage.ToolCall toolCall : toolCalls) {
+            futures.add(this.executeAsync(toolCallbacks, toolCall, toolContext));
+        }
+        return this.buildResult(prompt, assistantMessage, futures);
+    }
+
+    /**
+     * start a tool call right away, used to dispatch tool calls while the model is still streaming
+     *
+     * @param prompt   prompt holding the tool callbacks
+     * @param toolCall tool call
+     * @return tool result, the processed error when the call failed or timed out. cancelling it interrupts the tool
+     */
+    public CompletableFuture<String> executeAsync(Prompt prompt, AssistantMessage.ToolCall toolCall) {
+        return this.executeAsync(toolCallbacks(prompt), toolCall, toolContext(prompt, null));
+    }
+
+    /**
+     * wait for the tool results and build the conversation history in the order of the tool calls
+     */
+    public ToolExecutionResult buildResult(Prompt prompt,
+                                           AssistantMessage assistantMessage,
+                                           List<CompletableFuture<String>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            // the exception processor rethrows the tool error
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+
+        Map<String, ToolCallback> toolCallbacks = toolCallbacks(prompt);
+        List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+        List<ToolResponseMessage.ToolResponse> toolResponses = new ArrayList<>(toolCalls.size());
+        boolean returnDirect = true;
+        for (int i = 0; i < toolCalls.size(); i++) {
+            AssistantMessage.ToolCall toolCall = toolCalls.get(i);
+            ToolCallback toolCallback = toolCallbacks.get(toolCall.name());
+            returnDirect = returnDirect && toolCallback != null && toolCallback.getToolMetadata().returnDirect();
+            toolResponses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), futures.get(i).join()));
+        }
+
+        List<Message> conversationHistory = new ArrayList<>(prompt.copy().getInstructions());
+        conversationHistory.add(assistantMessage);
+        conversationHistory.add(new ToolResponseMessage(toolResponses, Map.of()));
+        return ToolExecutionResult.builder()
+                .conversationHistory(conversationHistory)
+                .returnDirect(returnDirect)
+                .build();
+    }
+
+    private CompletableFuture<String> executeAsync(Map<String, ToolCallback> toolCallbacks,
+                                                   AssistantMessage.ToolCall toolCall,
+                                                   ToolContext toolContext) {
+        ToolCallback toolCallback = toolCallbacks.get(toolCall.name());
+        if (toolCallback == null) {
+            return CompletableFuture.completedFuture(errorResult(toolCall, "tool not found"));
+        }
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = executorService.submit(() -> {
+                try {
+                    result.complete(toolCallback.call(toolCall.arguments(), toolContext));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(this.processError(toolCallback, e));
+        }
+        CompletableFuture<String> handled = result
+                .orTimeout(tools.getCallTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((value, e) -> {
+                    if (e != null) {
+                        // interrupt the tool that is still running after the timeout
+                        task.cancel(true);
+                    }
+                })
+                .handle((value, e) -> e == null ? value : this.processError(toolCallback, e));
+        handled.whenComplete((value, e) -> {
+            if (e instanceof CancellationException) {
+                task.cancel(true);
+            }
+        });
+        return handled;
+    }
+
+    private String processError(ToolCallback toolCallback, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof TimeoutException) {
+            cause = new TimeoutException("tool call timeout");
+        } else {
+            log.warn("tool {} call error", toolCallback.getToolDefinition().name(), cause);
+        }
+        ToolExecutionException exception = cause instanceof ToolExecutionException toolExecutionException
+                ? toolExecutionException
+                : new ToolExecutionException(toolCallback.getToolDefinition(), cause);
+        return exceptionProcessor.process(exception);
+    }
+
+    private static Map<String, ToolCallback> toolCallbacks(Prompt prompt) {
+        Map<String, ToolCallback> toolCallbacks = new HashMap<>();
+        if (prompt.getOptions() instanceof ToolCallingChatOptions toolCallingChatOptions) {
+            for (ToolCallback toolCallback : toolCallingChatOptions.getToolCallbacks()) {
+                toolCallbacks.put(toolCallback.getToolDefinition().name(), toolCallback);
+            }
+        }
+        return toolCallbacks;
+    }
+
+    private static ToolContext toolContext(Prompt prompt, AssistantMessage assistantMessage) {
+        Map<String, Object> toolContextMap = Map.of();
+        if (prompt.getOptions() instanceof ToolCallingChatOptions toolCallingChatOptions
+                && !CollectionUtils.isEmpty(toolCallingChatOptions.getToolContext())) {
+            toolContextMap = new HashMap<>(toolCallingChatOptions.getToolContext());
+            List<Message> history = new ArrayList<>(prompt.copy().getInstructions());
+            if (assistantMessage != null) {
+                history.add(assistantMessage);
+            }
+            toolContextMap.put(ToolContext.TOOL_CALL_HISTORY, history);
+        }
+        return new ToolContext(toolContextMap);
+    }
+
+    private static String errorResult(AssistantMessage.ToolCall toolCall, String error) {
+        JSONObject result = new JSONObject();
+        result.put("tool", toolCall.name());
+        result.put("error", error);
+        return result.toJSONString();
+    }
+}
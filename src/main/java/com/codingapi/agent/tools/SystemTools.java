@@ -16,8 +16,6 @@ public class SystemTools implements ToolsProvider{
         if (timeZone != null && !timeZone.isEmpty()) {
             dateFormat.setTimeZone(java.util.TimeZone.getTimeZone(timeZone));
         }
-        String data = dateFormat.format(System.currentTimeMillis());
-        System.out.println(data);
-        return  data;
+        return dateFormat.format(System.currentTimeMillis());
     }
 }
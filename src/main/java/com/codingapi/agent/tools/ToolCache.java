@@ -0,0 +1,38 @@
+package com.codingapi.agent.tools;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * cache the result of a {@link org.springframework.ai.tool.annotation.Tool} method.
+ * results are keyed by tool name and normalized json arguments, use it only on pure or slow-changing tools.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ToolCache {
+
+    /**
+     * time to live of a cached result in seconds
+     */
+    long ttl() default 60;
+
+    /**
+     * cache scope
+     */
+    Scope scope() default Scope.GLOBAL;
+
+    enum Scope {
+        /**
+         * shared by all conversations
+         */
+        GLOBAL,
+        /**
+         * cached per chat id
+         */
+        CHAT
+    }
+}
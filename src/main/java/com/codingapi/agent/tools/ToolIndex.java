@@ -0,0 +1,172 @@
+package com.codingapi.agent.tools;
+
+import com.codingapi.agent.memory.TokenEstimator;
+import lombok.Getter;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * BM25 index over the tool names, descriptions and parameter docs, built once at startup.
+ * latin text is split into lowercase words (camelCase and snake_case names are split too),
+ * CJK text into character bigrams, so chinese descriptions match without a segmenter.
+ */
+public class ToolIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final ToolCallback[] toolCallbacks;
+    private final List<Map<String, Integer>> termFrequencies = new ArrayList<>();
+    private final int[] documentLengths;
+    private final Map<String, Double> idf = new HashMap<>();
+    private final double averageLength;
+
+    /**
+     * estimated prompt tokens of each tool schema
+     */
+    private final int[] schemaTokens;
+    @Getter
+    private final int totalSchemaTokens;
+
+    public ToolIndex(ToolCallback[] toolCallbacks) {
+        this.toolCallbacks = toolCallbacks;
+        this.documentLengths = new int[toolCallbacks.length];
+        this.schemaTokens = new int[toolCallbacks.length];
+        Map<String, Integer> documentFrequencies = new HashMap<>();
+        long totalLength = 0;
+        int totalTokens = 0;
+        for (int i = 0; i < toolCallbacks.length; i++) {
+            ToolDefinition definition = toolCallbacks[i].getToolDefinition();
+            List<String> terms = terms(definition.name() + " " + definition.description() + " " + definition.inputSchema());
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (String term : terms) {
+                frequencies.merge(term, 1, Integer::sum);
+            }
+            for (String term : frequencies.keySet()) {
+                documentFrequencies.merge(term, 1, Integer::sum);
+            }
+            termFrequencies.add(frequencies);
+            documentLengths[i] = terms.size();
+            totalLength += terms.size();
+            schemaTokens[i] = TokenEstimator.estimate(definition.name())
+                    + TokenEstimator.estimate(definition.description())
+                    + TokenEstimator.estimate(definition.inputSchema());
+            totalTokens += schemaTokens[i];
+        }
+        int count = toolCallbacks.length;
+        documentFrequencies.forEach((term, frequency) ->
+                idf.put(term, Math.log(1 + (count - frequency + 0.5) / (frequency + 0.5))));
+        this.averageLength = count == 0 ? 0 : (double) totalLength / count;
+        this.totalSchemaTokens = totalTokens;
+    }
+
+    public int size() {
+        return toolCallbacks.length;
+    }
+
+    /**
+     * the tools most relevant to the query
+     *
+     * @param query user text
+     * @param topK  max tools returned
+     * @return matching tools ordered by score. when no tool matches, the index cannot tell which tools the query
+     * needs and every tool is returned, not matched
+     */
+    public Selection search(String query, int topK) {
+        Set<String> queryTerms = new HashSet<>(terms(query));
+        double[] scores = new double[toolCallbacks.length];
+        Integer[] order = new Integer[toolCallbacks.length];
+        for (int i = 0; i < toolCallbacks.length; i++) {
+            order[i] = i;
+            Map<String, Integer> frequencies = termFrequencies.get(i);
+            double norm = K1 * (1 - B + B * documentLengths[i] / averageLength);
+            for (String term : queryTerms) {
+                Integer frequency = frequencies.get(term);
+                if (frequency != null) {
+                    scores[i] += idf.get(term) * frequency * (K1 + 1) / (frequency + norm);
+                }
+            }
+        }
+        Arrays.sort(order, (left, right) -> Double.compare(scores[right], scores[left]));
+        List<ToolCallback> selected = new ArrayList<>();
+        int tokens = 0;
+        for (int i = 0; i < order.length && selected.size() < topK && scores[order[i]] > 0; i++) {
+            selected.add(toolCallbacks[order[i]]);
+            tokens += schemaTokens[order[i]];
+        }
+        if (selected.isEmpty()) {
+            return new Selection(Arrays.asList(toolCallbacks), 0, false);
+        }
+        return new Selection(selected, totalSchemaTokens - tokens, true);
+    }
+
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        StringBuilder word = new StringBuilder();
+        char previousCjk = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '\u2E80') {
+                addWord(terms, word);
+                if (Character.isLetterOrDigit(c)) {
+                    if (previousCjk != 0) {
+                        terms.add(new String(new char[]{previousCjk, c}));
+                    }
+                    terms.add(String.valueOf(c));
+                    previousCjk = c;
+                } else {
+                    previousCjk = 0;
+                }
+            } else if (Character.isLetterOrDigit(c)) {
+                if (Character.isUpperCase(c) && word.length() > 0 && Character.isLowerCase(text.charAt(i - 1))) {
+                    addWord(terms, word);
+                }
+                word.append(Character.toLowerCase(c));
+                previousCjk = 0;
+            } else {
+                addWord(terms, word);
+                previousCjk = 0;
+            }
+        }
+        addWord(terms, word);
+        return terms;
+    }
+
+    private static void addWord(List<String> terms, StringBuilder word) {
+        if (word.length() > 1) {
+            terms.add(word.toString());
+        }
+        word.setLength(0);
+    }
+
+    @Getter
+    public static class Selection {
+
+        private final List<ToolCallback> toolCallbacks;
+        /**
+         * estimated prompt tokens of the tool schemas left out
+         */
+        private final int savedTokens;
+        /**
+         * some tool matched the query, otherwise the selection is the whole catalogue
+         */
+        private final boolean matched;
+
+        private Selection(List<ToolCallback> toolCallbacks, int savedTokens, boolean matched) {
+            this.toolCallbacks = toolCallbacks;
+            this.savedTokens = savedTokens;
+            this.matched = matched;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.codingapi.agent.tools;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.parser.Feature;
+import com.codingapi.agent.memory.TokenEstimator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * shrinks a tool result to a token budget.
+ * json results keep their structure: arrays are cut to the first items, long strings are shortened and deep
+ * objects are collapsed, each pass tighter than the previous one until the result fits. text, and json that
+ * still does not fit, keeps its head and tail.
+ */
+public class ToolOutputCompressor {
+
+    /**
+     * string length and nesting depth of the json passes, the array items of the first pass are configured
+     */
+    private static final int[][] PASSES = {{512, 8}, {256, 5}, {128, 3}, {64, 2}};
+
+    private static final int MARKER_TOKENS = 10;
+
+    private final int tokenBudget;
+    private final int arrayItems;
+
+    public ToolOutputCompressor(int tokenBudget, int arrayItems) {
+        this.tokenBudget = tokenBudget;
+        this.arrayItems = arrayItems;
+    }
+
+    public boolean fits(String output) {
+        return TokenEstimator.estimate(output) <= tokenBudget;
+    }
+
+    public String compress(String output) {
+        if (this.fits(output)) {
+            return output;
+        }
+        Object json = parseJson(output);
+        if (json != null) {
+            int items = arrayItems;
+            for (int[] pass : PASSES) {
+                String projected = JSON.toJSONString(project(json, items, pass[0], pass[1]));
+                if (this.fits(projected)) {
+                    return projected;
+                }
+                items = Math.max(1, items / 2);
+            }
+        }
+        return headTail(output, tokenBudget);
+    }
+
+    private static Object parseJson(String output) {
+        String text = output.trim();
+        if (!(text.startsWith("{") || text.startsWith("["))) {
+            return null;
+        }
+        try {
+            return JSON.parse(text, Feature.OrderedField);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static Object project(Object value, int items, int chars, int depth) {
+        if (value instanceof Map<?, ?> map) {
+            if (depth == 0) {
+                return "{…" + map.size() + " fields}";
+            }
+            Map<String, Object> projected = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                projected.put(String.valueOf(entry.getKey()), project(entry.getValue(), items, chars, depth - 1));
+            }
+            return projected;
+        }
+        if (value instanceof List<?> list) {
+            if (depth == 0) {
+                return "[…" + list.size() + " items]";
+            }
+            List<Object> projected = new ArrayList<>(Math.min(items, list.size()) + 1);
+            for (int i = 0; i < list.size() && i < items; i++) {
+                projected.add(project(list.get(i), items, chars, depth - 1));
+            }
+            if (list.size() > items) {
+                projected.add("…" + (list.size() - items) + " more items");
+            }
+            return projected;
+        }
+        if (value instanceof String text && text.length() > chars) {
+            return text.substring(0, chars) + "…";
+        }
+        return value;
+    }
+
+    /**
+     * two thirds of the budget for the head, one third for the tail, less the omission marker
+     */
+    static String headTail(String text, int tokenBudget) {
+        int budget = Math.max(0, tokenBudget - MARKER_TOKENS);
+        int head = prefixLength(text, 0, budget * 2 / 3);
+        int tail = text.length() - suffixLength(text, head, budget / 3);
+        return text.substring(0, head)
+                + "\n…[" + (tail - head) + " characters omitted]…\n"
+                + text.substring(tail);
+    }
+
+    /**
+     * characters from {@code from} that fit in the tokens, with the cost model of {@link TokenEstimator}
+     */
+    static int prefixLength(String text, int from, int tokens) {
+        double cost = 0;
+        int i = from;
+        while (i < text.length()) {
+            cost += text.charAt(i) >= '\u2E80' ? 1 : 0.25;
+            if (cost > tokens) {
+                break;
+            }
+            i++;
+        }
+        return i - from;
+    }
+
+    private static int suffixLength(String text, int from, int tokens) {
+        double cost = 0;
+        int i = text.length();
+        while (i > from) {
+            cost += text.charAt(i - 1) >= '\u2E80' ? 1 : 0.25;
+            if (cost > tokens) {
+                break;
+            }
+            i--;
+        }
+        return text.length() - i;
+    }
+}
@@ -0,0 +1,117 @@
+package com.codingapi.agent.tools;
+
+import com.alibaba.fastjson.JSON;
+import com.codingapi.agent.properties.AgentProperties;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * size-bounded LRU cache of tool results with per entry ttl
+ */
+@Component
+public class ToolResultCache {
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ToolResultCache(AgentProperties agentProperties) {
+        int maxSize = agentProperties.getTools().getCacheSize();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * cache key of a tool call
+     *
+     * @param toolName  tool name
+     * @param arguments json arguments
+     * @param chatId    chat id, null for the global scope
+     * @return key with the arguments normalized, so the field order and whitespace do not matter
+     */
+    public static String key(String toolName, String arguments, String chatId) {
+        String normalized;
+        try {
+            normalized = JSON.toJSONString(normalize(JSON.parse(arguments)));
+        } catch (Exception e) {
+            normalized = arguments == null ? "" : arguments.trim();
+        }
+        return chatId == null ? toolName + ":" + normalized : chatId + ":" + toolName + ":" + normalized;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object normalize(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            TreeMap<String, Object> sorted = new TreeMap<>();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                sorted.put(String.valueOf(entry.getKey()), normalize(entry.getValue()));
+            }
+            return sorted;
+        }
+        if (value instanceof List<?> list) {
+            List<Object> items = new ArrayList<>(list.size());
+            for (Object item : list) {
+                items.add(normalize(item));
+            }
+            return items;
+        }
+        return value;
+    }
+
+    public synchronized String get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expireAt < System.currentTimeMillis()) {
+            entries.remove(key);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.result;
+    }
+
+    public synchronized void put(String key, String result, long ttlMillis) {
+        entries.put(key, new Entry(result, System.currentTimeMillis() + ttlMillis));
+    }
+
+    public synchronized Stats getStats() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return new Stats(entries.size(), hitCount, misses.sum(), evictions.sum(), total == 0 ? 0 : (double) hitCount / total);
+    }
+
+    private record Entry(String result, long expireAt) {
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Stats {
+
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final double hitRatio;
+    }
+}
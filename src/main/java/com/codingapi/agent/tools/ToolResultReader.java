@@ -0,0 +1,32 @@
+package com.codingapi.agent.tools;
+
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.annotation.ToolParam;
+
+/**
+ * tool that pages through the full payload of a compressed tool result.
+ * offered next to the retrieved tools, it is not a {@link ToolsProvider}, so its pages are never compressed again.
+ * a reference can only be read in the conversation the tool result belongs to.
+ */
+public class ToolResultReader {
+
+    public static final String TOOL_NAME = "readToolResult";
+
+    private final ToolResultStore toolResultStore;
+
+    public ToolResultReader(ToolResultStore toolResultStore) {
+        this.toolResultStore = toolResultStore;
+    }
+
+    @Tool(name = TOOL_NAME, description = "读取被截断的工具结果的完整内容，按页返回，ref为截断提示中给出的引用id")
+    public String readToolResult(@ToolParam(description = "工具结果的引用id") String ref,
+                                 @ToolParam(description = "页码，从1开始") int page,
+                                 ToolContext toolContext) {
+        ToolResultStore.Page result = toolResultStore.page(ToolResultStore.conversationId(toolContext), ref, page);
+        if (result == null) {
+            return "tool result not found or expired:" + ref;
+        }
+        return result.getText() + "\n[page " + result.getPage() + "/" + result.getPages() + ", ref=" + ref + "]";
+    }
+}
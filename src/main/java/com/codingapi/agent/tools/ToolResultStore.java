@@ -0,0 +1,128 @@
+package com.codingapi.agent.tools;
+
+import com.codingapi.agent.properties.AgentProperties;
+import lombok.Getter;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * full payloads of the tool results that were compressed, addressable by a reference id within their conversation.
+ * a payload is split into pages of the tool result budget once, the model reads them with {@link ToolResultReader}.
+ * size-bounded LRU with ttl, like the {@link ToolResultCache}, kept in this process only.
+ */
+@Component
+public class ToolResultStore {
+
+    private final LinkedHashMap<String, Entry> entries;
+    private final int pageTokens;
+    private final Duration ttl;
+    private final long ttlMillis;
+
+    public ToolResultStore(AgentProperties agentProperties) {
+        AgentProperties.Tools tools = agentProperties.getTools();
+        int maxSize = tools.getResultStoreSize();
+        this.pageTokens = Math.max(1, tools.getResultTokenBudget());
+        this.ttl = tools.getResultTtl();
+        this.ttlMillis = ttl.toMillis();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * conversation the tool was called in, the default conversation without a tool context
+     */
+    public static String conversationId(ToolContext toolContext) {
+        Object conversationId = toolContext != null ? toolContext.getContext().get(ChatMemory.CONVERSATION_ID) : null;
+        return conversationId != null ? conversationId.toString() : ChatMemory.DEFAULT_CONVERSATION_ID;
+    }
+
+    /**
+     * how long a payload can be read, as told to the model
+     */
+    public String lifetime() {
+        if (ttl.toSeconds() % 60 == 0) {
+            return ttl.toMinutes() + " minutes";
+        }
+        return ttl.toSeconds() + " seconds";
+    }
+
+    /**
+     * keep the payload
+     *
+     * @param conversationId conversation the payload can be read in
+     * @return reference id
+     */
+    public String put(String conversationId, String payload) {
+        List<Integer> pageStarts = new ArrayList<>();
+        int start = 0;
+        do {
+            pageStarts.add(start);
+            start += Math.max(1, ToolOutputCompressor.prefixLength(payload, start, pageTokens));
+        } while (start < payload.length());
+        String ref = UUID.randomUUID().toString().substring(0, 8);
+        Entry entry = new Entry(payload, pageStarts, System.currentTimeMillis() + ttlMillis);
+        synchronized (this) {
+            entries.put(key(conversationId, ref), entry);
+        }
+        return ref;
+    }
+
+    /**
+     * a page of the payload
+     *
+     * @param conversationId conversation reading the payload
+     * @param page           page number, from 1
+     * @return null when the reference is unknown in the conversation or expired
+     */
+    public Page page(String conversationId, String ref, int page) {
+        String key = key(conversationId, ref);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && entry.expireAt < System.currentTimeMillis()) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            return null;
+        }
+        int pages = entry.pageStarts.size();
+        int index = Math.max(1, Math.min(page, pages)) - 1;
+        int end = index + 1 < pages ? entry.pageStarts.get(index + 1) : entry.payload.length();
+        return new Page(entry.payload.substring(entry.pageStarts.get(index), end), index + 1, pages);
+    }
+
+    private static String key(String conversationId, String ref) {
+        return conversationId + ":" + ref;
+    }
+
+    private record Entry(String payload, List<Integer> pageStarts, long expireAt) {
+    }
+
+    @Getter
+    public static class Page {
+
+        private final String text;
+        private final int page;
+        private final int pages;
+
+        private Page(String text, int page, int pages) {
+            this.text = text;
+            this.page = page;
+            this.pages = pages;
+        }
+    }
+}
@@ -1,23 +1,136 @@
 package com.codingapi.agent.tools;
 
+import com.codingapi.agent.metrics.AgentMetrics;
+import com.codingapi.agent.metrics.TimedToolCallback;
+import com.codingapi.agent.properties.AgentProperties;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.ai.tool.method.MethodToolCallbackProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 @Component
 public class ToolsContext {
 
     private final List<ToolsProvider> providers;
+    private final ToolCallback[] toolCallbacks;
+    private final ToolIndex toolIndex;
+    private final int retrievalTopK;
+    private final AgentMetrics.ToolRetrievalMeters retrievalMeters;
+    /**
+     * pages of the compressed tool results, null when tool results are not budgeted
+     */
+    private final ToolCallback toolResultReader;
 
-    public ToolsContext(@Autowired(required = false) List<ToolsProvider> providers) {
+    public ToolsContext(@Autowired(required = false) List<ToolsProvider> providers,
+                        ToolResultCache toolResultCache,
+                        ToolResultStore toolResultStore,
+                        AgentMetrics agentMetrics,
+                        AgentProperties agentProperties) {
+        AgentProperties.Tools tools = agentProperties.getTools();
         this.providers = Objects.requireNonNullElseGet(providers, ArrayList::new);
+        this.toolCallbacks = this.createToolCallbacks(toolResultCache, toolResultStore, agentMetrics, tools);
+        this.toolIndex = new ToolIndex(toolCallbacks);
+        this.retrievalTopK = tools.getRetrievalTopK();
+        this.retrievalMeters = agentMetrics.toolRetrieval();
+        this.toolResultReader = tools.getResultTokenBudget() > 0 && toolCallbacks.length > 0
+                ? MethodToolCallbackProvider.builder()
+                .toolObjects(new ToolResultReader(toolResultStore))
+                .build()
+                .getToolCallbacks()[0]
+                : null;
+    }
+
+    private ToolCallback[] createToolCallbacks(ToolResultCache toolResultCache,
+                                               ToolResultStore toolResultStore,
+                                               AgentMetrics agentMetrics,
+                                               AgentProperties.Tools tools) {
+        if (providers.isEmpty()) {
+            return new ToolCallback[0];
+        }
+        Map<String, ToolCache> toolCaches = new HashMap<>();
+        for (ToolsProvider provider : providers) {
+            ReflectionUtils.doWithMethods(ClassUtils.getUserClass(provider), method -> {
+                Tool tool = AnnotationUtils.findAnnotation(method, Tool.class);
+                ToolCache toolCache = AnnotationUtils.findAnnotation(method, ToolCache.class);
+                if (tool != null && toolCache != null) {
+                    String name = StringUtils.hasText(tool.name()) ? tool.name() : method.getName();
+                    toolCaches.put(name, toolCache);
+                }
+            });
+        }
+
+        ToolCallback[] callbacks = MethodToolCallbackProvider.builder()
+                .toolObjects(providers.toArray())
+                .build()
+                .getToolCallbacks();
+        ToolOutputCompressor compressor = new ToolOutputCompressor(tools.getResultTokenBudget(),
+                tools.getResultArrayItems());
+        for (int i = 0; i < callbacks.length; i++) {
+            callbacks[i] = new TimedToolCallback(callbacks[i], agentMetrics);
+            ToolCache toolCache = toolCaches.get(callbacks[i].getToolDefinition().name());
+            if (toolCache != null) {
+                callbacks[i] = new CachingToolCallback(callbacks[i], toolCache, toolResultCache);
+            }
+            if (tools.getResultTokenBudget() > 0) {
+                callbacks[i] = new BudgetedToolCallback(callbacks[i], compressor, toolResultStore,
+                        agentMetrics.toolOutput());
+            }
+        }
+        return callbacks;
     }
 
     public Object[] getTools() {
         return providers.toArray();
     }
 
+    public ToolCallback[] getToolCallbacks() {
+        return toolCallbacks;
+    }
+
+    /**
+     * the tools offered for the query, only the top-k matches of the {@link ToolIndex} when the catalogue is larger than k,
+     * every tool when none matches.
+     * the {@link ToolResultReader} is offered with them, so truncated results can be read in full.
+     *
+     * @param query user text of the request
+     * @return tool callbacks
+     */
+    public List<ToolCallback> getToolCallbacks(String query) {
+        List<ToolCallback> selected;
+        if (retrievalTopK <= 0 || toolCallbacks.length <= retrievalTopK) {
+            selected = Arrays.asList(toolCallbacks);
+        } else {
+            ToolIndex.Selection selection = toolIndex.search(query, retrievalTopK);
+            retrievalMeters.getSelected().record(selection.getToolCallbacks().size());
+            retrievalMeters.getSavedTokens().increment(selection.getSavedTokens());
+            selected = selection.getToolCallbacks();
+        }
+        if (toolResultReader == null || selected.isEmpty()) {
+            return selected;
+        }
+        List<ToolCallback> offered = new ArrayList<>(selected.size() + 1);
+        offered.addAll(selected);
+        offered.add(toolResultReader);
+        return offered;
+    }
+
+    /**
+     * some tool of the {@link ToolIndex} matches the query
+     */
+    public boolean isToolRelevant(String query) {
+        return toolIndex.size() > 0 && toolIndex.search(query, 1).isMatched();
+    }
+
 }
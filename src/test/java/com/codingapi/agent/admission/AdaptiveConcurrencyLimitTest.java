@@ -0,0 +1,59 @@
+package com.codingapi.agent.admission;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static void round(AdaptiveConcurrencyLimit limit, int requests, long rttNanos) {
+        int admitted = 0;
+        for (int i = 0; i < requests; i++) {
+            if (limit.tryAcquire()) {
+                admitted++;
+            }
+        }
+        for (int i = 0; i < admitted; i++) {
+            limit.release(rttNanos);
+        }
+    }
+
+    @Test
+    void growWhileLatencyHolds() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 4, 200, 0.2);
+        for (int i = 0; i < 100; i++) {
+            round(limit, limit.getLimit(), 100_000_000L);
+        }
+        assertTrue(limit.getLimit() > 20);
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void shrinkWhenLatencyRises() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(100, 4, 200, 0.2);
+        round(limit, 100, 100_000_000L);
+        int before = limit.getLimit();
+        round(limit, 100, 400_000_000L);
+        assertTrue(limit.getLimit() < before / 2);
+        assertTrue(limit.getLimit() >= 4);
+    }
+
+    @Test
+    void rejectAboveLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 0.2);
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        limit.release(0);
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    void doNotGrowWhenUnused() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 4, 200, 0.2);
+        for (int i = 0; i < 1000; i++) {
+            round(limit, 1, 100_000_000L);
+        }
+        assertEquals(20, limit.getLimit());
+    }
+}
@@ -0,0 +1,76 @@
+package com.codingapi.agent.admission;
+
+import com.codingapi.agent.properties.AgentProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AdmissionControllerTest {
+
+    private static AgentProperties agentProperties() {
+        AgentProperties agentProperties = new AgentProperties();
+        agentProperties.getAdmission().setEnabled(true);
+        agentProperties.getAdmission().setClientRate(0.5);
+        agentProperties.getAdmission().setClientBurst(1);
+        return agentProperties;
+    }
+
+    @RestController
+    static class ChatController {
+
+        private final AdmissionController admissionController;
+
+        ChatController(AdmissionController admissionController) {
+            this.admissionController = admissionController;
+        }
+
+        @PostMapping("/chat")
+        String chat(@RequestHeader(value = "X-Client-Id", required = false) String clientId) {
+            return admissionController.submit(admissionController.clientKey(clientId, "127.0.0.1"), null,
+                    () -> CompletableFuture.completedFuture("ok")).join();
+        }
+    }
+
+    @Test
+    void rejectWithRetryAfter() throws Exception {
+        AdmissionController admissionController = new AdmissionController(agentProperties());
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new ChatController(admissionController)).build();
+
+        mockMvc.perform(post("/chat")).andExpect(status().isOk());
+        mockMvc.perform(post("/chat"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "2"));
+        // the header is not trusted by default, a new client id is still the same client
+        mockMvc.perform(post("/chat").header("X-Client-Id", "rotated"))
+                .andExpect(status().isTooManyRequests());
+        assertEquals(2, admissionController.getStats().getClientRejected());
+    }
+
+    @Test
+    void boundTheBuckets() {
+        AgentProperties agentProperties = agentProperties();
+        agentProperties.getAdmission().setTrustClientId(true);
+        agentProperties.getAdmission().setMaxKeys(2);
+        AdmissionController admissionController = new AdmissionController(agentProperties);
+
+        assertEquals("a", admissionController.clientKey("a", "127.0.0.1"));
+        admissionController.submit("a", null, () -> CompletableFuture.completedFuture("ok")).join();
+        admissionController.submit("b", null, () -> CompletableFuture.completedFuture("ok")).join();
+        // both buckets are in use, a third client is rejected instead of growing the map
+        AdmissionRejectedException e = assertThrows(AdmissionRejectedException.class,
+                () -> admissionController.submit("c", null, () -> CompletableFuture.completedFuture("ok")));
+        assertEquals(429, e.getStatusCode().value());
+        assertEquals(1, admissionController.getStats().getKeyRejected());
+    }
+}
@@ -0,0 +1,38 @@
+package com.codingapi.agent.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void burstThenRate() {
+        TokenBucket bucket = new TokenBucket(2, 3, 0);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.tryAcquire(0));
+        }
+        // one token every half second
+        assertEquals(SECOND / 2, bucket.tryAcquire(0));
+        assertEquals(SECOND / 4, bucket.tryAcquire(SECOND / 4));
+        assertEquals(0, bucket.tryAcquire(SECOND / 2));
+        assertFalse(bucket.isFull(SECOND / 2));
+        assertTrue(bucket.isFull(10 * SECOND));
+    }
+
+    @Test
+    void releaseUpToBurst() {
+        TokenBucket bucket = new TokenBucket(1, 1, 0);
+        assertEquals(0, bucket.tryAcquire(0));
+        assertTrue(bucket.tryAcquire(0) > 0);
+        bucket.release();
+        bucket.release();
+        assertTrue(bucket.isFull(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertTrue(bucket.tryAcquire(0) > 0);
+    }
+}
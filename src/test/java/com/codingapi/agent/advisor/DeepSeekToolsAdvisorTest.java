@@ -0,0 +1,310 @@
+package com.codingapi.agent.advisor;
+
+import com.codingapi.agent.properties.AgentProperties;
+import com.codingapi.agent.tools.ParallelToolCallingManager;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.DefaultAroundAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.DefaultToolCallingManager;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.DefaultToolExecutionExceptionProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeepSeekToolsAdvisorTest {
+
+    private static final String TOOL_CALL = "[{\"tool\":\"getTime\",\"parameters\":{\"zone\":\"UTC\"}}]";
+
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    private final AgentProperties.Loop loop = new AgentProperties.Loop();
+    private final List<ChatClientRequest> requests = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    private static ToolCallback getTime() {
+        return getTime(() -> "12:00");
+    }
+
+    private static ToolCallback getTime(Supplier<String> time) {
+        ToolDefinition toolDefinition = ToolDefinition.builder()
+                .name("getTime")
+                .description("获取当前时间")
+                .inputSchema("{\"type\":\"object\",\"properties\":{\"zone\":{\"type\":\"string\"}}}")
+                .build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return toolDefinition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return time.get();
+            }
+        };
+    }
+
+    /**
+     * advisor standing in for the model, answers every request with the given function
+     */
+    private CallAdvisor model(Function<ChatClientRequest, String> answer) {
+        return new CallAdvisor() {
+            @Override
+            public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+                requests.add(chatClientRequest);
+                return ChatClientResponse.builder()
+                        .chatResponse(new ChatResponse(List.of(new Generation(
+                                new AssistantMessage(answer.apply(chatClientRequest))))))
+                        .context(chatClientRequest.context())
+                        .build();
+            }
+
+            @Override
+            public String getName() {
+                return "model";
+            }
+
+            @Override
+            public int getOrder() {
+                return 0;
+            }
+        };
+    }
+
+    private ChatClientResponse call(CallAdvisor model) {
+        DeepSeekToolsAdvisor advisor = new DeepSeekToolsAdvisor(new ParallelToolCallingManager(
+                DefaultToolCallingManager.builder().build(),
+                executorService,
+                new DefaultToolExecutionExceptionProcessor(false),
+                new AgentProperties.Tools()), loop, executorService);
+        CallAdvisorChain chain = new DefaultAroundAdvisorChain.Builder(ObservationRegistry.NOOP)
+                .pushAll(List.of(advisor, model))
+                .build();
+        ChatClientRequest request = ChatClientRequest.builder()
+                .prompt(new Prompt(List.of(new SystemMessage("你是一个助手"), new UserMessage("现在几点了")),
+                        OpenAiChatOptions.builder().toolCallbacks(getTime()).build()))
+                .context(Map.of())
+                .build();
+        return chain.nextCall(request);
+    }
+
+    /**
+     * advisor standing in for the streaming model, answers every request with the given chunks
+     */
+    private StreamAdvisor streamModel(Function<ChatClientRequest, Flux<String>> answer) {
+        return new StreamAdvisor() {
+            @Override
+            public Flux<ChatClientResponse> adviseStream(ChatClientRequest chatClientRequest,
+                                                         StreamAdvisorChain streamAdvisorChain) {
+                requests.add(chatClientRequest);
+                return answer.apply(chatClientRequest).map(chunk -> ChatClientResponse.builder()
+                        .chatResponse(new ChatResponse(List.of(new Generation(new AssistantMessage(chunk)))))
+                        .context(chatClientRequest.context())
+                        .build());
+            }
+
+            @Override
+            public String getName() {
+                return "model";
+            }
+
+            @Override
+            public int getOrder() {
+                return 0;
+            }
+        };
+    }
+
+    private List<String> stream(ToolCallback tool, StreamAdvisor model) {
+        DeepSeekToolsAdvisor advisor = new DeepSeekToolsAdvisor(new ParallelToolCallingManager(
+                DefaultToolCallingManager.builder().build(),
+                executorService,
+                new DefaultToolExecutionExceptionProcessor(false),
+                new AgentProperties.Tools()), loop, executorService);
+        StreamAdvisorChain chain = new DefaultAroundAdvisorChain.Builder(ObservationRegistry.NOOP)
+                .pushAll(List.of(advisor, model))
+                .build();
+        ChatClientRequest request = ChatClientRequest.builder()
+                .prompt(new Prompt(List.of(new SystemMessage("你是一个助手"), new UserMessage("现在几点了")),
+                        OpenAiChatOptions.builder().toolCallbacks(tool).build()))
+                .context(Map.of())
+                .build();
+        return chain.nextStream(request)
+                .map(response -> response.chatResponse().getResult().getOutput().getText())
+                .collectList()
+                .block(Duration.ofSeconds(10));
+    }
+
+    private static boolean hasTools(ChatClientRequest request) {
+        return request.prompt().getOptions() instanceof ToolCallingChatOptions options
+                && !options.getToolCallbacks().isEmpty();
+    }
+
+    private static String toolResult(ChatClientRequest request) {
+        List<Message> messages = request.prompt().getInstructions();
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof ToolResponseMessage toolResponseMessage) {
+                return toolResponseMessage.getResponses().get(0).responseData();
+            }
+        }
+        return null;
+    }
+
+    private static AgentLoopTrace trace(ChatClientResponse response) {
+        return (AgentLoopTrace) response.context().get(AgentLoopTrace.CONTEXT_KEY);
+    }
+
+    @Test
+    void toolRoundThenAnswer() {
+        ChatClientResponse response = this.call(this.model(request -> toolResult(request) == null
+                ? TOOL_CALL
+                : "现在是" + toolResult(request)));
+
+        assertEquals("现在是12:00", response.chatResponse().getResult().getOutput().getText());
+        AgentLoopTrace trace = trace(response);
+        assertEquals(2, trace.getRounds().size());
+        assertEquals(1, trace.getRounds().get(0).getToolCalls());
+        assertEquals(0, trace.getRounds().get(1).getToolCalls());
+    }
+
+    @Test
+    void lastRoundAnswersWithoutTools() {
+        loop.setMaxRounds(3);
+        ChatClientResponse response = this.call(this.model(request -> hasTools(request) ? TOOL_CALL : "没有更多工具了"));
+
+        assertEquals("没有更多工具了", response.chatResponse().getResult().getOutput().getText());
+        assertEquals(3, trace(response).getRounds().size());
+        assertEquals(3, requests.size());
+        ChatClientRequest last = requests.get(2);
+        assertFalse(hasTools(last));
+        assertTrue(last.prompt().getSystemMessage().getText().contains("工具调用次数已达上限"));
+        assertEquals("12:00", toolResult(last));
+    }
+
+    @Test
+    void roundTimeoutInterruptsModelCall() throws Exception {
+        loop.setRoundTimeout(Duration.ofMillis(200));
+        CountDownLatch interrupted = new CountDownLatch(1);
+        long start = System.nanoTime();
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> this.call(this.model(request -> {
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "late";
+        })));
+
+        assertTrue(exception.getMessage().contains("round exceeded timeout"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void streamPlainTextPassesThrough() {
+        List<String> chunks = this.stream(getTime(), this.streamModel(request -> Flux.just("现在", "是", "12点")));
+
+        assertEquals(List.of("现在", "是", "12点"), chunks);
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void streamDispatchesToolCallsBeforeTheRoundEnds() {
+        CountDownLatch called = new CountDownLatch(1);
+        ToolCallback tool = getTime(() -> {
+            called.countDown();
+            return "12:00";
+        });
+        List<Boolean> calledEarly = new CopyOnWriteArrayList<>();
+        List<String> chunks = this.stream(tool, this.streamModel(request -> {
+            if (toolResult(request) != null) {
+                return Flux.just("现在是", toolResult(request));
+            }
+            // the closing bracket is only sent after the tool ran, or after waiting in vain
+            Mono<String> end = Mono.fromCallable(() -> {
+                calledEarly.add(called.await(5, TimeUnit.SECONDS));
+                return "]";
+            }).subscribeOn(Schedulers.boundedElastic());
+            return Flux.concat(Flux.just("[{\"tool\":\"getTime\",", "\"parameters\":{\"zone\":\"UTC\"}}"), end);
+        }));
+
+        assertEquals(List.of(true), calledEarly);
+        assertEquals("现在是12:00", String.join("", chunks));
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    void streamCancelsDispatchedCallsTheRoundDoesNotUse() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        ToolCallback tool = getTime(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "12:00";
+        });
+        // the first object is a valid tool call, the second one is not, so the round is an answer
+        String answer = "[{\"tool\":\"getTime\",\"parameters\":{\"zone\":\"UTC\"}},{\"note\":\"not a tool call\"}]";
+        int split = answer.indexOf("},{") + 1;
+        // the rest of the answer is only sent once the dispatched tool is running
+        Mono<String> rest = Mono.fromCallable(() -> {
+            started.await(5, TimeUnit.SECONDS);
+            return answer.substring(split);
+        }).subscribeOn(Schedulers.boundedElastic());
+        List<String> chunks = this.stream(tool, this.streamModel(request ->
+                Flux.concat(Mono.just(answer.substring(0, split)), rest)));
+
+        assertEquals(0, started.getCount());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(answer, String.join("", chunks));
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void streamFallsBackToTextForJsonThatIsNoToolCall() {
+        String answer = "{\"answer\":\"12:00\"}";
+        List<String> chunks = this.stream(getTime(),
+                this.streamModel(request -> Flux.just("{\"answer\":", "\"12:00\"}")));
+
+        assertEquals(answer, String.join("", chunks));
+        assertEquals(1, requests.size());
+    }
+}
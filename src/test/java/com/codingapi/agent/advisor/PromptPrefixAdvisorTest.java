@@ -0,0 +1,118 @@
+package com.codingapi.agent.advisor;
+
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.DefaultAroundAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptPrefixAdvisorTest {
+
+    private static final CallAdvisor MODEL = new CallAdvisor() {
+        @Override
+        public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+            return ChatClientResponse.builder()
+                    .chatResponse(new ChatResponse(List.of(new Generation(new AssistantMessage("ok")))))
+                    .context(chatClientRequest.context())
+                    .build();
+        }
+
+        @Override
+        public String getName() {
+            return "model";
+        }
+
+        @Override
+        public int getOrder() {
+            return Integer.MAX_VALUE;
+        }
+    };
+
+    private static void call(PromptPrefixAdvisor advisor, String chatId, List<Message> messages) {
+        new DefaultAroundAdvisorChain.Builder(ObservationRegistry.NOOP)
+                .pushAll(List.of(advisor, MODEL))
+                .build()
+                .nextCall(ChatClientRequest.builder()
+                        .prompt(new Prompt(messages))
+                        .context(Map.of(ChatMemory.CONVERSATION_ID, chatId))
+                        .build());
+    }
+
+    private static ToolCallback tool(String name) {
+        ToolDefinition toolDefinition = ToolDefinition.builder()
+                .name(name)
+                .description("tool " + name)
+                .inputSchema("{\"type\":\"object\"}")
+                .build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return toolDefinition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return name;
+            }
+        };
+    }
+
+    @Test
+    void compareWithThePreviousPromptOfTheConversation() {
+        PromptPrefixAdvisor advisor = new PromptPrefixAdvisor();
+        List<Message> first = new ArrayList<>(List.of(new SystemMessage("你是一个助手"), new UserMessage("现在几点了")));
+        call(advisor, "chat-1", first);
+        long firstBytes = advisor.getStats().getLastPromptBytes();
+
+        // an unrelated conversation in between shares only the system message
+        call(advisor, "chat-2", List.of(new SystemMessage("你是一个助手"), new UserMessage("讲个笑话")));
+        assertTrue(advisor.getStats().getLastStablePrefixBytes() < firstBytes);
+
+        // the next turn of chat-1 appends to its history, its whole previous prompt is reusable
+        List<Message> second = new ArrayList<>(first);
+        second.add(new AssistantMessage("12:00"));
+        second.add(new UserMessage("谢谢"));
+        call(advisor, "chat-1", second);
+        assertEquals(firstBytes, advisor.getStats().getLastStablePrefixBytes());
+    }
+
+    @Test
+    void toolBlockIsStablePerToolSet() {
+        List<ToolCallback> tools = List.of(tool("a"), tool("b"));
+        String toolBlock = DeepSeekToolsAdvisor.toolBlock(tools);
+        assertEquals(toolBlock, DeepSeekToolsAdvisor.toolBlock(List.of(tool("a"), tool("b"))));
+        assertNotEquals(toolBlock, DeepSeekToolsAdvisor.toolBlock(List.of(tool("b"), tool("a"))));
+    }
+
+    @Test
+    void toolBlockCacheIsBounded() {
+        List<ToolCallback> tools = List.of(tool("cached"));
+        String toolBlock = DeepSeekToolsAdvisor.toolBlock(tools);
+        assertSame(toolBlock, DeepSeekToolsAdvisor.toolBlock(tools));
+        // more distinct tool sets than the cache holds clear it, the block is then built again byte-identical
+        for (int i = 0; i < 64; i++) {
+            DeepSeekToolsAdvisor.toolBlock(List.of(tool("tool-" + i)));
+        }
+        String rebuilt = DeepSeekToolsAdvisor.toolBlock(tools);
+        assertNotSame(toolBlock, rebuilt);
+        assertEquals(toolBlock, rebuilt);
+    }
+}
@@ -0,0 +1,49 @@
+package com.codingapi.agent.advisor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ThinkTagFilterTest {
+
+    private String filterAll(ThinkTagFilter filter, String... chunks) {
+        StringBuilder builder = new StringBuilder();
+        for (String chunk : chunks) {
+            builder.append(filter.filter(chunk));
+        }
+        builder.append(filter.flush());
+        return builder.toString();
+    }
+
+    @Test
+    void filterWholeBlock() {
+        String text = filterAll(new ThinkTagFilter(), "<think>\nhello\n</think>\n\n现在是白天");
+        assertEquals("现在是白天", text);
+    }
+
+    @Test
+    void filterSplitAcrossChunks() {
+        String text = filterAll(new ThinkTagFilter(), "<th", "ink>\nsome", " reasoning</th", "ink>", "\n\n", "answer");
+        assertEquals("answer", text);
+    }
+
+    @Test
+    void keepPlainTextChunk() {
+        ThinkTagFilter filter = new ThinkTagFilter();
+        String chunk = "plain text";
+        assertSame(chunk, filter.filter(chunk));
+    }
+
+    @Test
+    void keepNonTagAngleBrackets() {
+        String text = filterAll(new ThinkTagFilter(), "a <b> c <thi", "s is <<think>x</think>d");
+        assertEquals("a <b> c <this is <d", text);
+    }
+
+    @Test
+    void flushPendingPartialTag() {
+        String text = filterAll(new ThinkTagFilter(), "value <thi");
+        assertEquals("value <thi", text);
+    }
+}
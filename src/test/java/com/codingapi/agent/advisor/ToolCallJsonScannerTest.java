@@ -0,0 +1,53 @@
+package com.codingapi.agent.advisor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ToolCallJsonScannerTest {
+
+    private final StringBuilder text = new StringBuilder();
+    private final List<String> objects = new ArrayList<>();
+
+    private ToolCallJsonScanner scan(String... chunks) {
+        ToolCallJsonScanner scanner = new ToolCallJsonScanner();
+        for (String chunk : chunks) {
+            scanner.feed(chunk, text::append, objects::add);
+        }
+        text.append(scanner.flush());
+        return scanner;
+    }
+
+    @Test
+    void emitObjectsOfArrayAsSoonAsTheyClose() {
+        ToolCallJsonScanner scanner = new ToolCallJsonScanner();
+        scanner.feed("[{\"tool\":\"a\",\"parameters\":{\"v\":\"}\"}}", text::append, objects::add);
+        assertEquals(List.of("{\"tool\":\"a\",\"parameters\":{\"v\":\"}\"}}"), objects);
+        scanner.feed(",{\"tool\":\"b\",\"parameters\":{}}]", text::append, objects::add);
+        assertEquals(2, objects.size());
+        assertTrue(scanner.isJson());
+        assertEquals("", text.toString());
+    }
+
+    @Test
+    void detectJsonAfterThinkAndFence() {
+        ToolCallJsonScanner scanner = scan("<thi", "nk>why</think>\n", "```json\n{\"tool\":\"a\",\"parameters\":{}}\n```");
+        assertTrue(scanner.isJson());
+        assertEquals("<think>why</think>", text.toString());
+        assertEquals(List.of("{\"tool\":\"a\",\"parameters\":{}}"), objects);
+    }
+
+    @Test
+    void passPlainTextThrough() {
+        ToolCallJsonScanner scanner = scan("  Hello", " [world]");
+        assertTrue(scanner.isText());
+        assertFalse(scanner.isJson());
+        assertEquals("  Hello [world]", text.toString());
+        assertTrue(objects.isEmpty());
+    }
+}
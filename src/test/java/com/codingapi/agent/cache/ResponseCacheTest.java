@@ -0,0 +1,163 @@
+package com.codingapi.agent.cache;
+
+import com.codingapi.agent.properties.AgentProperties;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.DefaultAroundAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCacheTest {
+
+    private Prompt prompt(String model, String chatId, String question) {
+        return Prompt.builder()
+                .messages(new SystemMessage("你是一个助手"), new UserMessage(question))
+                .chatOptions(OpenAiChatOptions.builder()
+                        .model(model)
+                        .temperature(0.0)
+                        .toolContext(Map.of("chat_memory_conversation_id", chatId))
+                        .build())
+                .build();
+    }
+
+    @Test
+    void keyIgnoresToolContext() {
+        assertEquals(ResponseCache.key(prompt("qwen3:4b", "1", "你好")),
+                ResponseCache.key(prompt("qwen3:4b", "2", "你好")));
+        assertNotEquals(ResponseCache.key(prompt("qwen3:4b", "1", "你好")),
+                ResponseCache.key(prompt("qwen3:8b", "1", "你好")));
+        assertNotEquals(ResponseCache.key(prompt("qwen3:4b", "1", "你好")),
+                ResponseCache.key(prompt("qwen3:4b", "1", "你好吗")));
+    }
+
+    @Test
+    void evictLeastRecentlyUsed() {
+        AgentProperties agentProperties = new AgentProperties();
+        agentProperties.getResponseCache().setMaxSize(2);
+        ResponseCache responseCache = new ResponseCache(agentProperties);
+        ChatResponse response = new ChatResponse(List.of(new Generation(new AssistantMessage("ok"))));
+
+        responseCache.put("a", response);
+        responseCache.put("b", response);
+        assertNotNull(responseCache.get("a"));
+        responseCache.put("c", response);
+
+        assertNotNull(responseCache.get("a"));
+        assertNull(responseCache.get("b"));
+        assertEquals(1, responseCache.getStats().getEvictions());
+    }
+
+    private static ToolCallback tool() {
+        ToolDefinition toolDefinition = ToolDefinition.builder()
+                .name("getWeather")
+                .description("查询城市的天气")
+                .inputSchema("{\"type\":\"object\",\"properties\":{}}")
+                .build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return toolDefinition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return "晴";
+            }
+        };
+    }
+
+    /**
+     * sends the request through the response cache advisor to a model that calls the offered tool when asked to
+     */
+    private static ChatClientResponse call(ResponseCacheAdvisor advisor, AtomicInteger modelCalls, Double temperature,
+                                           String question) {
+        CallAdvisor model = new CallAdvisor() {
+            @Override
+            public ChatClientResponse adviseCall(ChatClientRequest request, CallAdvisorChain chain) {
+                modelCalls.incrementAndGet();
+                String answer = "ok";
+                if (question.contains("天气")
+                        && request.prompt().getOptions() instanceof ToolCallingChatOptions options) {
+                    answer = options.getToolCallbacks().get(0).call("{}");
+                }
+                return ChatClientResponse.builder()
+                        .chatResponse(new ChatResponse(List.of(new Generation(new AssistantMessage(answer)))))
+                        .context(request.context())
+                        .build();
+            }
+
+            @Override
+            public String getName() {
+                return "model";
+            }
+
+            @Override
+            public int getOrder() {
+                return Integer.MAX_VALUE;
+            }
+        };
+        CallAdvisorChain chain = new DefaultAroundAdvisorChain.Builder(ObservationRegistry.NOOP)
+                .pushAll(List.of(advisor, model))
+                .build();
+        return chain.nextCall(ChatClientRequest.builder()
+                .prompt(Prompt.builder()
+                        .messages(new UserMessage(question))
+                        .chatOptions(OpenAiChatOptions.builder()
+                                .model("qwen3:4b")
+                                .temperature(temperature)
+                                .toolCallbacks(tool())
+                                .build())
+                        .build())
+                .context(Map.of())
+                .build());
+    }
+
+    @Test
+    void cacheRequestsOfferingUnusedTools() {
+        AgentProperties agentProperties = new AgentProperties();
+        ResponseCacheAdvisor advisor = new ResponseCacheAdvisor(new ResponseCache(agentProperties),
+                agentProperties.getResponseCache());
+        AtomicInteger modelCalls = new AtomicInteger();
+
+        call(advisor, modelCalls, 0.0, "你好");
+        call(advisor, modelCalls, 0.0, "你好");
+        assertEquals(1, modelCalls.get());
+
+        // the answer depends on a tool result
+        call(advisor, modelCalls, 0.0, "今天天气怎么样");
+        call(advisor, modelCalls, 0.0, "今天天气怎么样");
+        assertEquals(3, modelCalls.get());
+    }
+
+    @Test
+    void requireExplicitTemperature() {
+        AgentProperties agentProperties = new AgentProperties();
+        ResponseCacheAdvisor advisor = new ResponseCacheAdvisor(new ResponseCache(agentProperties),
+                agentProperties.getResponseCache());
+        AtomicInteger modelCalls = new AtomicInteger();
+
+        call(advisor, modelCalls, null, "你好");
+        call(advisor, modelCalls, null, "你好");
+        call(advisor, modelCalls, 0.7, "你好");
+        call(advisor, modelCalls, 0.7, "你好");
+        assertEquals(4, modelCalls.get());
+    }
+}
@@ -0,0 +1,81 @@
+package com.codingapi.agent.cache;
+
+import com.codingapi.agent.properties.AgentProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SemanticCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private AgentProperties agentProperties(int maxSize) {
+        AgentProperties agentProperties = new AgentProperties();
+        agentProperties.getSemanticCache().setEnabled(true);
+        agentProperties.getSemanticCache().setMaxSize(maxSize);
+        agentProperties.getSemanticCache().setSimilarityThreshold(0.95);
+        agentProperties.getSemanticCache().setSnapshotFile(directory.resolve("semantic-cache.bin").toString());
+        return agentProperties;
+    }
+
+    private static float[] vector(Random random) {
+        float[] vector = new float[32];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static float[] near(float[] vector, Random random) {
+        float[] near = vector.clone();
+        for (int i = 0; i < near.length; i++) {
+            near[i] += (float) (random.nextGaussian() * 0.05);
+        }
+        return near;
+    }
+
+    @Test
+    void similarQuestionHits() {
+        Random random = new Random(1);
+        SemanticCache semanticCache = new SemanticCache(agentProperties(1000));
+        float[][] questions = new float[200][];
+        for (int i = 0; i < questions.length; i++) {
+            questions[i] = vector(random);
+            semanticCache.put(questions[i], "qwen3:4b", "context", "question " + i, "answer " + i);
+        }
+
+        SemanticCache.Entry entry = semanticCache.get(near(questions[42], random), "qwen3:4b", "context");
+        assertNotNull(entry);
+        assertEquals("answer 42", entry.getAnswer());
+        assertNull(semanticCache.get(near(questions[42], random), "qwen3:8b", "context"));
+        assertNull(semanticCache.get(near(questions[42], random), "qwen3:4b", "other context"));
+        assertNull(semanticCache.get(vector(random), "qwen3:4b", "context"));
+        semanticCache.destroy();
+    }
+
+    @Test
+    void evictOldestAndReloadSnapshot() {
+        Random random = new Random(2);
+        SemanticCache semanticCache = new SemanticCache(agentProperties(50));
+        float[][] questions = new float[120][];
+        for (int i = 0; i < questions.length; i++) {
+            questions[i] = vector(random);
+            semanticCache.put(questions[i], "qwen3:4b", "context", "question " + i, "answer " + i);
+        }
+        assertEquals(50, semanticCache.getStats().getSize());
+        assertEquals(70, semanticCache.getStats().getEvictions());
+        assertNull(semanticCache.get(questions[0], "qwen3:4b", "context"));
+        semanticCache.destroy();
+
+        SemanticCache reloaded = new SemanticCache(agentProperties(50));
+        assertEquals(50, reloaded.getStats().getSize());
+        assertEquals("answer 119", reloaded.get(questions[119], "qwen3:4b", "context").getAnswer());
+        assertEquals("answer 70", reloaded.get(questions[70], "qwen3:4b", "context").getAnswer());
+        reloaded.destroy();
+    }
+}
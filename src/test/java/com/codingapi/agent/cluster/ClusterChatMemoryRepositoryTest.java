@@ -0,0 +1,147 @@
+package com.codingapi.agent.cluster;
+
+import com.codingapi.agent.properties.AgentProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * several nodes in one jvm, connected by a transport that calls the other repositories directly
+ */
+class ClusterChatMemoryRepositoryTest {
+
+    private static final List<String> NODES = List.of("http://node-a", "http://node-b", "http://node-c");
+
+    private final Map<String, ClusterChatMemoryRepository> cluster = new HashMap<>();
+    private final Map<String, ChatMemoryRepository> locals = new HashMap<>();
+    private final Set<String> down = new HashSet<>();
+
+    private final ClusterTransport transport = new ClusterTransport() {
+        @Override
+        public byte[] fetch(String node, String chatId) {
+            return node(node).fetchLocal(chatId);
+        }
+
+        @Override
+        public void store(String node, String chatId, byte[] messages, boolean replicate) {
+            node(node).writeLocal(chatId, messages, replicate);
+        }
+
+        @Override
+        public void delete(String node, String chatId, boolean replicate) {
+            node(node).writeLocal(chatId, null, replicate);
+        }
+
+        @Override
+        public boolean ping(String node) {
+            return cluster.containsKey(node) && !down.contains(node);
+        }
+    };
+
+    private ClusterChatMemoryRepository node(String node) {
+        if (!cluster.containsKey(node) || down.contains(node)) {
+            throw new RuntimeException("node down:" + node);
+        }
+        return cluster.get(node);
+    }
+
+    private ClusterChatMemoryRepository start(String self) {
+        AgentProperties.Cluster properties = new AgentProperties.Cluster();
+        properties.setEnabled(true);
+        properties.setSelf(self);
+        properties.setNodes(NODES);
+        properties.setProbeInterval(Duration.ZERO);
+        InMemoryChatMemoryRepository local = new InMemoryChatMemoryRepository();
+        ClusterChatMemoryRepository repository = new ClusterChatMemoryRepository(local, transport, properties);
+        locals.put(self, local);
+        cluster.put(self, repository);
+        return repository;
+    }
+
+    private static List<Message> messages(int i) {
+        return List.of(new UserMessage("question " + i), new AssistantMessage("answer " + i));
+    }
+
+    private int copies(String chatId) {
+        int copies = 0;
+        for (Map.Entry<String, ChatMemoryRepository> local : locals.entrySet()) {
+            if (!down.contains(local.getKey()) && !local.getValue().findByConversationId(chatId).isEmpty()) {
+                copies++;
+            }
+        }
+        return copies;
+    }
+
+    @Test
+    void readOnEveryNode() {
+        NODES.forEach(this::start);
+        for (int i = 0; i < 30; i++) {
+            cluster.get("http://node-a").saveAll("chat-" + i, messages(i));
+        }
+        for (int i = 0; i < 30; i++) {
+            for (String node : NODES) {
+                List<Message> messages = cluster.get(node).findByConversationId("chat-" + i);
+                assertEquals(2, messages.size());
+                assertEquals("answer " + i, messages.get(1).getText());
+            }
+            assertEquals(2, copies("chat-" + i));
+        }
+
+        cluster.get("http://node-b").deleteByConversationId("chat-0");
+        assertEquals(0, copies("chat-0"));
+    }
+
+    @Test
+    void failoverToReplica() {
+        NODES.forEach(this::start);
+        for (int i = 0; i < 30; i++) {
+            cluster.get("http://node-a").saveAll("chat-" + i, messages(i));
+        }
+        down.add("http://node-b");
+        for (int i = 0; i < 30; i++) {
+            assertEquals("answer " + i, cluster.get("http://node-c").findByConversationId("chat-" + i).get(1).getText());
+        }
+        cluster.get("http://node-c").saveAll("chat-100", messages(100));
+
+        cluster.get("http://node-a").probe();
+        cluster.get("http://node-c").probe();
+        for (int i = 0; i < 30; i++) {
+            assertEquals(2, copies("chat-" + i));
+        }
+        assertEquals("answer 100", cluster.get("http://node-a").findByConversationId("chat-100").get(1).getText());
+    }
+
+    @Test
+    void rebalanceOnJoin() {
+        start("http://node-a");
+        start("http://node-b");
+        cluster.get("http://node-a").probe();
+        cluster.get("http://node-b").probe();
+        for (int i = 0; i < 30; i++) {
+            cluster.get("http://node-a").saveAll("chat-" + i, messages(i));
+        }
+
+        ClusterChatMemoryRepository nodeC = start("http://node-c");
+        cluster.get("http://node-a").probe();
+        cluster.get("http://node-b").probe();
+        nodeC.probe();
+
+        assertFalse(locals.get("http://node-c").findConversationIds().isEmpty());
+        for (int i = 0; i < 30; i++) {
+            assertEquals("answer " + i, nodeC.findByConversationId("chat-" + i).get(1).getText());
+            assertEquals(2, copies("chat-" + i));
+        }
+    }
+}
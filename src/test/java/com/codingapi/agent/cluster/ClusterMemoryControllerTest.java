@@ -0,0 +1,83 @@
+package com.codingapi.agent.cluster;
+
+import com.codingapi.agent.properties.AgentProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ClusterMemoryControllerTest {
+
+    private static final String SELF = "http://node-a";
+
+    private static AgentProperties agentProperties(String secret) {
+        AgentProperties agentProperties = new AgentProperties();
+        agentProperties.getCluster().setEnabled(true);
+        agentProperties.getCluster().setSelf(SELF);
+        agentProperties.getCluster().setNodes(List.of(SELF));
+        agentProperties.getCluster().setProbeInterval(Duration.ZERO);
+        agentProperties.getCluster().setSecret(secret);
+        return agentProperties;
+    }
+
+    private static ClusterChatMemoryRepository repository(AgentProperties agentProperties) {
+        ClusterTransport transport = new ClusterTransport() {
+            @Override
+            public byte[] fetch(String node, String chatId) {
+                throw new RuntimeException("single node");
+            }
+
+            @Override
+            public void store(String node, String chatId, byte[] messages, boolean replicate) {
+                throw new RuntimeException("single node");
+            }
+
+            @Override
+            public void delete(String node, String chatId, boolean replicate) {
+                throw new RuntimeException("single node");
+            }
+
+            @Override
+            public boolean ping(String node) {
+                return false;
+            }
+        };
+        return new ClusterChatMemoryRepository(new InMemoryChatMemoryRepository(), transport,
+                agentProperties.getCluster());
+    }
+
+    @Test
+    void requireTheSecret() throws Exception {
+        AgentProperties agentProperties = agentProperties("s3cret");
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(
+                new ClusterMemoryController(repository(agentProperties), agentProperties)).build();
+
+        mockMvc.perform(get("/agent/cluster/ping")).andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/agent/cluster/ping").header(HttpClusterTransport.SECRET_HEADER, "wrong"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(put("/agent/cluster/memory").param("chatId", "1")
+                        .contentType(MediaType.APPLICATION_JSON).content("[]"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/agent/cluster/memory").param("chatId", "1"))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(get("/agent/cluster/ping").header(HttpClusterTransport.SECRET_HEADER, "s3cret"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void refuseToStartWithoutSecret() {
+        AgentProperties agentProperties = agentProperties("");
+        assertThrows(RuntimeException.class,
+                () -> new ClusterMemoryController(repository(agentProperties), agentProperties));
+    }
+}
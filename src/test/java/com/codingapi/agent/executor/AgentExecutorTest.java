@@ -0,0 +1,33 @@
+package com.codingapi.agent.executor;
+
+import com.codingapi.agent.properties.AgentProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgentExecutorTest {
+
+    @Test
+    void nestedStepsDoNotStarveThePlatformPools() throws Exception {
+        AgentProperties agentProperties = new AgentProperties();
+        // java 17 has no virtual threads, the executor falls back to the platform pools
+        agentProperties.getExecution().setVirtualThreads(true);
+        agentProperties.getExecution().setPlatformThreads(1);
+        AgentExecutor agentExecutor = new AgentExecutor(agentProperties, new MockEnvironment());
+        try {
+            // a request waits on its model step, the step waits on its tool call, each with a single thread
+            CompletableFuture<String> request = CompletableFuture.supplyAsync(() ->
+                    CompletableFuture.supplyAsync(() ->
+                            CompletableFuture.supplyAsync(() -> "tool", agentExecutor.getToolExecutorService()).join(),
+                            agentExecutor.getStepExecutorService()).join(),
+                    agentExecutor.getExecutorService());
+            assertEquals("tool", request.get(5, TimeUnit.SECONDS));
+        } finally {
+            agentExecutor.destroy();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.codingapi.agent.executor;
+
+import com.codingapi.agent.properties.AgentProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversationExecutorTest {
+
+    @Test
+    void orderedPerConversation() throws Exception {
+        AgentProperties agentProperties = new AgentProperties();
+        agentProperties.getExecution().setVirtualThreads(true);
+        agentProperties.getExecution().setConversationQueueSize(1000);
+        AgentExecutor agentExecutor = new AgentExecutor(agentProperties, new MockEnvironment());
+        ConversationExecutor conversationExecutor = new ConversationExecutor(agentExecutor, agentProperties);
+
+        Map<String, List<Integer>> turns = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+        AtomicInteger maxParallel = new AtomicInteger();
+        AtomicInteger parallel = new AtomicInteger();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            String chatId = "chat-" + (i % 8);
+            int turn = i;
+            futures.add(conversationExecutor.submit(chatId, () -> {
+                assertEquals(1, running.computeIfAbsent(chatId, k -> new AtomicInteger()).incrementAndGet());
+                maxParallel.accumulateAndGet(parallel.incrementAndGet(), Math::max);
+                turns.computeIfAbsent(chatId, k -> Collections.synchronizedList(new ArrayList<>())).add(turn);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                parallel.decrementAndGet();
+                running.get(chatId).decrementAndGet();
+                return turn;
+            }));
+        }
+        for (CompletableFuture<Integer> future : futures) {
+            future.get();
+        }
+
+        turns.values().forEach(list -> {
+            for (int i = 1; i < list.size(); i++) {
+                assertTrue(list.get(i - 1) < list.get(i));
+            }
+        });
+        assertTrue(maxParallel.get() > 1);
+        assertEquals(0, conversationExecutor.getStats().getActiveConversations());
+        agentExecutor.destroy();
+    }
+
+    @Test
+    void rejectWhenQueueIsFull() throws Exception {
+        AgentProperties agentProperties = new AgentProperties();
+        agentProperties.getExecution().setVirtualThreads(true);
+        agentProperties.getExecution().setConversationQueueSize(1);
+        AgentExecutor agentExecutor = new AgentExecutor(agentProperties, new MockEnvironment());
+        ConversationExecutor conversationExecutor = new ConversationExecutor(agentExecutor, agentProperties);
+
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        CompletableFuture<Void> first = conversationExecutor.submit("1", release::join);
+        CompletableFuture<Void> second = conversationExecutor.submit("1", () -> null);
+        CompletableFuture<Void> third = conversationExecutor.submit("1", () -> null);
+        assertTrue(third.isCompletedExceptionally());
+        assertEquals(1, conversationExecutor.getStats().getRejected());
+
+        release.complete(null);
+        first.join();
+        second.join();
+        agentExecutor.destroy();
+    }
+
+    @Test
+    void queuedTurnsRunOnTheExecutorInSyncMode() throws Exception {
+        AgentProperties agentProperties = new AgentProperties();
+        agentProperties.getExecution().setConversationQueueSize(1000);
+        AgentExecutor agentExecutor = new AgentExecutor(agentProperties, new MockEnvironment());
+        ConversationExecutor conversationExecutor = new ConversationExecutor(agentExecutor, agentProperties);
+
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        CompletableFuture<Void> started = new CompletableFuture<>();
+        Thread first = new Thread(() -> conversationExecutor.submit("1", () -> {
+            started.complete(null);
+            return release.join();
+        }).join());
+        first.start();
+        started.join();
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            futures.add(conversationExecutor.submit("1", () -> Thread.currentThread().getStackTrace().length));
+        }
+        release.complete(null);
+        first.join();
+        int minDepth = Integer.MAX_VALUE;
+        int maxDepth = 0;
+        for (CompletableFuture<Integer> future : futures) {
+            minDepth = Math.min(minDepth, future.get());
+            maxDepth = Math.max(maxDepth, future.get());
+        }
+        // every queued turn starts on a fresh stack, not nested in the turn before it
+        assertTrue(maxDepth - minDepth < 20, minDepth + ".." + maxDepth);
+        assertEquals(0, conversationExecutor.getStats().getActiveConversations());
+        agentExecutor.destroy();
+    }
+
+    @Test
+    void endTheTurnWhenTheExecutorRejectsIt() throws Exception {
+        AgentProperties agentProperties = new AgentProperties();
+        // java 17 has no virtual threads, the executor falls back to a platform pool
+        agentProperties.getExecution().setVirtualThreads(true);
+        agentProperties.getExecution().setPlatformThreads(1);
+        agentProperties.getExecution().setQueueCapacity(1);
+        AgentExecutor agentExecutor = new AgentExecutor(agentProperties, new MockEnvironment());
+        ConversationExecutor conversationExecutor = new ConversationExecutor(agentExecutor, agentProperties);
+
+        // saturate the pool: one running task and one queued task
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        agentExecutor.execute(release::join);
+        CountDownLatch drained = new CountDownLatch(1);
+        agentExecutor.execute(drained::countDown);
+
+        CompletableFuture<String> rejected = conversationExecutor.submit("1", () -> "rejected");
+        ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertEquals(0, conversationExecutor.getStats().getActiveConversations());
+
+        release.complete(null);
+        assertTrue(drained.await(5, TimeUnit.SECONDS));
+        // the conversation is not blocked by the rejected turn
+        assertEquals("next", conversationExecutor.submit("1", () -> "next").get());
+        agentExecutor.destroy();
+    }
+}
@@ -0,0 +1,110 @@
+package com.codingapi.agent.executor;
+
+import com.codingapi.agent.properties.AgentProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelConcurrencyLimiterTest {
+
+    private static final String BASE_URL = "http://localhost:11434";
+
+    private static AgentProperties.Execution execution(int maxConcurrency) {
+        AgentProperties.Execution execution = new AgentProperties.Execution();
+        execution.setMaxConcurrency(maxConcurrency);
+        execution.setAcquireTimeout(Duration.ofMillis(100));
+        return execution;
+    }
+
+    private static ModelConcurrencyLimiter.Stats stats(ModelConcurrencyLimiter limiter, String key) {
+        return limiter.getStats().stream()
+                .filter(stats -> stats.getKey().equals(key))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    void unlimitedByDefault() {
+        ModelConcurrencyLimiter limiter = new ModelConcurrencyLimiter(execution(0), BASE_URL);
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire("qwen3");
+        }
+        assertTrue(limiter.getStats().isEmpty());
+    }
+
+    @Test
+    void timeoutWhenAllPermitsAreTaken() {
+        ModelConcurrencyLimiter limiter = new ModelConcurrencyLimiter(execution(1), BASE_URL);
+        ModelConcurrencyLimiter.Permit permit = limiter.acquire("qwen3");
+
+        RuntimeException e = assertThrows(RuntimeException.class, () -> limiter.acquire("qwen3"));
+        assertTrue(e.getMessage().contains("acquire model permit timeout"));
+        ModelConcurrencyLimiter.Stats stats = stats(limiter, "qwen3");
+        assertEquals(1, stats.getRunning());
+        assertEquals(1, stats.getAcquired());
+        assertEquals(1, stats.getRejected());
+        assertTrue(stats.getMaxWaitMillis() >= 100);
+
+        // closing twice releases once
+        permit.close();
+        permit.close();
+        try (ModelConcurrencyLimiter.Permit ignored = limiter.acquire("qwen3")) {
+            assertEquals(1, stats(limiter, "qwen3").getRunning());
+        }
+        assertEquals(0, stats(limiter, "qwen3").getRunning());
+    }
+
+    @Test
+    void waitForAReleasedPermit() throws Exception {
+        AgentProperties.Execution execution = execution(1);
+        execution.setAcquireTimeout(Duration.ofSeconds(5));
+        ModelConcurrencyLimiter limiter = new ModelConcurrencyLimiter(execution, BASE_URL);
+        ModelConcurrencyLimiter.Permit permit = limiter.acquire("qwen3");
+
+        CompletableFuture<ModelConcurrencyLimiter.Permit> waiting = CompletableFuture.supplyAsync(
+                () -> limiter.acquire("qwen3"));
+        while (stats(limiter, "qwen3").getQueueDepth() == 0) {
+            Thread.sleep(5);
+        }
+        permit.close();
+        waiting.get(5, TimeUnit.SECONDS).close();
+        assertEquals(2, stats(limiter, "qwen3").getAcquired());
+    }
+
+    @Test
+    void limitByModelThenBaseUrl() {
+        AgentProperties.Execution execution = execution(0);
+        execution.setConcurrency(Map.of("qwen3", 2, BASE_URL, 1));
+        ModelConcurrencyLimiter limiter = new ModelConcurrencyLimiter(execution, BASE_URL);
+
+        limiter.acquire("qwen3");
+        limiter.acquire("qwen3");
+        assertThrows(RuntimeException.class, () -> limiter.acquire("qwen3"));
+        // models without their own limit share the limit of the base-url
+        limiter.acquire("deepseek");
+        assertThrows(RuntimeException.class, () -> limiter.acquire("llama3"));
+
+        assertEquals(2, stats(limiter, "qwen3").getRunning());
+        assertEquals(1, stats(limiter, BASE_URL).getRunning());
+        assertEquals(2, limiter.getStats().size());
+    }
+
+    @Test
+    void defaultLimitPerModel() {
+        ModelConcurrencyLimiter limiter = new ModelConcurrencyLimiter(execution(1), null);
+
+        limiter.acquire("qwen3");
+        limiter.acquire("deepseek");
+        limiter.acquire(null);
+        assertEquals(List.of("deepseek", "default", "qwen3"), limiter.getStats().stream()
+                .map(ModelConcurrencyLimiter.Stats::getKey)
+                .sorted()
+                .toList());
+    }
+}
@@ -0,0 +1,86 @@
+package com.codingapi.agent.executor;
+
+import com.codingapi.agent.properties.AgentProperties;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.DefaultAroundAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelPermitAdvisorTest {
+
+    private static StreamAdvisor model() {
+        return new StreamAdvisor() {
+            @Override
+            public Flux<ChatClientResponse> adviseStream(ChatClientRequest chatClientRequest,
+                                                         StreamAdvisorChain streamAdvisorChain) {
+                return Flux.just(ChatClientResponse.builder()
+                        .chatResponse(ChatResponse.builder()
+                                .generations(List.of(new Generation(new AssistantMessage("hi"))))
+                                .build())
+                        .context(chatClientRequest.context())
+                        .build());
+            }
+
+            @Override
+            public String getName() {
+                return "model";
+            }
+
+            @Override
+            public int getOrder() {
+                return Integer.MAX_VALUE;
+            }
+        };
+    }
+
+    private static Flux<ChatClientResponse> stream(AgentExecutor agentExecutor) {
+        return new DefaultAroundAdvisorChain.Builder(ObservationRegistry.NOOP)
+                .pushAll(List.of(new ModelPermitAdvisor(agentExecutor), model()))
+                .build()
+                .nextStream(ChatClientRequest.builder().prompt(new Prompt("hello")).context(Map.of()).build());
+    }
+
+    private static int running(AgentExecutor agentExecutor) {
+        return agentExecutor.getStats().stream().mapToInt(ModelConcurrencyLimiter.Stats::getRunning).sum();
+    }
+
+    @Test
+    void waitForPermitWithoutBlockingTheSubscriber() throws Exception {
+        AgentProperties agentProperties = new AgentProperties();
+        agentProperties.getExecution().setMaxConcurrency(1);
+        AgentExecutor agentExecutor = new AgentExecutor(agentProperties, new MockEnvironment());
+
+        ModelConcurrencyLimiter.Permit held = agentExecutor.acquire(null);
+        long start = System.nanoTime();
+        Disposable waiting = stream(agentExecutor).subscribe();
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(1)) < 0);
+
+        // cancelling a stream that waits for its permit must not leak the permit
+        waiting.dispose();
+        held.close();
+        Thread.sleep(100);
+        assertEquals(0, running(agentExecutor));
+
+        ChatClientResponse response = stream(agentExecutor).blockLast(Duration.ofSeconds(5));
+        assertNotNull(response);
+        assertEquals("hi", response.chatResponse().getResult().getOutput().getText());
+        assertEquals(0, running(agentExecutor));
+        agentExecutor.destroy();
+    }
+}
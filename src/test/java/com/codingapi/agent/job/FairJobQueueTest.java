@@ -0,0 +1,79 @@
+package com.codingapi.agent.job;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FairJobQueueTest {
+
+    private static Job job(String id, String clientId, int priority) {
+        Job job = new Job();
+        job.setId(id);
+        job.setClientId(clientId);
+        job.setPriority(priority);
+        return job;
+    }
+
+    private static List<String> drain(FairJobQueue queue) {
+        List<String> ids = new ArrayList<>();
+        Job job;
+        while ((job = queue.poll()) != null) {
+            ids.add(job.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void clientsTakeTurns() {
+        FairJobQueue queue = new FairJobQueue();
+        for (int i = 0; i < 4; i++) {
+            queue.add(job("a" + i, "a", 0));
+        }
+        queue.add(job("b0", "b", 0));
+        queue.add(job("b1", "b", 0));
+        queue.add(job("c0", "c", 0));
+
+        assertEquals(List.of("a0", "b0", "c0", "a1", "b1", "a2", "a3"), drain(queue));
+        assertEquals(0, queue.size());
+        assertEquals(0, queue.clients());
+    }
+
+    @Test
+    void priorityWithinClient() {
+        FairJobQueue queue = new FairJobQueue();
+        queue.add(job("a0", "a", 0));
+        queue.add(job("a1", "a", 5));
+        queue.add(job("b0", "b", 0));
+        queue.add(job("b1", "b", 5));
+        queue.add(job("c0", "c", 1));
+
+        assertEquals(List.of("a1", "b1", "c0", "a0", "b0"), drain(queue));
+    }
+
+    @Test
+    void priorityDoesNotStarveOtherClients() {
+        FairJobQueue queue = new FairJobQueue();
+        for (int i = 0; i < 3; i++) {
+            queue.add(job("a" + i, "a", Integer.MAX_VALUE));
+        }
+        queue.add(job("b0", "b", 0));
+
+        assertEquals(List.of("a0", "b0", "a1", "a2"), drain(queue));
+    }
+
+    @Test
+    void removeQueued() {
+        FairJobQueue queue = new FairJobQueue();
+        Job a0 = job("a0", "a", 0);
+        queue.add(a0);
+        queue.add(job("b0", "b", 0));
+
+        assertTrue(queue.remove(a0));
+        assertFalse(queue.remove(a0));
+        assertEquals(1, queue.clients());
+        assertEquals(List.of("b0"), drain(queue));
+    }
+}
@@ -0,0 +1,133 @@
+package com.codingapi.agent.job;
+
+import com.codingapi.agent.pojo.JobRequest;
+import com.codingapi.agent.properties.AgentProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobServiceTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * answers held until the test completes them, keyed by message
+     */
+    private final Map<String, CompletableFuture<String>> answers = new ConcurrentHashMap<>();
+
+    private AgentProperties agentProperties() {
+        AgentProperties agentProperties = new AgentProperties();
+        agentProperties.getJobs().setWorkers(1);
+        agentProperties.getJobs().setDirectory(directory.toString());
+        return agentProperties;
+    }
+
+    private JobService jobService() {
+        return new JobService((chatId, message, think) -> answers.computeIfAbsent(message, k -> new CompletableFuture<>()),
+                Runnable::run,
+                agentProperties());
+    }
+
+    private static JobRequest request(String message) {
+        JobRequest request = new JobRequest();
+        request.setChatId("1");
+        request.setMessage(message);
+        return request;
+    }
+
+    private Map<Job.State, List<String>> stored() {
+        return new JobStore(directory.toString()).loadAll().stream()
+                .collect(Collectors.groupingBy(Job::getState,
+                        Collectors.mapping(Job::getMessage, Collectors.toList())));
+    }
+
+    @Test
+    void persistEveryState() throws Exception {
+        JobService jobService = jobService();
+        Job first = jobService.submit(request("first"), "a");
+        Job second = jobService.submit(request("second"), "a");
+        assertEquals(Job.State.RUNNING, jobService.get(first.getId()).getState());
+        assertEquals(Job.State.QUEUED, second.getState());
+        assertEquals(Map.of(Job.State.RUNNING, List.of("first"), Job.State.QUEUED, List.of("second")), stored());
+
+        answers.get("first").complete("answer");
+        Job done = jobService.events(first.getId()).blockLast(Duration.ofSeconds(5));
+        assertNotNull(done);
+        assertEquals(Job.State.DONE, done.getState());
+        assertEquals("answer", done.getAnswer());
+        assertEquals(Job.State.DONE, new JobStore(directory.toString()).loadAll().stream()
+                .filter(job -> job.getId().equals(first.getId())).findFirst().orElseThrow().getState());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.noneMatch(file -> file.toString().endsWith(".tmp")));
+        }
+        jobService.destroy();
+    }
+
+    @Test
+    void recoverAfterRestart() {
+        JobService jobService = jobService();
+        Job running = jobService.submit(request("running"), "a");
+        Job queued = jobService.submit(request("queued"), "a");
+        jobService.destroy();
+
+        // the running job starts over and the queued job waits behind it
+        answers.clear();
+        JobService restarted = jobService();
+        assertEquals(Job.State.RUNNING, restarted.get(running.getId()).getState());
+        assertEquals(Job.State.QUEUED, restarted.get(queued.getId()).getState());
+
+        answers.get("running").complete("answer");
+        assertEquals(Job.State.DONE, restarted.get(running.getId()).getState());
+        assertEquals(Job.State.RUNNING, restarted.get(queued.getId()).getState());
+        restarted.destroy();
+    }
+
+    @Test
+    void cancelQueuedJob() {
+        JobService jobService = jobService();
+        Job running = jobService.submit(request("running"), "a");
+        Job queued = jobService.submit(request("queued"), "a");
+
+        Job cancelled = jobService.cancel(queued.getId());
+        assertEquals(Job.State.CANCELLED, cancelled.getState());
+        assertEquals(Job.State.CANCELLED, jobService.events(queued.getId()).blockLast(Duration.ofSeconds(5)).getState());
+        // a running job runs to the end
+        assertEquals(Job.State.RUNNING, jobService.cancel(running.getId()).getState());
+        assertNull(jobService.cancel("unknown"));
+        assertEquals(Map.of(Job.State.RUNNING, List.of("running"), Job.State.CANCELLED, List.of("queued")), stored());
+
+        answers.get("running").complete("answer");
+        assertEquals(0, jobService.getStats().getQueued());
+        assertEquals(0, jobService.getStats().getRunning());
+        assertFalse(answers.containsKey("queued"));
+        jobService.destroy();
+    }
+
+    @Test
+    void dropStaleSaves() {
+        JobStore jobStore = new JobStore(directory.toString());
+        Job job = new Job();
+        job.setId("1");
+        job.setState(Job.State.DONE);
+        job.setVersion(3);
+        jobStore.save(job);
+        Job stale = job.copy();
+        stale.setState(Job.State.QUEUED);
+        stale.setVersion(1);
+        jobStore.save(stale);
+
+        assertEquals(Job.State.DONE, jobStore.loadAll().get(0).getState());
+    }
+}
@@ -0,0 +1,98 @@
+package com.codingapi.agent.memory;
+
+import com.codingapi.agent.executor.AgentExecutor;
+import com.codingapi.agent.executor.ConversationExecutor;
+import com.codingapi.agent.properties.AgentProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversationSummarizerTest {
+
+    private final ChatMemoryRepository repository = new InMemoryChatMemoryRepository();
+    private AgentExecutor agentExecutor;
+    private ConversationSummarizer summarizer;
+
+    @BeforeEach
+    void setUp() {
+        AgentProperties agentProperties = new AgentProperties();
+        agentProperties.getExecution().setVirtualThreads(true);
+        agentExecutor = new AgentExecutor(agentProperties, new MockEnvironment());
+        ChatModel chatModel = new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                return new ChatResponse(List.of(new Generation(new AssistantMessage("<think>x</think>用户叫小明"))));
+            }
+        };
+        summarizer = new ConversationSummarizer(ChatClient.create(chatModel),
+                repository,
+                agentExecutor,
+                new ConversationExecutor(agentExecutor, agentProperties),
+                20);
+    }
+
+    @AfterEach
+    void tearDown() {
+        agentExecutor.destroy();
+    }
+
+    private static List<Message> history(int turns) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < turns; i++) {
+            messages.add(new UserMessage("question " + i));
+            messages.add(new AssistantMessage("answer " + i));
+        }
+        return messages;
+    }
+
+    @Test
+    void foldOverflowIntoSummary() throws Exception {
+        repository.saveAll("chat", history(4));
+        summarizer.summarizeAsync("chat");
+
+        List<Message> messages = repository.findByConversationId("chat");
+        for (int i = 0; i < 100 && messages.get(0).getMessageType() != MessageType.SYSTEM; i++) {
+            Thread.sleep(20);
+            messages = repository.findByConversationId("chat");
+        }
+        assertEquals("用户叫小明", ConversationSummarizer.summaryOf(messages));
+        List<Message> history = ConversationSummarizer.historyOf(messages);
+        assertTrue(history.size() < 8);
+        assertEquals("answer 3", history.get(history.size() - 1).getText());
+    }
+
+    @Test
+    void skipWhenChangedMeanwhile() {
+        repository.saveAll("chat", history(4));
+        Supplier<Boolean> rewrite = summarizer.summarize("chat");
+        assertNotNull(rewrite);
+
+        repository.saveAll("chat", history(1));
+        assertFalse(rewrite.get());
+        assertEquals(2, repository.findByConversationId("chat").size());
+    }
+
+    @Test
+    void nothingToFold() {
+        repository.saveAll("chat", history(1));
+        assertNull(summarizer.summarize("chat"));
+    }
+}
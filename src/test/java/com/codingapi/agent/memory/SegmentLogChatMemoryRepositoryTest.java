@@ -0,0 +1,155 @@
+package com.codingapi.agent.memory;
+
+import com.codingapi.agent.properties.AgentProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentLogChatMemoryRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private AgentProperties.Memory memory() {
+        AgentProperties.Memory memory = new AgentProperties.Memory();
+        memory.setType(AgentProperties.MemoryType.SEGMENT_LOG);
+        memory.setDirectory(directory.toString());
+        memory.setSegmentSize(DataSize.ofKilobytes(4));
+        memory.setHotCacheSize(2);
+        return memory;
+    }
+
+    private List<Message> messages(int turn) {
+        return List.of(new UserMessage("question " + turn), new AssistantMessage("answer " + turn + " " + "x".repeat(100)));
+    }
+
+    @Test
+    void recoverAfterRestart() {
+        SegmentLogChatMemoryRepository repository = new SegmentLogChatMemoryRepository(memory());
+        for (int i = 0; i < 100; i++) {
+            repository.saveAll("chat-" + (i % 5), messages(i));
+        }
+        repository.deleteByConversationId("chat-3");
+        repository.destroy();
+
+        SegmentLogChatMemoryRepository recovered = new SegmentLogChatMemoryRepository(memory());
+        assertEquals(4, recovered.findConversationIds().size());
+        assertEquals("question 96", recovered.findByConversationId("chat-1").get(0).getText());
+        assertTrue(recovered.findByConversationId("chat-3").isEmpty());
+        recovered.destroy();
+    }
+
+    @Test
+    void compactSealedSegments() throws Exception {
+        SegmentLogChatMemoryRepository repository = new SegmentLogChatMemoryRepository(memory());
+        for (int i = 0; i < 200; i++) {
+            repository.saveAll("chat-" + (i % 3), messages(i));
+        }
+        long before = this.countSegments();
+        repository.compact();
+        assertTrue(this.countSegments() < before);
+        assertEquals("question 199", repository.findByConversationId("chat-1").get(0).getText());
+        repository.destroy();
+
+        SegmentLogChatMemoryRepository recovered = new SegmentLogChatMemoryRepository(memory());
+        assertEquals("question 198", recovered.findByConversationId("chat-0").get(0).getText());
+        recovered.destroy();
+    }
+
+    @Test
+    void deletesSurviveCompaction() {
+        SegmentLogChatMemoryRepository repository = new SegmentLogChatMemoryRepository(memory());
+        for (int i = 0; i < 2000; i++) {
+            repository.saveAll("chat-" + i, messages(i));
+        }
+        for (int i = 0; i < 2000; i += 2) {
+            repository.deleteByConversationId("chat-" + i);
+        }
+        repository.compact();
+        repository.compact();
+        assertEquals(1000, repository.findConversationIds().size());
+        repository.destroy();
+
+        SegmentLogChatMemoryRepository recovered = new SegmentLogChatMemoryRepository(memory());
+        assertEquals(1000, recovered.findConversationIds().size());
+        assertTrue(recovered.findByConversationId("chat-10").isEmpty());
+        assertEquals("question 11", recovered.findByConversationId("chat-11").get(0).getText());
+        recovered.destroy();
+    }
+
+    private long countSegments() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void readDoesNotCacheAnOlderSnapshot() {
+        AgentProperties.Memory memory = this.memory();
+        memory.setSegmentSize(DataSize.ofMegabytes(1));
+        memory.setHotCacheSize(1);
+        SegmentLogChatMemoryRepository repository = new SegmentLogChatMemoryRepository(memory);
+        repository.saveAll("chat-0", largeMessages(0));
+        repository.saveAll("chat-1", largeMessages(0));
+
+        // the readers keep evicting chat-0 from the single-entry hot cache and reading it from the log,
+        // once a reader has seen a snapshot it must never see an older one again
+        AtomicBoolean stop = new AtomicBoolean(false);
+        AtomicBoolean stale = new AtomicBoolean(false);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<CompletableFuture<Void>> readers = Stream.of("chat-0", "chat-1", "chat-0", "chat-1")
+                .map(first -> CompletableFuture.runAsync(() -> {
+                    int seen = 0;
+                    while (!stop.get()) {
+                        repository.findByConversationId(first);
+                        String text = repository.findByConversationId("chat-0").get(0).getText();
+                        int turn = Integer.parseInt(text.substring("question ".length()));
+                        if (turn < seen) {
+                            stale.set(true);
+                        }
+                        seen = turn;
+                    }
+                }, executor))
+                .toList();
+        try {
+            for (int i = 1; i < 3000 && !stale.get(); i++) {
+                repository.saveAll("chat-0", largeMessages(i));
+                assertEquals("question " + i, repository.findByConversationId("chat-0").get(0).getText());
+            }
+        } finally {
+            stop.set(true);
+            readers.forEach(CompletableFuture::join);
+            executor.shutdown();
+            repository.destroy();
+        }
+        assertFalse(stale.get());
+    }
+
+    private List<Message> largeMessages(int turn) {
+        return List.of(new UserMessage("question " + turn), new AssistantMessage("x".repeat(4000)));
+    }
+
+    @Test
+    void rejectSegmentsOverTwoGigabytes() {
+        AgentProperties.Memory memory = this.memory();
+        memory.setSegmentSize(DataSize.ofGigabytes(2));
+        assertThrows(RuntimeException.class, () -> new SegmentLogChatMemoryRepository(memory));
+    }
+}
@@ -0,0 +1,36 @@
+package com.codingapi.agent.memory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenEstimatorTest {
+
+    @Test
+    void estimate() {
+        assertEquals(0, TokenEstimator.estimate((String) null));
+        assertEquals(0, TokenEstimator.estimate(""));
+        assertEquals(1, TokenEstimator.estimate("abcd"));
+        assertEquals(2, TokenEstimator.estimate("abcde"));
+        assertEquals(2, TokenEstimator.estimate("你好"));
+        assertEquals(4, TokenEstimator.estimate("ab你好cd"));
+        assertEquals(7, TokenEstimator.estimate(new UserMessage("ab你好")));
+    }
+
+    @Test
+    void windowStart() {
+        // every message is 4 tokens of overhead plus 2 tokens of text
+        List<Message> messages = List.of(new UserMessage("你好"), new AssistantMessage("你好"),
+                new UserMessage("你好"), new AssistantMessage("你好"));
+        assertEquals(0, TokenEstimator.windowStart(messages, 24));
+        assertEquals(1, TokenEstimator.windowStart(messages, 23));
+        assertEquals(2, TokenEstimator.windowStart(messages, 12));
+        assertEquals(4, TokenEstimator.windowStart(messages, 5));
+        assertEquals(0, TokenEstimator.windowStart(List.of(), 0));
+    }
+}
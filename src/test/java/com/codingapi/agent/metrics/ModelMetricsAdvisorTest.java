@@ -0,0 +1,171 @@
+package com.codingapi.agent.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.DefaultAroundAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisor;
+import org.springframework.ai.chat.client.advisor.api.CallAdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisor;
+import org.springframework.ai.chat.client.advisor.api.StreamAdvisorChain;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelMetricsAdvisorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AgentMetrics agentMetrics = new AgentMetrics(registry);
+
+    private static ChatClientResponse chunk(String text) {
+        return ChatClientResponse.builder()
+                .chatResponse(new ChatResponse(List.of(new Generation(new AssistantMessage(text)))))
+                .context(Map.of())
+                .build();
+    }
+
+    private static ChatClientRequest request() {
+        return ChatClientRequest.builder()
+                .prompt(new Prompt("hello", ChatOptions.builder().model("qwen3").build()))
+                .context(Map.of())
+                .build();
+    }
+
+    private ChatClientResponse call(Supplier<ChatClientResponse> answer) {
+        CallAdvisor model = new CallAdvisor() {
+            @Override
+            public ChatClientResponse adviseCall(ChatClientRequest chatClientRequest, CallAdvisorChain callAdvisorChain) {
+                return answer.get();
+            }
+
+            @Override
+            public String getName() {
+                return "model";
+            }
+
+            @Override
+            public int getOrder() {
+                return Integer.MAX_VALUE;
+            }
+        };
+        return new DefaultAroundAdvisorChain.Builder(ObservationRegistry.NOOP)
+                .pushAll(List.of(new ModelMetricsAdvisor(agentMetrics, "default"), model))
+                .build()
+                .nextCall(request());
+    }
+
+    private Flux<ChatClientResponse> stream(Flux<ChatClientResponse> chunks) {
+        StreamAdvisor model = new StreamAdvisor() {
+            @Override
+            public Flux<ChatClientResponse> adviseStream(ChatClientRequest chatClientRequest,
+                                                         StreamAdvisorChain streamAdvisorChain) {
+                return chunks;
+            }
+
+            @Override
+            public String getName() {
+                return "model";
+            }
+
+            @Override
+            public int getOrder() {
+                return Integer.MAX_VALUE;
+            }
+        };
+        return new DefaultAroundAdvisorChain.Builder(ObservationRegistry.NOOP)
+                .pushAll(List.of(new ModelMetricsAdvisor(agentMetrics, "default"), model))
+                .build()
+                .nextStream(request());
+    }
+
+    private long count(String name, String outcome) {
+        return registry.get(name).tag("model", "qwen3").tag("outcome", outcome).timer().count();
+    }
+
+    @Test
+    void timeCallsByOutcome() {
+        this.call(() -> chunk("hi"));
+        assertThrows(RuntimeException.class, () -> this.call(() -> {
+            throw new RuntimeException("model down");
+        }));
+
+        assertEquals(1, count("agent.model.call.duration", "success"));
+        assertEquals(1, count("agent.model.call.duration", "error"));
+    }
+
+    @Test
+    void timeStreamsByOutcome() {
+        Flux<ChatClientResponse> chunks = Flux.just(chunk("a"), chunk("b"), chunk("c"))
+                .delayElements(Duration.ofMillis(10));
+        this.stream(chunks).blockLast();
+        assertThrows(RuntimeException.class,
+                () -> this.stream(chunks.concatWith(Flux.error(new RuntimeException("model down")))).blockLast());
+        this.stream(chunks).take(1).blockLast();
+
+        assertEquals(1, count("agent.model.stream.duration", "success"));
+        assertEquals(1, count("agent.model.stream.duration", "error"));
+        assertEquals(1, count("agent.model.stream.duration", "cancel"));
+        // every stream saw its first token
+        assertEquals(3, registry.get("agent.model.first.token").tag("model", "qwen3").timer().count());
+    }
+
+    @Test
+    void countChunksAsTokensWithoutUsage() {
+        this.stream(Flux.just(chunk("a"), chunk(""), chunk("b"), chunk("c")).delayElements(Duration.ofMillis(20)))
+                .blockLast();
+
+        DistributionSummary tokensPerSecond = registry.get("agent.model.tokens.per.second")
+                .tag("model", "qwen3")
+                .summary();
+        assertEquals(1, tokensPerSecond.count());
+        // three content chunks after the first one arrived, within a few dozen milliseconds
+        assertTrue(tokensPerSecond.totalAmount() > 3, "tokens per second:" + tokensPerSecond.totalAmount());
+        // no usage reported, no tokens are counted
+        assertEquals(0, registry.get("agent.model.tokens").tag("model", "qwen3").tag("type", "completion")
+                .counter().count());
+    }
+
+    @Test
+    void countToolErrors() {
+        ToolDefinition toolDefinition = ToolDefinition.builder()
+                .name("getTime")
+                .description("获取当前时间")
+                .inputSchema("{\"type\":\"object\"}")
+                .build();
+        TimedToolCallback toolCallback = new TimedToolCallback(new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return toolDefinition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                if (toolInput.contains("fail")) {
+                    throw new IllegalStateException("clock is broken");
+                }
+                return "12:00";
+            }
+        }, agentMetrics);
+
+        assertEquals("12:00", toolCallback.call("{}"));
+        assertThrows(IllegalStateException.class, () -> toolCallback.call("{\"fail\":true}"));
+
+        assertEquals(2, registry.get("agent.tool.duration").tag("tool", "getTime").timer().count());
+        assertEquals(1, registry.get("agent.tool.errors").tag("tool", "getTime").counter().count());
+    }
+}
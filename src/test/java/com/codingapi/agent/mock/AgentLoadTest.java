@@ -0,0 +1,97 @@
+package com.codingapi.agent.mock;
+
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * end-to-end load test against the mock model server, runs offline.
+ * excluded from the default test run, run it with {@code mvn test -Pload}
+ * and scale it with {@code -Dload.conversations=64 -Dload.turns=20}.
+ */
+@Slf4j
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class AgentLoadTest {
+
+    private static final String ANSWER = "现在是北京时间下午三点。";
+
+    private static final MockOpenAiServer SERVER = new MockOpenAiServer()
+            .timeToFirstToken(Duration.ofMillis(20))
+            .interTokenDelay(Duration.ofMillis(1))
+            .think("用户想知道时间，需要调用工具。")
+            .answer(ANSWER)
+            .toolCall(MockOpenAiServer.Reply.toolCall("getCurrentDateTime", "{\"timeZone\":\"Asia/Shanghai\"}"))
+            .start();
+
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.ai.openai.chat.base-url", SERVER::getBaseUrl);
+        registry.add("spring.ai.openai.chat.completions-path", () -> MockOpenAiServer.COMPLETIONS_PATH);
+        registry.add("codingapi.agent.memory.type", () -> "in-memory");
+    }
+
+    @AfterAll
+    static void close() {
+        SERVER.close();
+    }
+
+    private static String body(String chatId, String message) {
+        JSONObject body = new JSONObject();
+        body.put("chatId", chatId);
+        body.put("message", message);
+        body.put("think", false);
+        return body.toJSONString();
+    }
+
+    @Test
+    void chatLoad() {
+        int conversations = Integer.getInteger("load.conversations", 8);
+        int turns = Integer.getInteger("load.turns", 3);
+        LoadDriver loadDriver = new LoadDriver(URI.create("http://localhost:" + port + "/agent/chat"),
+                Duration.ofMinutes(1));
+
+        LoadDriver.Report report = loadDriver.run(conversations, turns,
+                (conversation, turn) -> body("load-" + conversation, "现在几点了？ " + turn));
+        log.info("load report:{}", report);
+
+        assertEquals(conversations * turns, report.getRequests());
+        assertEquals(0, report.getErrors());
+    }
+
+    @Test
+    void chatStream() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/agent/chat/stream"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body("stream", "现在几点了？")))
+                .build();
+        HttpResponse<String> response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        String text = response.body().lines()
+                .filter(line -> line.startsWith("data:"))
+                .map(line -> line.substring("data:".length()))
+                .reduce("", String::concat);
+        assertTrue(text.contains(ANSWER), text);
+        assertFalse(text.contains("<think>"), text);
+    }
+}
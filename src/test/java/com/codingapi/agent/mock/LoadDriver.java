@@ -0,0 +1,127 @@
+package com.codingapi.agent.mock;
+
+import com.alibaba.fastjson.JSON;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+/**
+ * load driver that runs concurrent conversations against an agent endpoint.
+ * every conversation sends its requests one after the other, as a user would, with its own chat id.
+ */
+public class LoadDriver {
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private final URI uri;
+    private final Duration requestTimeout;
+
+    public LoadDriver(URI uri, Duration requestTimeout) {
+        this.uri = uri;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * run the load
+     *
+     * @param conversations concurrent conversations
+     * @param turns         requests per conversation
+     * @param body          request body of a conversation and turn
+     * @return latency and throughput report
+     */
+    public Report run(int conversations, int turns, BiFunction<Integer, Integer, String> body) {
+        ExecutorService executor = Executors.newFixedThreadPool(conversations);
+        try {
+            long start = System.nanoTime();
+            List<Future<long[]>> futures = new ArrayList<>(conversations);
+            for (int i = 0; i < conversations; i++) {
+                int conversation = i;
+                futures.add(executor.submit(() -> this.conversation(conversation, turns, body)));
+            }
+            long[] latencies = new long[conversations * turns];
+            int count = 0;
+            for (Future<long[]> future : futures) {
+                for (long latency : future.get()) {
+                    latencies[count++] = latency;
+                }
+            }
+            return Report.of(latencies, System.nanoTime() - start);
+        } catch (Exception e) {
+            throw new RuntimeException("load run error", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return latency in nanos of every turn, -1 for a failed turn
+     */
+    private long[] conversation(int conversation, int turns, BiFunction<Integer, Integer, String> body) {
+        long[] latencies = new long[turns];
+        for (int turn = 0; turn < turns; turn++) {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(requestTimeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body.apply(conversation, turn)))
+                    .build();
+            long start = System.nanoTime();
+            try {
+                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                latencies[turn] = response.statusCode() == 200 ? System.nanoTime() - start : -1;
+            } catch (Exception e) {
+                latencies[turn] = -1;
+            }
+        }
+        return latencies;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Report {
+
+        private final int requests;
+        private final int errors;
+        private final long p50Millis;
+        private final long p99Millis;
+        private final long maxMillis;
+        private final double throughput;
+
+        private static Report of(long[] latencies, long elapsedNanos) {
+            long[] succeeded = Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+            int errors = latencies.length - succeeded.length;
+            return new Report(latencies.length,
+                    errors,
+                    percentile(succeeded, 0.50),
+                    percentile(succeeded, 0.99),
+                    succeeded.length == 0 ? 0 : succeeded[succeeded.length - 1] / 1_000_000,
+                    succeeded.length * 1_000_000_000.0 / elapsedNanos);
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            return JSON.toJSONString(this);
+        }
+    }
+}
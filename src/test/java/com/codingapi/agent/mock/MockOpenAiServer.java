@@ -0,0 +1,322 @@
+package com.codingapi.agent.mock;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * embeddable stand-in for an OpenAI compatible {@code /v1/chat/completions} endpoint, blocking and streamed.
+ * latency (time to first token, inter token delay), {@code <think>} blocks and tool calls are configurable,
+ * and a script can decide the reply per request.
+ */
+@Slf4j
+public class MockOpenAiServer implements AutoCloseable {
+
+    public static final String COMPLETIONS_PATH = "/v1/chat/completions";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @Getter
+    private final AtomicLong requests = new AtomicLong();
+
+    private volatile Duration timeToFirstToken = Duration.ZERO;
+    private volatile Duration interTokenDelay = Duration.ZERO;
+    private volatile int tokenSize = 4;
+    private volatile String think;
+    private volatile String answer = "ok";
+    private volatile Reply toolCall;
+    private volatile Function<JSONObject, Reply> script = this::defaultScript;
+
+    public MockOpenAiServer() {
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        } catch (IOException e) {
+            throw new RuntimeException("mock server create error", e);
+        }
+        this.server.setExecutor(executor);
+        this.server.createContext(COMPLETIONS_PATH, this::handle);
+    }
+
+    public MockOpenAiServer start() {
+        server.start();
+        return this;
+    }
+
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    public MockOpenAiServer timeToFirstToken(Duration timeToFirstToken) {
+        this.timeToFirstToken = timeToFirstToken;
+        return this;
+    }
+
+    public MockOpenAiServer interTokenDelay(Duration interTokenDelay) {
+        this.interTokenDelay = interTokenDelay;
+        return this;
+    }
+
+    /**
+     * chars per streamed chunk
+     */
+    public MockOpenAiServer tokenSize(int tokenSize) {
+        this.tokenSize = tokenSize;
+        return this;
+    }
+
+    /**
+     * content of a {@code <think>} block put before every text answer, null for none
+     */
+    public MockOpenAiServer think(String think) {
+        this.think = think;
+        return this;
+    }
+
+    public MockOpenAiServer answer(String answer) {
+        this.answer = answer;
+        return this;
+    }
+
+    /**
+     * tool call answered to the first turn of a request that carries tools, null for none
+     */
+    public MockOpenAiServer toolCall(Reply toolCall) {
+        this.toolCall = toolCall;
+        return this;
+    }
+
+    /**
+     * decide the reply from the request body, replaces the default answer and tool call behavior
+     */
+    public MockOpenAiServer script(Function<JSONObject, Reply> script) {
+        this.script = script;
+        return this;
+    }
+
+    /**
+     * answers the configured tool call until the tool result is in the conversation, then the text answer
+     */
+    private Reply defaultScript(JSONObject request) {
+        JSONArray messages = request.getJSONArray("messages");
+        boolean toolResult = messages != null && !messages.isEmpty()
+                && "tool".equals(messages.getJSONObject(messages.size() - 1).getString("role"));
+        if (toolCall != null && !toolResult && (toolCall.isText() || hasTools(request))) {
+            return toolCall;
+        }
+        return Reply.text(think != null ? "<think>\n" + think + "\n</think>\n\n" + answer : answer);
+    }
+
+    private static boolean hasTools(JSONObject request) {
+        JSONArray tools = request.getJSONArray("tools");
+        return tools != null && !tools.isEmpty();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            JSONObject request = JSONObject.parseObject(IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8));
+            Reply reply = script.apply(request);
+            String model = request.getString("model");
+            sleep(timeToFirstToken);
+            if (request.getBooleanValue("stream")) {
+                this.stream(exchange, model, reply);
+            } else {
+                this.call(exchange, model, reply);
+            }
+        } catch (RuntimeException e) {
+            log.warn("mock server error", e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void call(HttpExchange exchange, String model, Reply reply) throws IOException {
+        List<String> tokens = tokens(reply.getContent());
+        sleep(interTokenDelay.multipliedBy(Math.max(0, tokens.size() - 1)));
+
+        JSONObject message = new JSONObject();
+        message.put("role", "assistant");
+        message.put("content", reply.isToolCall() ? null : reply.getContent());
+        if (reply.isToolCall()) {
+            message.put("tool_calls", toolCalls(reply, false));
+        }
+        JSONObject choice = new JSONObject();
+        choice.put("index", 0);
+        choice.put("message", message);
+        choice.put("finish_reason", reply.isToolCall() ? "tool_calls" : "stop");
+
+        JSONObject response = completion(model, "chat.completion", choice);
+        response.put("usage", usage(tokens.size()));
+        byte[] body = response.toJSONString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private void stream(HttpExchange exchange, String model, Reply reply) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream output = exchange.getResponseBody();
+
+        List<String> tokens = tokens(reply.getContent());
+        if (reply.isToolCall()) {
+            JSONObject delta = new JSONObject();
+            delta.put("role", "assistant");
+            delta.put("tool_calls", toolCalls(reply, true));
+            write(output, completion(model, "chat.completion.chunk", chunk(delta, null)));
+        } else {
+            for (int i = 0; i < tokens.size(); i++) {
+                if (i > 0) {
+                    sleep(interTokenDelay);
+                }
+                JSONObject delta = new JSONObject();
+                delta.put("role", "assistant");
+                delta.put("content", tokens.get(i));
+                write(output, completion(model, "chat.completion.chunk", chunk(delta, null)));
+            }
+        }
+        JSONObject last = completion(model, "chat.completion.chunk",
+                chunk(new JSONObject(), reply.isToolCall() ? "tool_calls" : "stop"));
+        last.put("usage", usage(tokens.size()));
+        write(output, last);
+        output.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        output.flush();
+    }
+
+    private List<String> tokens(String content) {
+        List<String> tokens = new ArrayList<>();
+        if (content == null) {
+            return tokens;
+        }
+        for (int i = 0; i < content.length(); i += tokenSize) {
+            tokens.add(content.substring(i, Math.min(content.length(), i + tokenSize)));
+        }
+        return tokens;
+    }
+
+    private static JSONArray toolCalls(Reply reply, boolean stream) {
+        JSONObject function = new JSONObject();
+        function.put("name", reply.getToolName());
+        function.put("arguments", reply.getToolArguments());
+        JSONObject toolCall = new JSONObject();
+        if (stream) {
+            toolCall.put("index", 0);
+        }
+        toolCall.put("id", "call_" + UUID.randomUUID().toString().replace("-", ""));
+        toolCall.put("type", "function");
+        toolCall.put("function", function);
+        JSONArray toolCalls = new JSONArray();
+        toolCalls.add(toolCall);
+        return toolCalls;
+    }
+
+    private static JSONObject chunk(JSONObject delta, String finishReason) {
+        JSONObject choice = new JSONObject();
+        choice.put("index", 0);
+        choice.put("delta", delta);
+        choice.put("finish_reason", finishReason);
+        return choice;
+    }
+
+    private static JSONObject completion(String model, String object, JSONObject choice) {
+        JSONObject completion = new JSONObject();
+        completion.put("id", "chatcmpl-mock");
+        completion.put("object", object);
+        completion.put("created", System.currentTimeMillis() / 1000);
+        completion.put("model", model);
+        JSONArray choices = new JSONArray();
+        choices.add(choice);
+        completion.put("choices", choices);
+        return completion;
+    }
+
+    private static JSONObject usage(int completionTokens) {
+        JSONObject usage = new JSONObject();
+        usage.put("prompt_tokens", 100);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", 100 + completionTokens);
+        return usage;
+    }
+
+    private static void write(OutputStream output, JSONObject data) throws IOException {
+        output.write(("data: " + data.toJSONString() + "\n\n").getBytes(StandardCharsets.UTF_8));
+        output.flush();
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * reply of the mock model
+     */
+    @Getter
+    public static class Reply {
+
+        private final String content;
+        private final String toolName;
+        private final String toolArguments;
+        private final boolean text;
+
+        private Reply(String content, String toolName, String toolArguments, boolean text) {
+            this.content = content;
+            this.toolName = toolName;
+            this.toolArguments = toolArguments;
+            this.text = text;
+        }
+
+        public static Reply text(String content) {
+            return new Reply(content, null, null, true);
+        }
+
+        /**
+         * native tool call, sent in the {@code tool_calls} field
+         */
+        public static Reply toolCall(String toolName, String toolArguments) {
+            return new Reply(null, toolName, toolArguments, false);
+        }
+
+        /**
+         * tool call as a json answer, the format the deepseek tools advisor asks for
+         */
+        public static Reply jsonToolCall(String toolName, String toolArguments) {
+            return text("[{\"tool\":\"" + toolName + "\",\"parameters\":" + toolArguments + "}]");
+        }
+
+        public boolean isToolCall() {
+            return toolName != null;
+        }
+    }
+}
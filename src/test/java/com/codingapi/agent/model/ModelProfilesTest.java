@@ -0,0 +1,48 @@
+package com.codingapi.agent.model;
+
+import com.codingapi.agent.properties.AgentProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelProfilesTest {
+
+    @Test
+    void detectFromName() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("spring.ai.openai.chat.options.model", "qwen3:4b");
+        ModelProfiles modelProfiles = new ModelProfiles(new AgentProperties(), environment);
+
+        ModelProfile qwen3 = modelProfiles.resolve(null);
+        assertEquals("qwen3:4b", qwen3.getModel());
+        assertTrue(qwen3.isThinkTags());
+        assertTrue(qwen3.isThinkSwitch());
+        assertTrue(qwen3.isNativeTools());
+        assertSame(qwen3, modelProfiles.resolve("qwen3:4b"));
+
+        ModelProfile deepseek = modelProfiles.resolve("deepseek-r1:7b");
+        assertTrue(deepseek.isThinkTags());
+        assertFalse(deepseek.isThinkSwitch());
+        assertFalse(deepseek.isNativeTools());
+
+        ModelProfile llama = modelProfiles.resolve("llama3.2:3b");
+        assertFalse(llama.isThinkTags());
+        assertTrue(llama.isNativeTools());
+    }
+
+    @Test
+    void configuredOverridesName() {
+        AgentProperties agentProperties = new AgentProperties();
+        AgentProperties.ModelProfile configured = new AgentProperties.ModelProfile();
+        configured.setThinkSwitch(false);
+        configured.setContextTokens(32768);
+        agentProperties.getModels().put("qwen3:0.6b", configured);
+        ModelProfiles modelProfiles = new ModelProfiles(agentProperties, new MockEnvironment());
+
+        ModelProfile profile = modelProfiles.resolve("qwen3:0.6b");
+        assertTrue(profile.isThinkTags());
+        assertFalse(profile.isThinkSwitch());
+        assertEquals(32768, profile.getContextTokens());
+    }
+}
@@ -0,0 +1,72 @@
+package com.codingapi.agent.model;
+
+import com.codingapi.agent.metrics.AgentMetrics;
+import com.codingapi.agent.properties.AgentProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelRouterTest {
+
+    private static ModelRouter modelRouter(AgentProperties agentProperties) {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("spring.ai.openai.chat.options.model", "qwen3:4b");
+        ChatModel chatModel = prompt -> null;
+        return new ModelRouter(new ModelProfiles(agentProperties, environment),
+                chatModel,
+                new AgentMetrics(new SimpleMeterRegistry()),
+                agentProperties);
+    }
+
+    private static AgentProperties enabled() {
+        AgentProperties agentProperties = new AgentProperties();
+        agentProperties.getRouter().setEnabled(true);
+        agentProperties.getRouter().setSimpleModel("qwen3:0.6b");
+        agentProperties.getRouter().setMaxSimpleChars(10);
+        AgentProperties.ModelProfile simple = new AgentProperties.ModelProfile();
+        simple.setContextTokens(1000);
+        agentProperties.getModels().put("qwen3:0.6b", simple);
+        return agentProperties;
+    }
+
+    @Test
+    void routeSimpleTurns() {
+        ModelRouter modelRouter = modelRouter(enabled());
+
+        ModelRouter.Route simple = modelRouter.route("今天几号?", 100, false, false);
+        assertTrue(simple.isSimple());
+        assertEquals("qwen3:0.6b", simple.getProfile().getModel());
+        // the tool index does not match the paraphrase, the simple model is still offered the tools
+        assertTrue(simple.isOfferTools());
+
+        assertFalse(modelRouter.route("今天几号?", 100, true, false).isSimple());
+        assertFalse(modelRouter.route("今天几号?", 100, false, true).isSimple());
+        assertFalse(modelRouter.route("请帮我总结一下这篇很长的文章", 100, false, false).isSimple());
+        assertFalse(modelRouter.route("今天几号?", 1001, false, false).isSimple());
+        assertEquals(2, modelRouter.getStats().size());
+    }
+
+    @Test
+    void simpleTurnsWithoutTools() {
+        AgentProperties agentProperties = enabled();
+        agentProperties.getRouter().setSimpleTools(false);
+        ModelRouter modelRouter = modelRouter(agentProperties);
+
+        assertFalse(modelRouter.route("你好", 10, false, false).isOfferTools());
+        assertTrue(modelRouter.route("你好", 10, true, false).isOfferTools());
+    }
+
+    @Test
+    void disabledRoutesEverythingToTheComplexModel() {
+        ModelRouter modelRouter = modelRouter(new AgentProperties());
+
+        ModelRouter.Route route = modelRouter.route("你好", 10, false, false);
+        assertFalse(route.isSimple());
+        assertTrue(route.isOfferTools());
+        assertNull(route.newOptions());
+        assertEquals("qwen3:4b", route.getProfile().getModel());
+    }
+}
@@ -0,0 +1,128 @@
+package com.codingapi.agent.routing;
+
+import com.codingapi.agent.properties.AgentProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingChatModelTest {
+
+    private static final String MODEL = "qwen3:4b";
+
+    private static class StubChatModel implements ChatModel {
+
+        private final String name;
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile Duration delay = Duration.ZERO;
+        private volatile boolean fail;
+
+        private StubChatModel(String name) {
+            this.name = name;
+        }
+
+        private ChatResponse response() {
+            return new ChatResponse(List.of(new Generation(new AssistantMessage(name))));
+        }
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            calls.incrementAndGet();
+            if (fail) {
+                throw new RuntimeException("endpoint down:" + name);
+            }
+            return this.response();
+        }
+
+        @Override
+        public Flux<ChatResponse> stream(Prompt prompt) {
+            calls.incrementAndGet();
+            if (fail) {
+                return Flux.error(new RuntimeException("endpoint down:" + name));
+            }
+            return Flux.just(this.response()).delaySubscription(delay);
+        }
+    }
+
+    private static RoutingChatModel routingChatModel(AgentProperties.Routing routing, StubChatModel... models) {
+        List<ModelEndpoint> endpoints = new ArrayList<>();
+        for (StubChatModel model : models) {
+            endpoints.add(new ModelEndpoint(model.name, model, routing));
+        }
+        EndpointPool pool = new EndpointPool(MODEL, endpoints, routing);
+        return new RoutingChatModel(new StubChatModel("default"), Map.of(MODEL, pool), routing, MODEL);
+    }
+
+    private static String text(ChatResponse chatResponse) {
+        return chatResponse.getResult().getOutput().getText();
+    }
+
+    @Test
+    void leastOutstanding() {
+        StubChatModel a = new StubChatModel("a");
+        StubChatModel b = new StubChatModel("b");
+        a.delay = Duration.ofMinutes(1);
+        b.delay = Duration.ofMinutes(1);
+        RoutingChatModel routingChatModel = routingChatModel(new AgentProperties.Routing(), a, b);
+
+        Disposable first = routingChatModel.stream(new Prompt("hello")).subscribe();
+        Disposable second = routingChatModel.stream(new Prompt("hello")).subscribe();
+        assertEquals(1, a.calls.get());
+        assertEquals(1, b.calls.get());
+        first.dispose();
+        second.dispose();
+        routingChatModel.getStats().forEach(stats -> assertEquals(0, stats.getOutstanding()));
+    }
+
+    @Test
+    void ejectFailedEndpoint() {
+        AgentProperties.Routing routing = new AgentProperties.Routing();
+        routing.setFailureThreshold(2);
+        StubChatModel a = new StubChatModel("a");
+        StubChatModel b = new StubChatModel("b");
+        a.fail = true;
+        RoutingChatModel routingChatModel = routingChatModel(routing, a, b);
+
+        for (int i = 0; i < 10; i++) {
+            try {
+                routingChatModel.call(new Prompt("hello"));
+            } catch (RuntimeException ignored) {
+            }
+        }
+        assertEquals(2, a.calls.get());
+        assertEquals("b", text(routingChatModel.call(new Prompt("hello"))));
+    }
+
+    @Test
+    void hedgeSlowStream() {
+        AgentProperties.Routing routing = new AgentProperties.Routing();
+        routing.setHedging(true);
+        routing.setHedgeMinSamples(1);
+        routing.setHedgeMinDelay(Duration.ofMillis(50));
+        StubChatModel a = new StubChatModel("a");
+        StubChatModel b = new StubChatModel("b");
+        RoutingChatModel routingChatModel = routingChatModel(routing, a, b);
+        routingChatModel.stream(new Prompt("hello")).blockLast();
+
+        a.delay = Duration.ofMinutes(1);
+        for (int i = 0; i < 2; i++) {
+            long start = System.nanoTime();
+            ChatResponse chatResponse = routingChatModel.stream(new Prompt("hello")).blockLast(Duration.ofSeconds(5));
+            assertEquals("b", text(chatResponse));
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(1)) < 0);
+        }
+        routingChatModel.getStats().forEach(stats -> assertEquals(0, stats.getOutstanding()));
+    }
+}
@@ -0,0 +1,129 @@
+package com.codingapi.agent.service;
+
+import com.codingapi.agent.pojo.ChatBatchResult;
+import com.codingapi.agent.pojo.ChatRequest;
+import com.codingapi.agent.properties.AgentProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatBatchExecutorTest {
+
+    private static ChatRequest request(String chatId, String message) {
+        ChatRequest request = new ChatRequest();
+        request.setChatId(chatId);
+        request.setMessage(message);
+        return request;
+    }
+
+    @Test
+    void emitResultsAsTheyFinish() {
+        AgentProperties.Batch batch = new AgentProperties.Batch();
+        Set<String> cleared = ConcurrentHashMap.newKeySet();
+        ChatBatchExecutor batchExecutor = new ChatBatchExecutor(batch,
+                (chatId, request) -> switch (request.getMessage()) {
+                    case "slow" -> Flux.just("slow ", "answer").delayElements(Duration.ofMillis(200));
+                    case "fail" -> Flux.error(new RuntimeException("model error"));
+                    default -> Flux.just("fast ", "answer");
+                },
+                cleared::add);
+
+        List<ChatBatchResult> results = batchExecutor.execute(List.of(request("1", "slow"),
+                        request(null, "fast"),
+                        request("3", "fail")))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertNotNull(results);
+        assertEquals(List.of(1, 2, 0), results.stream().map(ChatBatchResult::getIndex).toList());
+        assertEquals("fast answer", results.get(0).getAnswer());
+        assertEquals("model error", results.get(1).getError());
+        assertNull(results.get(1).getAnswer());
+        assertEquals("slow answer", results.get(2).getAnswer());
+        // only the throwaway conversation is cleared
+        assertEquals(Set.of(results.get(0).getChatId()), cleared);
+    }
+
+    @Test
+    void cancelRemainingRequests() throws Exception {
+        AgentProperties.Batch batch = new AgentProperties.Batch();
+        batch.setParallelism(2);
+        AtomicInteger started = new AtomicInteger();
+        AtomicInteger cancelled = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(2);
+        ChatBatchExecutor batchExecutor = new ChatBatchExecutor(batch,
+                (chatId, request) -> Flux.<String>never()
+                        .doOnSubscribe(subscription -> {
+                            started.incrementAndGet();
+                            running.countDown();
+                        })
+                        .doOnCancel(cancelled::incrementAndGet),
+                chatId -> {
+                });
+        List<ChatRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            requests.add(request(String.valueOf(i), "hello"));
+        }
+
+        Disposable subscription = batchExecutor.execute(requests).subscribe();
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        subscription.dispose();
+        assertEquals(2, started.get());
+        assertEquals(2, cancelled.get());
+    }
+
+    @Test
+    void rejectedRequestsGetAnErrorResult() {
+        AgentProperties.Batch batch = new AgentProperties.Batch();
+        batch.setParallelism(1);
+        ChatBatchExecutor batchExecutor = new ChatBatchExecutor(batch,
+                (chatId, request) -> Flux.just(request.getMessage()),
+                chatId -> {
+                });
+        AtomicInteger admitted = new AtomicInteger();
+
+        List<ChatBatchResult> results = batchExecutor.execute(List.of(request("1", "a"),
+                                request("2", "b"),
+                                request("3", "c")),
+                        (request, answer) -> {
+                            // one permit, the batch items are admitted one by one
+                            if (admitted.incrementAndGet() > 1) {
+                                throw new RuntimeException("client rate exceeded:" + request.getChatId());
+                            }
+                            return answer.get();
+                        })
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertNotNull(results);
+        assertEquals(3, admitted.get());
+        assertEquals("a", results.get(0).getAnswer());
+        assertEquals("client rate exceeded:2", results.get(1).getError());
+        assertEquals("client rate exceeded:3", results.get(2).getError());
+    }
+
+    @Test
+    void rejectOversizedBatch() {
+        AgentProperties.Batch batch = new AgentProperties.Batch();
+        batch.setMaxSize(1);
+        ChatBatchExecutor batchExecutor = new ChatBatchExecutor(batch, (chatId, request) -> Flux.empty(), chatId -> {
+        });
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> batchExecutor.execute(List.of(request("1", "a"), request("2", "b"))));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+    }
+}
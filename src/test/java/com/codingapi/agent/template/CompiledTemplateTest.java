@@ -0,0 +1,26 @@
+package com.codingapi.agent.template;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledTemplateTest {
+
+    @Test
+    void render() {
+        CompiledTemplate template = CompiledTemplate.compile("{instructions}\nSUMMARY:{summary}\nMEMORY:\n{memory}");
+        assertEquals(Set.of("instructions", "summary", "memory"), template.getPlaceholders());
+        assertEquals("你好\nSUMMARY:\nMEMORY:\nUSER:hi",
+                template.render(Map.of("instructions", "你好", "memory", "USER:hi")));
+    }
+
+    @Test
+    void keepBracesWithoutName() {
+        CompiledTemplate template = CompiledTemplate.compile("json {\"a\": {x}} {} {y");
+        assertEquals(Set.of("x"), template.getPlaceholders());
+        assertEquals("json {\"a\": 1} {} {y", template.render(Map.of("x", "1")));
+    }
+}
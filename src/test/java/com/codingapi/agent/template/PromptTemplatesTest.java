@@ -0,0 +1,44 @@
+package com.codingapi.agent.template;
+
+import com.codingapi.agent.properties.AgentProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptTemplatesTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reloadChangedFile() throws Exception {
+        Path system = directory.resolve("system.txt");
+        Path memory = directory.resolve("memory.txt");
+        Files.writeString(system, "v1 {instructions}", StandardCharsets.UTF_8);
+        Files.writeString(memory, "{memory}", StandardCharsets.UTF_8);
+        AgentProperties agentProperties = new AgentProperties();
+        agentProperties.setDefaultSystemTemplateFile("file:" + system);
+        agentProperties.setDefaultPromptMemoryTemplateFile("file:" + memory);
+        PromptTemplates promptTemplates = new PromptTemplates(agentProperties);
+        try {
+            assertEquals("v1 hi", promptTemplates.system().render(Map.of("instructions", "hi")));
+
+            Files.writeString(system, "v2 {instructions}", StandardCharsets.UTF_8);
+            long deadline = System.currentTimeMillis() + 10000;
+            while (!promptTemplates.system().render(Map.of("instructions", "hi")).equals("v2 hi")
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals("v2 hi", promptTemplates.system().render(Map.of("instructions", "hi")));
+            assertEquals("m", promptTemplates.memory().render(Map.of("memory", "m")));
+        } finally {
+            promptTemplates.destroy();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.codingapi.agent.tools;
+
+import com.codingapi.agent.properties.AgentProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.DefaultToolCallingManager;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.DefaultToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelToolCallingManagerTest {
+
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    private static ToolCallback tool(String name, Function<String, String> call) {
+        ToolDefinition toolDefinition = ToolDefinition.builder()
+                .name(name)
+                .description(name)
+                .inputSchema("{\"type\":\"object\",\"properties\":{}}")
+                .build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return toolDefinition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return call.apply(toolInput);
+            }
+        };
+    }
+
+    private ParallelToolCallingManager manager(boolean alwaysThrow) {
+        AgentProperties.Tools tools = new AgentProperties.Tools();
+        tools.setCallTimeout(Duration.ofMillis(200));
+        return new ParallelToolCallingManager(DefaultToolCallingManager.builder().build(),
+                executorService,
+                new DefaultToolExecutionExceptionProcessor(alwaysThrow),
+                tools);
+    }
+
+    private static ToolExecutionResult execute(ParallelToolCallingManager manager, ToolCallback... toolCallbacks) {
+        Prompt prompt = new Prompt(List.of(new UserMessage("hello")), ToolCallingChatOptions.builder()
+                .toolCallbacks(toolCallbacks)
+                .build());
+        List<AssistantMessage.ToolCall> toolCalls = Arrays.stream(toolCallbacks)
+                .map(toolCallback -> new AssistantMessage.ToolCall(toolCallback.getToolDefinition().name(),
+                        "function", toolCallback.getToolDefinition().name(), "{}"))
+                .toList();
+        AssistantMessage assistantMessage = new AssistantMessage("", Map.of(), toolCalls);
+        return manager.executeToolCalls(prompt, new ChatResponse(List.of(new Generation(assistantMessage))));
+    }
+
+    private static List<String> responses(ToolExecutionResult result) {
+        ToolResponseMessage message = (ToolResponseMessage) result.conversationHistory()
+                .get(result.conversationHistory().size() - 1);
+        return message.getResponses().stream().map(ToolResponseMessage.ToolResponse::responseData).toList();
+    }
+
+    @Test
+    void resultsInCallOrder() {
+        ToolExecutionResult result = execute(manager(false),
+                tool("slow", input -> {
+                    sleep(100);
+                    return "slow";
+                }),
+                tool("fast", input -> "fast"));
+        assertEquals(List.of("slow", "fast"), responses(result));
+    }
+
+    @Test
+    void timeoutInterruptsTool() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        ToolExecutionResult result = execute(manager(false),
+                tool("hang", input -> {
+                    try {
+                        Thread.sleep(60_000);
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                    }
+                    return "late";
+                }));
+        assertEquals(List.of("tool call timeout"), responses(result));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void errorsGoThroughExceptionProcessor() {
+        ToolCallback failing = tool("failing", input -> {
+            throw new IllegalStateException("service down");
+        });
+        assertEquals(List.of("service down"), responses(execute(manager(false), failing)));
+
+        ToolExecutionException exception = assertThrows(ToolExecutionException.class,
+                () -> execute(manager(true), failing));
+        assertEquals("failing", exception.getToolDefinition().name());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
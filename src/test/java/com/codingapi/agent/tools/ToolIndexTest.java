@@ -0,0 +1,73 @@
+package com.codingapi.agent.tools;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolIndexTest {
+
+    private static ToolCallback tool(String name, String description, String parameterDescription) {
+        ToolDefinition toolDefinition = ToolDefinition.builder()
+                .name(name)
+                .description(description)
+                .inputSchema("{\"type\":\"object\",\"properties\":{\"arg0\":{\"type\":\"string\",\"description\":\""
+                        + parameterDescription + "\"}}}")
+                .build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return toolDefinition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return "";
+            }
+        };
+    }
+
+    private final ToolIndex toolIndex = new ToolIndex(new ToolCallback[]{
+            tool("getCurrentDateTime", "获取当前时间的函数 返回的时间格式为yyyy-MM-dd HH:mm:ss", "时区"),
+            tool("getWeather", "查询城市的天气", "城市"),
+            tool("sendMail", "发送邮件给联系人", "收件人"),
+            tool("queryOrder", "查询订单的物流状态", "订单号"),
+    });
+
+    private static List<String> names(ToolIndex.Selection selection) {
+        return selection.getToolCallbacks().stream().map(tool -> tool.getToolDefinition().name()).toList();
+    }
+
+    @Test
+    void selectRelevantTools() {
+        assertEquals("getWeather", names(toolIndex.search("新加坡明天的天气怎么样", 1)).get(0));
+        assertEquals("getCurrentDateTime", names(toolIndex.search("现在几点了，当前时间是多少", 1)).get(0));
+        assertEquals("sendMail", names(toolIndex.search("please send a mail to lorne", 1)).get(0));
+    }
+
+    @Test
+    void boundedByTopK() {
+        ToolIndex.Selection selection = toolIndex.search("查询订单和天气", 2);
+        assertEquals(2, selection.getToolCallbacks().size());
+        assertTrue(names(selection).containsAll(List.of("getWeather", "queryOrder")));
+        assertTrue(selection.getSavedTokens() > 0);
+        assertTrue(selection.isMatched());
+    }
+
+    @Test
+    void offerEveryToolWhenNoneMatches() {
+        ToolIndex.Selection selection = toolIndex.search("hello", 2);
+        assertFalse(selection.isMatched());
+        assertEquals(4, selection.getToolCallbacks().size());
+        assertEquals(0, selection.getSavedTokens());
+    }
+
+    @Test
+    void terms() {
+        assertEquals(List.of("get", "current", "date", "time"), ToolIndex.terms("getCurrentDateTime"));
+        assertEquals(List.of("天", "天气", "气"), ToolIndex.terms("天气"));
+    }
+}
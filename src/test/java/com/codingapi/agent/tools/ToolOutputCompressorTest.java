@@ -0,0 +1,89 @@
+package com.codingapi.agent.tools;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.codingapi.agent.memory.TokenEstimator;
+import com.codingapi.agent.properties.AgentProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.ToolCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolOutputCompressorTest {
+
+    @Test
+    void projectJson() {
+        List<Map<String, Object>> orders = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            orders.add(Map.of("id", i, "customer", "customer " + i, "note", "x".repeat(1000)));
+        }
+        String output = JSON.toJSONString(Map.of("total", 500, "orders", orders));
+        ToolOutputCompressor compressor = new ToolOutputCompressor(2000, 10);
+
+        String compressed = compressor.compress(output);
+        assertTrue(compressor.fits(compressed));
+        JSONObject json = JSON.parseObject(compressed);
+        assertEquals(500, json.getIntValue("total"));
+        JSONArray items = json.getJSONArray("orders");
+        assertEquals("customer 0", items.getJSONObject(0).getString("customer"));
+        assertTrue(items.getString(items.size() - 1).contains("more items"));
+    }
+
+    @Test
+    void keepHeadAndTailOfText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        ToolOutputCompressor compressor = new ToolOutputCompressor(200, 10);
+
+        String compressed = compressor.compress(text.toString());
+        assertTrue(TokenEstimator.estimate(compressed) <= 200);
+        assertTrue(compressed.startsWith("line 0\n"));
+        assertTrue(compressed.endsWith("line 4999\n"));
+        assertTrue(compressed.contains("characters omitted"));
+        assertEquals("short", compressor.compress("short"));
+    }
+
+    @Test
+    void pageThroughStoredResult() {
+        AgentProperties agentProperties = new AgentProperties();
+        agentProperties.getTools().setResultTokenBudget(100);
+        ToolResultStore toolResultStore = new ToolResultStore(agentProperties);
+        String payload = "0123456789".repeat(200);
+
+        String ref = toolResultStore.put("chat-1", payload);
+        ToolResultStore.Page first = toolResultStore.page("chat-1", ref, 1);
+        assertEquals(5, first.getPages());
+        StringBuilder pages = new StringBuilder(first.getText());
+        for (int page = 2; page <= first.getPages(); page++) {
+            pages.append(toolResultStore.page("chat-1", ref, page).getText());
+        }
+        assertEquals(payload, pages.toString());
+        assertNull(toolResultStore.page("chat-1", "unknown", 1));
+        // a ref is not readable from another conversation
+        assertNull(toolResultStore.page("chat-2", ref, 1));
+        assertEquals("30 minutes", toolResultStore.lifetime());
+    }
+
+    @Test
+    void readStoredResultInItsConversation() {
+        ToolResultStore toolResultStore = new ToolResultStore(new AgentProperties());
+        ToolCallback reader = ToolCallbacks.from(new ToolResultReader(toolResultStore))[0];
+        String ref = toolResultStore.put("chat-1", "full result");
+        String arguments = "{\"ref\":\"" + ref + "\",\"page\":1}";
+
+        String own = reader.call(arguments, new ToolContext(Map.of(ChatMemory.CONVERSATION_ID, "chat-1")));
+        assertTrue(own.contains("full result"));
+        String other = reader.call(arguments, new ToolContext(Map.of(ChatMemory.CONVERSATION_ID, "chat-2")));
+        assertTrue(other.contains("not found or expired"));
+    }
+}
@@ -0,0 +1,121 @@
+package com.codingapi.agent.tools;
+
+import com.codingapi.agent.properties.AgentProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.annotation.Tool;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolResultCacheTest {
+
+    static class WeatherTools {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Tool(name = "weather", description = "weather of a city")
+        @ToolCache(ttl = 60)
+        public String weather(String city) {
+            return city + " " + calls.incrementAndGet();
+        }
+
+        @Tool(name = "notes", description = "notes of the conversation")
+        @ToolCache(ttl = 60, scope = ToolCache.Scope.CHAT)
+        public String notes(String topic) {
+            return topic + " " + calls.incrementAndGet();
+        }
+    }
+
+    private static ToolResultCache cache(int size) {
+        AgentProperties agentProperties = new AgentProperties();
+        agentProperties.getTools().setCacheSize(size);
+        return new ToolResultCache(agentProperties);
+    }
+
+    private static ToolCallback caching(WeatherTools tools, String name, ToolResultCache toolResultCache) {
+        ToolCallback callback = Arrays.stream(ToolCallbacks.from(tools))
+                .filter(toolCallback -> toolCallback.getToolDefinition().name().equals(name))
+                .findFirst()
+                .orElseThrow();
+        ToolCache toolCache = AnnotationUtils.findAnnotation(
+                ReflectionUtils.findMethod(WeatherTools.class, name, String.class), ToolCache.class);
+        return new CachingToolCallback(callback, toolCache, toolResultCache);
+    }
+
+    private static ToolContext chat(String chatId) {
+        return new ToolContext(Map.of(ChatMemory.CONVERSATION_ID, chatId));
+    }
+
+    @Test
+    void normalizeArguments() {
+        String key = ToolResultCache.key("weather", "{\"city\":\"beijing\",\"days\":[1,2]}", null);
+        assertEquals(key, ToolResultCache.key("weather", " { \"days\" : [1, 2],\n \"city\" : \"beijing\" } ", null));
+        assertNotEquals(key, ToolResultCache.key("weather", "{\"city\":\"shanghai\",\"days\":[1,2]}", null));
+        assertNotEquals(key, ToolResultCache.key("weather", "{\"city\":\"beijing\",\"days\":[1,2]}", "chat-1"));
+        // arguments that are not json are compared trimmed
+        assertEquals(ToolResultCache.key("weather", "beijing", null), ToolResultCache.key("weather", " beijing\n", null));
+    }
+
+    @Test
+    void expireAfterTtl() throws Exception {
+        ToolResultCache toolResultCache = cache(10);
+        toolResultCache.put("a", "result", 20);
+        assertEquals("result", toolResultCache.get("a"));
+        Thread.sleep(40);
+        assertNull(toolResultCache.get("a"));
+        assertEquals(0, toolResultCache.getStats().getSize());
+    }
+
+    @Test
+    void evictLeastRecentlyUsed() {
+        ToolResultCache toolResultCache = cache(2);
+        toolResultCache.put("a", "1", 60000);
+        toolResultCache.put("b", "2", 60000);
+        assertEquals("1", toolResultCache.get("a"));
+        toolResultCache.put("c", "3", 60000);
+
+        assertNull(toolResultCache.get("b"));
+        assertEquals("1", toolResultCache.get("a"));
+        assertEquals("3", toolResultCache.get("c"));
+        ToolResultCache.Stats stats = toolResultCache.getStats();
+        assertEquals(2, stats.getSize());
+        assertEquals(3, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getEvictions());
+        assertEquals(0.75, stats.getHitRatio());
+    }
+
+    @Test
+    void globalScopeIsShared() {
+        WeatherTools tools = new WeatherTools();
+        ToolCallback weather = caching(tools, "weather", cache(10));
+
+        String first = weather.call("{\"city\":\"beijing\"}", chat("chat-1"));
+        assertEquals(first, weather.call("{ \"city\": \"beijing\" }", chat("chat-2")));
+        assertNotEquals(first, weather.call("{\"city\":\"shanghai\"}", chat("chat-1")));
+        assertEquals(2, tools.calls.get());
+    }
+
+    @Test
+    void chatScopeIsIsolated() {
+        WeatherTools tools = new WeatherTools();
+        ToolCallback notes = caching(tools, "notes", cache(10));
+
+        String first = notes.call("{\"topic\":\"trip\"}", chat("chat-1"));
+        assertEquals(first, notes.call("{\"topic\":\"trip\"}", chat("chat-1")));
+        assertNotEquals(first, notes.call("{\"topic\":\"trip\"}", chat("chat-2")));
+        // without a conversation id a chat scoped tool is not cached
+        notes.call("{\"topic\":\"trip\"}");
+        notes.call("{\"topic\":\"trip\"}");
+        assertEquals(4, tools.calls.get());
+    }
+}